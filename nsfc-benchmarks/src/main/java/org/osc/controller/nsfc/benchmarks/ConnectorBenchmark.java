@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstack4j.core.transport.Config;
+import org.openstack4j.core.transport.HttpExecutorService;
+import org.openstack4j.core.transport.HttpMethod;
+import org.openstack4j.core.transport.HttpRequest;
+import org.openstack4j.core.transport.HttpResponse;
+import org.openstack4j.openstack.networking.domain.NeutronPort.Ports;
+import org.osc.controller.nsfc.utils.HttpTransport;
+
+/**
+ * The openstack4j http connectors the uber bundle can embed, compared on a neutron port listing against
+ * {@link FakeOpenStackServer}, with the timeouts and connection limits of the plugin.
+ * <p>
+ * {@link #listPorts} gives the latency and, through the GC profiler, the allocation per request of a warm
+ * connector. {@link #firstRequest} runs once per fresh JVM: it measures what the bundle pays before its first
+ * openstack call returns, connector classes loading and http client creation included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectorBenchmark {
+
+    @Param({ "jersey2", "httpclient", "okhttp" })
+    public String connector;
+
+    private HttpExecutorService executor;
+    private Config config;
+
+    @State(Scope.Benchmark)
+    public static class FakeNeutron {
+
+        @Param({ "1", "200" })
+        public int ports;
+
+        FakeOpenStackServer server;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.server = new FakeOpenStackServer(0, 16);
+            for (int i = 0; i < this.ports; i++) {
+                Map<String, Object> fixedIp = new LinkedHashMap<>();
+                fixedIp.put("subnet_id", "subnet-" + i);
+                fixedIp.put("ip_address", "10.0." + i / 250 + "." + i % 250);
+
+                Map<String, Object> port = new LinkedHashMap<>();
+                port.put("device_owner", "");
+                port.put("fixed_ips", new ArrayList<>(Collections.singletonList(fixedIp)));
+                this.server.create(FakeOpenStackServer.PORTS, port);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            this.server.close();
+        }
+    }
+
+    @Benchmark
+    public Ports listPorts(FakeNeutron neutron) throws Exception {
+        return execute(neutron);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(20)
+    public Ports firstRequest(FakeNeutron neutron) throws Exception {
+        return execute(neutron);
+    }
+
+    /**
+     * Creates the connector on the first request, as openstack4j does, so that {@link #firstRequest} pays for it.
+     */
+    private Ports execute(FakeNeutron neutron) throws Exception {
+        if (this.executor == null) {
+            HttpTransport transport = new HttpTransport();
+            transport.install();
+            this.config = transport.getConfig();
+            this.executor = (HttpExecutorService) Class
+                    .forName("org.openstack4j.connectors." + this.connector + ".HttpExecutorServiceImpl")
+                    .newInstance();
+        }
+
+        HttpRequest<Ports> request = HttpRequest.builder(Ports.class)
+                .endpoint("http://127.0.0.1:" + neutron.server.getPort())
+                .path("/v2.0/ports")
+                .method(HttpMethod.GET)
+                .header("X-Auth-Token", "benchmark")
+                .config(this.config)
+                .build();
+
+        HttpResponse response = this.executor.execute(request);
+        try {
+            return response.getEntity(Ports.class);
+        } finally {
+            response.close();
+        }
+    }
+}
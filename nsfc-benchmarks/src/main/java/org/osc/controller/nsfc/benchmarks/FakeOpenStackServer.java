@@ -0,0 +1,518 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Stand-in for keystone and neutron, serving the keystone v3 token api and the neutron ports and
+ * networking-sfc apis from memory.
+ * <p>
+ * The catalog returned with tokens points the network service back at this server, so that the plugin
+ * can authenticate and then work against it exactly as against openstack. Every request can be delayed,
+ * failed on purpose and is counted per method and resource. Resources carry a revision number, and updates
+ * with an {@code If-Match} on another revision fail with a 412 as on neutron. Listings are paginated
+ * with {@code limit} and {@code marker}, and reads return only the {@code fields} asked for if any.
+ * <p>
+ * {@code NeutronSfcSdnControllerApi} authenticates against port {@value #KEYSTONE_PORT} of the provider
+ * ip address, so the server has to listen on that port for the controller api to reach it.
+ */
+public class FakeOpenStackServer implements AutoCloseable {
+
+    public static final int KEYSTONE_PORT = 5000;
+
+    public static final String PORTS = "ports";
+    public static final String PORT_PAIRS = "sfc/port_pairs";
+    public static final String PORT_PAIR_GROUPS = "sfc/port_pair_groups";
+    public static final String PORT_CHAINS = "sfc/port_chains";
+    public static final String FLOW_CLASSIFIERS = "sfc/flow_classifiers";
+
+    public static final String TOKENS = "auth/tokens";
+    private static final String NEUTRON_VERSION = "v2.0/";
+    private static final String KEYSTONE_VERSION = "v3/";
+
+    private static final long TOKEN_LIFETIME_MS = TimeUnit.HOURS.toMillis(1);
+
+    private static final Map<String, String> SINGULAR_BY_COLLECTION = new HashMap<>();
+    static {
+        SINGULAR_BY_COLLECTION.put(PORTS, "port");
+        SINGULAR_BY_COLLECTION.put(PORT_PAIRS, "port_pair");
+        SINGULAR_BY_COLLECTION.put(PORT_PAIR_GROUPS, "port_pair_group");
+        SINGULAR_BY_COLLECTION.put(PORT_CHAINS, "port_chain");
+        SINGULAR_BY_COLLECTION.put(FLOW_CLASSIFIERS, "flow_classifier");
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final Map<String, ConcurrentMap<String, Map<String, Object>>> collections = new HashMap<>();
+
+    private final ConcurrentMap<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private final AtomicInteger failNext = new AtomicInteger();
+
+    /**
+     * @param port the port to listen on, zero for any free port
+     * @param threads number of requests served concurrently
+     */
+    public FakeOpenStackServer(int port, int threads) throws IOException {
+        SINGULAR_BY_COLLECTION.keySet().forEach(c -> this.collections.put(c, new ConcurrentHashMap<>()));
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(this.executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    public String getKeystoneUrl() {
+        return "http://127.0.0.1:" + getPort() + "/v3";
+    }
+
+    /**
+     * Delays every request by the latency plus a random part of the jitter.
+     */
+    public void setLatency(long latencyMillis, long latencyJitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /**
+     * Fails the given share of the requests, picked at random, with the given status.
+     */
+    public void setErrorRate(double errorRate, int status) {
+        this.errorRate = errorRate;
+        this.errorStatus = status;
+    }
+
+    /**
+     * Fails the next requests, whatever they are, with the given status.
+     */
+    public void failNextRequests(int count, int status) {
+        this.errorStatus = status;
+        this.failNext.set(count);
+    }
+
+    /**
+     * @param method the http method
+     * @param resource {@link #TOKENS}, or one of the neutron collections such as {@link #PORT_CHAINS}
+     */
+    public long getRequestCount(String method, String resource) {
+        AtomicLong count = this.requestCounts.get(method + " " + resource);
+        return count != null ? count.get() : 0;
+    }
+
+    /**
+     * @return request counts keyed by method and resource, for instance {@code "PUT sfc/port_chains"}
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        this.requestCounts.forEach((k, v) -> counts.put(k, v.get()));
+        return counts;
+    }
+
+    public long getTotalRequests() {
+        return this.totalRequests.get();
+    }
+
+    public long getBytesSent() {
+        return this.bytesSent.get();
+    }
+
+    public void resetCounters() {
+        this.requestCounts.clear();
+        this.totalRequests.set(0);
+        this.bytesSent.set(0);
+    }
+
+    /**
+     * Adds a resource without going through http nor counting it, to seed large topologies.
+     * @return the id of the resource
+     */
+    public String create(String collection, Map<String, Object> resource) {
+        Map<String, Object> created = new LinkedHashMap<>(resource);
+        created.putIfAbsent("id", UUID.randomUUID().toString());
+        applyDefaults(collection, created);
+        this.collections.get(collection).put((String) created.get("id"), created);
+        return (String) created.get("id");
+    }
+
+    public int size(String collection) {
+        return this.collections.get(collection).size();
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath().replaceAll("^/+", "");
+            if (path.startsWith(NEUTRON_VERSION)) {
+                path = path.substring(NEUTRON_VERSION.length());
+            } else if (path.startsWith(KEYSTONE_VERSION)) {
+                path = path.substring(KEYSTONE_VERSION.length());
+            }
+
+            String collection = path;
+            String id = null;
+            for (String candidate : this.collections.keySet()) {
+                if (path.startsWith(candidate + "/")) {
+                    collection = candidate;
+                    id = path.substring(candidate.length() + 1);
+                }
+            }
+
+            this.totalRequests.incrementAndGet();
+            this.requestCounts.computeIfAbsent(method + " " + collection, k -> new AtomicLong()).incrementAndGet();
+
+            delay();
+
+            if (shouldFail()) {
+                sendError(exchange, this.errorStatus, "Injected failure");
+                return;
+            }
+
+            if (TOKENS.equals(collection) && "POST".equals(method)) {
+                issueToken(exchange);
+                return;
+            }
+
+            Map<String, Map<String, Object>> resources = this.collections.get(collection);
+            if (resources == null) {
+                sendError(exchange, 404, "Unknown resource " + path);
+                return;
+            }
+
+            String singular = SINGULAR_BY_COLLECTION.get(collection);
+            String plural = collection.substring(collection.lastIndexOf('/') + 1);
+
+            switch (method) {
+            case "GET":
+                String query = exchange.getRequestURI().getRawQuery();
+                List<String> fields = fields(query);
+                if (id == null) {
+                    List<Map<String, Object>> listed = list(collection, query).stream()
+                            .map(r -> project(r, fields)).collect(Collectors.toList());
+                    send(exchange, 200, Collections.singletonMap(plural, listed));
+                } else if (resources.containsKey(id)) {
+                    send(exchange, 200, Collections.singletonMap(singular, project(resources.get(id), fields)));
+                } else {
+                    sendError(exchange, 404, singular + " " + id + " could not be found");
+                }
+                break;
+            case "POST":
+                Map<String, Object> body = readBody(exchange, singular);
+                String createdId = create(collection, body);
+                send(exchange, 201, Collections.singletonMap(singular, resources.get(createdId)));
+                break;
+            case "PUT":
+                Map<String, Object> update = readBody(exchange, singular);
+                String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+                Map<String, Object> updated;
+                synchronized (resources) {
+                    Map<String, Object> existing = id != null ? resources.get(id) : null;
+                    if (existing == null) {
+                        sendError(exchange, 404, singular + " " + id + " could not be found");
+                        break;
+                    }
+                    long revision = ((Number) existing.get("revision_number")).longValue();
+                    if (ifMatch != null && !ifMatch.equals("revision_number=" + revision)) {
+                        sendError(exchange, 412, "Constraint " + ifMatch + " failed for " + singular + " " + id);
+                        break;
+                    }
+                    updated = new LinkedHashMap<>(existing);
+                    update.forEach((k, v) -> {
+                        if (!"id".equals(k) && !"revision_number".equals(k)) {
+                            updated.put(k, v);
+                        }
+                    });
+                    updated.put("revision_number", revision + 1);
+                    resources.put(id, updated);
+                }
+                send(exchange, 200, Collections.singletonMap(singular, updated));
+                break;
+            case "DELETE":
+                if (id != null && resources.remove(id) != null) {
+                    exchange.sendResponseHeaders(204, -1);
+                } else {
+                    sendError(exchange, 404, singular + " " + id + " could not be found");
+                }
+                break;
+            default:
+                sendError(exchange, 405, "Method " + method + " not allowed");
+            }
+        } catch (Exception e) {
+            try {
+                sendError(exchange, 500, e.toString());
+            } catch (IOException | IllegalStateException alreadySent) {
+                // The response was already under way, the client sees a truncated one
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private List<Map<String, Object>> list(String collection, String rawQuery) throws UnsupportedEncodingException {
+        // A filter repeated with several values matches any of them, as neutron does
+        Map<String, List<String>> filters = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int separator = parameter.indexOf('=');
+                if (separator > 0 && !parameter.startsWith("fields=")) {
+                    filters.computeIfAbsent(URLDecoder.decode(parameter.substring(0, separator), "UTF-8"),
+                                            k -> new ArrayList<>())
+                            .add(URLDecoder.decode(parameter.substring(separator + 1), "UTF-8"));
+                }
+            }
+        }
+
+        String limit = first(filters.remove("limit"));
+        String marker = first(filters.remove("marker"));
+
+        List<Map<String, Object>> matching = new ArrayList<>();
+        for (Map<String, Object> resource : this.collections.get(collection).values()) {
+            if (filters.entrySet().stream()
+                    .allMatch(f -> f.getValue().stream().anyMatch(v -> matches(resource, f.getKey(), v)))) {
+                matching.add(resource);
+            }
+        }
+
+        if (limit == null) {
+            return matching;
+        }
+
+        // Pages are sorted by id, as neutron does when no sort key is given
+        return matching.stream()
+                .sorted(Comparator.comparing(r -> (String) r.get("id")))
+                .filter(r -> marker == null || ((String) r.get("id")).compareTo(marker) > 0)
+                .limit(Integer.parseInt(limit))
+                .collect(Collectors.toList());
+    }
+
+    private static String first(List<String> values) {
+        return values == null ? null : values.get(0);
+    }
+
+    private static List<String> fields(String rawQuery) throws UnsupportedEncodingException {
+        List<String> fields = new ArrayList<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                if (parameter.startsWith("fields=")) {
+                    fields.add(URLDecoder.decode(parameter.substring("fields=".length()), "UTF-8"));
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static Map<String, Object> project(Map<String, Object> resource, List<String> fields) {
+        if (fields.isEmpty()) {
+            return resource;
+        }
+
+        Map<String, Object> projected = new LinkedHashMap<>();
+        for (String field : fields) {
+            if (resource.containsKey(field)) {
+                projected.put(field, resource.get(field));
+            }
+        }
+        return projected;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(Map<String, Object> resource, String filter, String value) {
+        if ("fixed_ips".equals(filter)) {
+            int separator = value.indexOf('=');
+            String attribute = separator > 0 ? value.substring(0, separator) : "subnet_id";
+            String expected = value.substring(separator + 1);
+            List<Map<String, Object>> fixedIps = (List<Map<String, Object>>) resource.get("fixed_ips");
+            return fixedIps != null && fixedIps.stream().anyMatch(ip -> expected.equals(ip.get(attribute)));
+        }
+
+        // Neutron ignores filters on unknown or structured attributes
+        Object attribute = resource.get(filter);
+        if (attribute == null) {
+            return !resource.containsKey(filter);
+        }
+        return !(attribute instanceof String) || attribute.equals(value);
+    }
+
+    private static void applyDefaults(String collection, Map<String, Object> resource) {
+        resource.putIfAbsent("project_id", "fake-project");
+        resource.putIfAbsent("tenant_id", resource.get("project_id"));
+        resource.putIfAbsent("revision_number", 1L);
+        switch (collection) {
+        case PORTS:
+            resource.putIfAbsent("fixed_ips", new ArrayList<>());
+            resource.putIfAbsent("status", "ACTIVE");
+            resource.putIfAbsent("admin_state_up", true);
+            break;
+        case PORT_PAIR_GROUPS:
+            resource.putIfAbsent("port_pairs", new ArrayList<>());
+            break;
+        case PORT_CHAINS:
+            resource.putIfAbsent("port_pair_groups", new ArrayList<>());
+            resource.putIfAbsent("flow_classifiers", new ArrayList<>());
+            resource.putIfAbsent("chain_parameters", new LinkedHashMap<>());
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void issueToken(HttpExchange exchange) throws IOException {
+        SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        iso.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long now = System.currentTimeMillis();
+
+        String url = "http://127.0.0.1:" + getPort();
+        Map<String, Object> endpoint = new LinkedHashMap<>();
+        endpoint.put("id", "fake-network-endpoint");
+        endpoint.put("interface", "public");
+        endpoint.put("region", "RegionOne");
+        endpoint.put("region_id", "RegionOne");
+        endpoint.put("url", url);
+
+        Map<String, Object> networkService = new LinkedHashMap<>();
+        networkService.put("id", "fake-network-service");
+        networkService.put("type", "network");
+        networkService.put("name", "neutron");
+        networkService.put("endpoints", Collections.singletonList(endpoint));
+
+        Map<String, Object> domain = new LinkedHashMap<>();
+        domain.put("id", "default");
+        domain.put("name", "Default");
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("id", "fake-user");
+        user.put("name", "admin");
+        user.put("domain", domain);
+
+        Map<String, Object> project = new LinkedHashMap<>();
+        project.put("id", "fake-project");
+        project.put("name", "admin");
+        project.put("domain", domain);
+
+        Map<String, Object> token = new LinkedHashMap<>();
+        token.put("methods", Collections.singletonList("password"));
+        token.put("issued_at", iso.format(new Date(now)));
+        token.put("expires_at", iso.format(new Date(now + TOKEN_LIFETIME_MS)));
+        token.put("user", user);
+        token.put("project", project);
+        token.put("catalog", Collections.singletonList(networkService));
+
+        exchange.getResponseHeaders().add("X-Subject-Token", UUID.randomUUID().toString().replace("-", ""));
+        send(exchange, 201, Collections.singletonMap("token", token));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readBody(HttpExchange exchange, String singular) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            Map<String, Object> body = this.mapper.readValue(in, Map.class);
+            Object resource = body.get(singular);
+            return resource instanceof Map ? (Map<String, Object>) resource : new LinkedHashMap<>();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = this.mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+        this.bytesSent.addAndGet(bytes.length);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", status == 404 ? "NotFound" : "FakeOpenStackError");
+        error.put("message", message);
+        error.put("detail", "");
+
+        byte[] bytes = this.mapper.writeValueAsString(Collections.singletonMap("NeutronError", error))
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long delay = this.latencyMillis;
+        if (this.latencyJitterMillis > 0) {
+            delay += ThreadLocalRandom.current().nextLong(this.latencyJitterMillis + 1);
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    private boolean shouldFail() {
+        if (this.failNext.get() > 0 && this.failNext.getAndDecrement() > 0) {
+            return true;
+        }
+        return this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate;
+    }
+}
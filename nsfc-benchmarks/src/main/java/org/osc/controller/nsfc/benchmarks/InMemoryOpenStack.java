@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.mockito.Mockito;
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.api.networking.NetworkingService;
+import org.openstack4j.api.networking.PortService;
+import org.openstack4j.api.networking.ext.FlowClassifierService;
+import org.openstack4j.api.networking.ext.PortChainService;
+import org.openstack4j.api.networking.ext.PortPairGroupService;
+import org.openstack4j.api.networking.ext.PortPairService;
+import org.openstack4j.api.networking.ext.ServiceFunctionChainService;
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.common.Resource;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.model.network.ext.builder.PortChainBuilder;
+import org.openstack4j.model.network.ext.builder.PortPairGroupBuilder;
+import org.openstack4j.model.network.options.PortListOptions;
+import org.osc.controller.nsfc.utils.FilteredQueryService;
+import org.osc.controller.nsfc.utils.RevisionedPortChainService;
+
+/**
+ * Neutron ports and SFC resources kept in memory behind a mocked {@link OSClientV3}, so that
+ * benchmarks measure the plugin without any network round trip.
+ */
+class InMemoryOpenStack {
+
+    final PortService ports = new InMemoryPortService();
+    final PortPairService portPairs = new InMemoryPortPairService();
+    final PortPairGroupService portPairGroups = new InMemoryPortPairGroupService();
+    final PortChainService portChains = new InMemoryPortChainService();
+    final FlowClassifierService flowClassifiers = new InMemoryFlowClassifierService();
+
+    final FilteredQueryService filteredQueries = new InMemoryFilteredQueryService();
+    final RevisionedPortChainService revisionedPortChains = new InMemoryRevisionedPortChainService();
+
+    final OSClientV3 osClient;
+
+    InMemoryOpenStack() {
+        ServiceFunctionChainService sfc = Mockito.mock(ServiceFunctionChainService.class);
+        Mockito.when(sfc.portpairs()).thenReturn(this.portPairs);
+        Mockito.when(sfc.portpairgroups()).thenReturn(this.portPairGroups);
+        Mockito.when(sfc.portchains()).thenReturn(this.portChains);
+        Mockito.when(sfc.flowclassifiers()).thenReturn(this.flowClassifiers);
+
+        NetworkingService networking = Mockito.mock(NetworkingService.class);
+        Mockito.when(networking.port()).thenReturn(this.ports);
+
+        this.osClient = Mockito.mock(OSClientV3.class);
+        Mockito.when(this.osClient.sfc()).thenReturn(sfc);
+        Mockito.when(this.osClient.networking()).thenReturn(networking);
+    }
+
+    private static class InMemoryService<T extends Resource> {
+        final Map<String, T> dataObjects = new ConcurrentHashMap<>();
+
+        public List<? extends T> list() {
+            return new ArrayList<>(this.dataObjects.values());
+        }
+
+        public T get(String id) {
+            if (id == null) {
+                throw new IllegalArgumentException("id cannot be null");
+            }
+            return this.dataObjects.get(id);
+        }
+
+        public T create(T object) {
+            object.setId(UUID.randomUUID().toString());
+            this.dataObjects.put(object.getId(), object);
+            return object;
+        }
+
+        public T update(String id, T object) {
+            if (id == null) {
+                throw new IllegalArgumentException("id cannot be null");
+            }
+            object.setId(id);
+            this.dataObjects.put(id, object);
+            return object;
+        }
+
+        public ActionResponse delete(String id) {
+            if (id == null) {
+                throw new IllegalArgumentException("id cannot be null");
+            }
+            this.dataObjects.remove(id);
+            return ActionResponse.actionSuccess();
+        }
+    }
+
+    private static class InMemoryPortService extends InMemoryService<Port> implements PortService {
+
+        @Override
+        public List<? extends Port> list(PortListOptions options) {
+            String deviceOwner = options.getOptions().get("device_owner");
+            return this.dataObjects.values().stream()
+                    .filter(p -> deviceOwner == null || deviceOwner.equals(p.getDeviceOwner()))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> create(List<? extends Port> ports) {
+            return ports.stream().map(p -> create(p)).collect(toList());
+        }
+
+        @Override
+        public Port update(Port port) {
+            return update(port.getId(), port);
+        }
+    }
+
+    private static class InMemoryPortPairService extends InMemoryService<PortPair> implements PortPairService {
+    }
+
+    /**
+     * Like neutron, updates only the attributes sent.
+     */
+    private static class InMemoryPortPairGroupService extends InMemoryService<PortPairGroup>
+            implements PortPairGroupService {
+
+        @Override
+        public PortPairGroup update(String id, PortPairGroup portPairGroup) {
+            PortPairGroup existing = get(id);
+            if (existing == null) {
+                return super.update(id, portPairGroup);
+            }
+
+            PortPairGroupBuilder builder = existing.toBuilder();
+            if (portPairGroup.getName() != null) {
+                builder.name(portPairGroup.getName());
+            }
+            if (portPairGroup.getDescription() != null) {
+                builder.description(portPairGroup.getDescription());
+            }
+            if (portPairGroup.getPortPairs() != null) {
+                builder.portPairs(new ArrayList<>(portPairGroup.getPortPairs()));
+            }
+            return super.update(id, builder.build());
+        }
+    }
+
+    /**
+     * Like neutron, updates only the attributes sent.
+     */
+    private static class InMemoryPortChainService extends InMemoryService<PortChain> implements PortChainService {
+
+        @Override
+        public PortChain update(String id, PortChain portChain) {
+            PortChain existing = get(id);
+            if (existing == null) {
+                return super.update(id, portChain);
+            }
+
+            PortChainBuilder builder = existing.toBuilder();
+            if (portChain.getName() != null) {
+                builder.name(portChain.getName());
+            }
+            if (portChain.getDescription() != null) {
+                builder.description(portChain.getDescription());
+            }
+            if (portChain.getFlowClassifiers() != null) {
+                builder.flowClassifiers(new ArrayList<>(portChain.getFlowClassifiers()));
+            }
+            if (portChain.getPortPairGroups() != null) {
+                builder.portPairGroups(new ArrayList<>(portChain.getPortPairGroups()));
+            }
+            return super.update(id, builder.build());
+        }
+    }
+
+    private static class InMemoryFlowClassifierService extends InMemoryService<FlowClassifier>
+            implements FlowClassifierService {
+    }
+
+    /**
+     * Fields are not projected, whole resources carrying the attributes asked for.
+     */
+    private class InMemoryFilteredQueryService implements FilteredQueryService {
+
+        @Override
+        public List<? extends PortPair> listPortPairs(String ingressId, String egressId) {
+            return InMemoryOpenStack.this.portPairs.list().stream()
+                    .filter(pp -> ingressId == null || ingressId.equals(pp.getIngressId()))
+                    .filter(pp -> egressId == null || egressId.equals(pp.getEgressId()))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPorts(String deviceOwner, String subnetId) {
+            return InMemoryOpenStack.this.ports.list().stream()
+                    .filter(p -> deviceOwner == null || deviceOwner.equals(p.getDeviceOwner()))
+                    .filter(p -> subnetId == null || p.getFixedIps() != null
+                            && p.getFixedIps().stream().anyMatch(ip -> subnetId.equals(ip.getSubnetId())))
+                    .collect(toList());
+        }
+
+        @Override
+        public Port getPort(String portId, List<String> fields) {
+            return InMemoryOpenStack.this.ports.get(portId);
+        }
+
+        @Override
+        public List<? extends PortPair> listPortPairs(String ingressId, String egressId, int limit, String marker,
+                List<String> fields) {
+            return page(listPortPairs(ingressId, egressId), limit, marker);
+        }
+
+        @Override
+        public List<? extends Port> listPorts(String deviceOwner, String subnetId, int limit, String marker,
+                List<String> fields) {
+            return page(listPorts(deviceOwner, subnetId), limit, marker);
+        }
+
+        @Override
+        public List<? extends PortPairGroup> listPortPairGroups(int limit, String marker, List<String> fields) {
+            return page(InMemoryOpenStack.this.portPairGroups.list(), limit, marker);
+        }
+
+        @Override
+        public List<? extends PortChain> listPortChains(int limit, String marker, List<String> fields) {
+            return page(InMemoryOpenStack.this.portChains.list(), limit, marker);
+        }
+
+        @Override
+        public List<? extends Port> listPortsById(List<String> portIds, List<String> fields) {
+            return InMemoryOpenStack.this.ports.list().stream().filter(p -> portIds.contains(p.getId())).collect(toList());
+        }
+
+        @Override
+        public List<? extends PortPair> listPortPairsById(List<String> portPairIds, List<String> fields) {
+            return InMemoryOpenStack.this.portPairs.list().stream().filter(pp -> portPairIds.contains(pp.getId())).collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPortsByDeviceId(String deviceId, List<String> fields) {
+            return InMemoryOpenStack.this.ports.list().stream()
+                    .filter(p -> deviceId.equals(p.getDeviceId()))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPortsByMacAddress(List<String> macAddresses, List<String> fields) {
+            return InMemoryOpenStack.this.ports.list().stream()
+                    .filter(p -> macAddresses.contains(p.getMacAddress()))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPortsByIpAddress(List<String> ipAddresses, List<String> fields) {
+            return InMemoryOpenStack.this.ports.list().stream()
+                    .filter(p -> p.getFixedIps() != null
+                            && p.getFixedIps().stream().anyMatch(ip -> ipAddresses.contains(ip.getIpAddress())))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends FlowClassifier> listFlowClassifiers(String logicalDestinationPort) {
+            return InMemoryOpenStack.this.flowClassifiers.list().stream()
+                    .filter(fc -> logicalDestinationPort.equals(fc.getLogicalDestinationPort()))
+                    .collect(toList());
+        }
+
+        private <T extends Resource> List<T> page(List<? extends T> all, int limit, String marker) {
+            return all.stream()
+                    .sorted(comparing(Resource::getId))
+                    .filter(r -> marker == null || r.getId().compareTo(marker) > 0)
+                    .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                    .collect(toList());
+        }
+    }
+
+    /**
+     * Revisions are not tracked, as with neutron releases that do not report them.
+     */
+    private class InMemoryRevisionedPortChainService implements RevisionedPortChainService {
+
+        @Override
+        public PortChain get(String portChainId) {
+            return InMemoryOpenStack.this.portChains.get(portChainId);
+        }
+
+        @Override
+        public PortChain update(String portChainId, PortChain portChain, Long revisionNumber) {
+            PortChainService portChains = InMemoryOpenStack.this.portChains;
+            return portChains.get(portChainId) != null ? portChains.update(portChainId, portChain) : null;
+        }
+    }
+}
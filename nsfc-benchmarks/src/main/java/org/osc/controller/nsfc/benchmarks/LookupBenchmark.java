@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import static org.osc.controller.nsfc.benchmarks.TopologyState.random;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.RedirectionApiUtils;
+
+/**
+ * The lookups of {@link RedirectionApiUtils} the redirection api relies on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class LookupBenchmark {
+
+    @Benchmark
+    public PortPair fetchPortPairByNetworkElements(TopologyState topology) {
+        PortPair portPair = random(topology.pairs);
+        return topology.utils.fetchPortPairByNetworkElements(
+                new NetworkElementImpl(portPair.getIngressId(), null, null, null),
+                new NetworkElementImpl(portPair.getEgressId(), null, null, null));
+    }
+
+    @Benchmark
+    public PortPairGroup fetchContainingPortPairGroup(TopologyState topology) {
+        return topology.utils.fetchContainingPortPairGroup(random(topology.pairs).getId());
+    }
+
+    @Benchmark
+    public PortChain fetchContainingPortChain(TopologyState topology) {
+        return topology.utils.fetchContainingPortChain(random(topology.groups).getId());
+    }
+
+    @Benchmark
+    public PortChain fetchContainingPortChainForFC(TopologyState topology) {
+        return topology.utils.fetchContainingPortChainForFC(random(topology.flowClassifiers).getId());
+    }
+
+    @Benchmark
+    public Port fetchDefaultGatewayPort(TopologyState topology) {
+        return topology.utils.fetchDefaultGatewayPort(random(topology.inspectedPorts).getElementId());
+    }
+
+    /**
+     * First lookup of a project: lists and indexes the whole topology.
+     */
+    @Benchmark
+    public PortChain coldFetchContainingPortChainForFC(TopologyState topology) {
+        RedirectionApiUtils utils = new RedirectionApiUtils(
+                new OsCalls(topology.openStack.osClient, topology.newProjectContext()));
+        return utils.fetchContainingPortChainForFC(random(topology.flowClassifiers).getId());
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import static org.osc.controller.nsfc.benchmarks.TopologyState.random;
+import static org.osc.sdk.controller.FailurePolicyType.NA;
+import static org.osc.sdk.controller.TagEncapsulationType.VLAN;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.entities.PortPairElement;
+import org.osc.controller.nsfc.entities.PortPairGroupElement;
+import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.sdk.controller.element.Element;
+
+/**
+ * Redirection api operations as OSC issues them, against warm caches.
+ * <p>
+ * Operations that change the topology are paired with the one undoing them, so that every
+ * iteration runs against the same topology size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class RedirectionApiBenchmark {
+
+    private final AtomicInteger nextSparePorts = new AtomicInteger();
+
+    /**
+     * Registers a port pair that is already a member of its port pair group.
+     */
+    @Benchmark
+    public Element registerExistingInspectionPort(TopologyState topology) throws Exception {
+        PortPair portPair = random(topology.pairs);
+        PortPairGroup portPairGroup = topology.utils.fetchContainingPortPairGroup(portPair.getId());
+
+        NetworkElementImpl ingress = new NetworkElementImpl(portPair.getIngressId(), null, null, null);
+        NetworkElementImpl egress = new NetworkElementImpl(portPair.getEgressId(), null, null, null);
+        PortPairElement inspectionPort = new PortPairElement(portPair.getId(),
+                new PortPairGroupElement(portPairGroup.getId()), ingress, egress);
+
+        return topology.redirectionApi.registerInspectionPort(inspectionPort);
+    }
+
+    @Benchmark
+    public void registerAndRemoveInspectionPort(TopologyState topology, Blackhole blackhole) throws Exception {
+        NetworkElementImpl[] ports = topology.sparePorts.get(
+                Math.floorMod(this.nextSparePorts.getAndIncrement(), topology.sparePorts.size()));
+        PortPairGroup portPairGroup = random(topology.groups);
+
+        PortPairElement inspectionPort = new PortPairElement(null, new PortPairGroupElement(portPairGroup.getId()),
+                ports[0], ports[1]);
+        Element registered = topology.redirectionApi.registerInspectionPort(inspectionPort);
+        blackhole.consume(registered);
+
+        topology.redirectionApi.removeInspectionPort(
+                new PortPairElement(registered.getElementId(), null, ports[0], ports[1]));
+    }
+
+    @Benchmark
+    public void installAndRemoveInspectionHook(TopologyState topology, Blackhole blackhole) throws Exception {
+        NetworkElementImpl inspectedPort = random(topology.inspectedPorts);
+        ServiceFunctionChainElement sfc = new ServiceFunctionChainElement(random(topology.chains).getId());
+
+        String hookId = topology.redirectionApi.installInspectionHook(inspectedPort, sfc, 0L, VLAN, 0L, NA);
+        blackhole.consume(hookId);
+
+        topology.redirectionApi.removeInspectionHook(hookId);
+    }
+}
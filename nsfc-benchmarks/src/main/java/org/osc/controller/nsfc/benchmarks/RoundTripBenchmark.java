@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import static org.osc.sdk.controller.FailurePolicyType.NA;
+import static org.osc.sdk.controller.TagEncapsulationType.VLAN;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osc.controller.nsfc.api.NeutronSfcSdnControllerApi;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.sdk.controller.api.SdnRedirectionApi;
+import org.osc.sdk.controller.element.VirtualizationConnectorElement;
+
+/**
+ * Redirection api operations over http against {@link FakeOpenStackServer}, going through the
+ * controller api exactly as OSC does: one redirection api per operation.
+ * <p>
+ * The server round trips per operation are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoundTripBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FakeOpenStack {
+
+        @Param({ "0", "5" })
+        public long latencyMillis;
+
+        @Param({ "100" })
+        public int portChains;
+
+        FakeOpenStackServer server;
+        NeutronSfcSdnControllerApi controllerApi;
+        VirtualizationConnectorElement vc;
+
+        final List<String> portChainIds = new ArrayList<>();
+        final List<String> inspectedPortIds = new ArrayList<>();
+        final AtomicLong operations = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            this.server = new FakeOpenStackServer(FakeOpenStackServer.KEYSTONE_PORT, 64);
+
+            for (int i = 0; i < this.portChains; i++) {
+                String subnetId = "subnet-" + i;
+                this.server.create(FakeOpenStackServer.PORTS, port("network:router_interface", subnetId, "10.0." + i + ".1"));
+                this.inspectedPortIds.add(this.server.create(FakeOpenStackServer.PORTS, port("", subnetId, "10.0." + i + ".2")));
+
+                Map<String, Object> portPair = new LinkedHashMap<>();
+                portPair.put("ingress", this.server.create(FakeOpenStackServer.PORTS, port("", subnetId, "10.0." + i + ".3")));
+                portPair.put("egress", this.server.create(FakeOpenStackServer.PORTS, port("", subnetId, "10.0." + i + ".4")));
+                String portPairId = this.server.create(FakeOpenStackServer.PORT_PAIRS, portPair);
+
+                Map<String, Object> portPairGroup = new LinkedHashMap<>();
+                portPairGroup.put("port_pairs", new ArrayList<>(Arrays.asList(portPairId)));
+                String portPairGroupId = this.server.create(FakeOpenStackServer.PORT_PAIR_GROUPS, portPairGroup);
+
+                Map<String, Object> portChain = new LinkedHashMap<>();
+                portChain.put("port_pair_groups", new ArrayList<>(Arrays.asList(portPairGroupId)));
+                this.portChainIds.add(this.server.create(FakeOpenStackServer.PORT_CHAINS, portChain));
+            }
+
+            this.vc = Mockito.mock(VirtualizationConnectorElement.class);
+            Mockito.when(this.vc.getName()).thenReturn("fake-vc");
+            Mockito.when(this.vc.getProviderIpAddress()).thenReturn("127.0.0.1");
+            Mockito.when(this.vc.getProviderAdminDomainId()).thenReturn("default");
+            Mockito.when(this.vc.getProviderAdminTenantName()).thenReturn("admin");
+            Mockito.when(this.vc.getProviderUsername()).thenReturn("admin");
+            Mockito.when(this.vc.getProviderPassword()).thenReturn("admin");
+
+            this.controllerApi = new NeutronSfcSdnControllerApi();
+            this.server.setLatency(this.latencyMillis, 0);
+            this.server.resetCounters();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            long operations = Math.max(1, this.operations.get());
+            System.out.println();
+            System.out.printf("%d operations, %.2f round trips per operation%n", this.operations.get(),
+                    (double) this.server.getTotalRequests() / operations);
+            this.server.getRequestCounts().forEach((request, count) ->
+                    System.out.printf("  %-28s %.2f%n", request, (double) count / operations));
+
+            this.controllerApi.close();
+            this.server.close();
+        }
+
+        private static Map<String, Object> port(String deviceOwner, String subnetId, String ipAddress) {
+            Map<String, Object> fixedIp = new LinkedHashMap<>();
+            fixedIp.put("subnet_id", subnetId);
+            fixedIp.put("ip_address", ipAddress);
+
+            Map<String, Object> port = new LinkedHashMap<>();
+            port.put("device_owner", deviceOwner);
+            port.put("fixed_ips", new ArrayList<>(Collections.singletonList(fixedIp)));
+            return port;
+        }
+    }
+
+    @Benchmark
+    public void installAndRemoveInspectionHook(FakeOpenStack openStack) throws Exception {
+        int index = ThreadLocalRandom.current().nextInt(openStack.portChainIds.size());
+        NetworkElementImpl inspectedPort = new NetworkElementImpl(openStack.inspectedPortIds.get(index), null, null, null);
+        ServiceFunctionChainElement sfc = new ServiceFunctionChainElement(openStack.portChainIds.get(index));
+
+        try (SdnRedirectionApi redirectionApi = openStack.controllerApi.createRedirectionApi(openStack.vc, "RegionOne")) {
+            String hookId = redirectionApi.installInspectionHook(inspectedPort, sfc, 0L, VLAN, 0L, NA);
+            redirectionApi.removeInspectionHook(hookId);
+        }
+        openStack.operations.incrementAndGet();
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.benchmarks;
+
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.osc.controller.nsfc.api.NeutronSfcSdnRedirectionApi;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.utils.GatewayPortResolver;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.controller.nsfc.utils.RedirectionApiUtils;
+
+/**
+ * A project holding {@code portPairs} port pairs, grouped {@value #PAIRS_PER_GROUP} per port pair group and
+ * {@value #GROUPS_PER_CHAIN} groups per port chain, with {@value #HOOKS_PER_CHAIN} inspected ports per chain.
+ * Every subnet has one router interface.
+ */
+@State(Scope.Benchmark)
+public class TopologyState {
+
+    static final int PAIRS_PER_GROUP = 10;
+    static final int GROUPS_PER_CHAIN = 5;
+    static final int HOOKS_PER_CHAIN = 2;
+    static final int PORTS_PER_SUBNET = 250;
+
+    /**
+     * Spare ingress and egress ports, registered and removed again by the write benchmarks.
+     */
+    static final int SPARE_PORT_PAIRS = 1000;
+
+    @Param({ "100", "1000", "10000", "100000" })
+    public int portPairs;
+
+    InMemoryOpenStack openStack;
+    ProjectContext projectContext;
+    NeutronSfcSdnRedirectionApi redirectionApi;
+    RedirectionApiUtils utils;
+
+    final List<PortPair> pairs = new ArrayList<>();
+    final List<PortPairGroup> groups = new ArrayList<>();
+    final List<PortChain> chains = new ArrayList<>();
+    final List<FlowClassifier> flowClassifiers = new ArrayList<>();
+    final List<NetworkElementImpl> inspectedPorts = new ArrayList<>();
+    final List<NetworkElementImpl[]> sparePorts = new ArrayList<>();
+
+    private int portCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.openStack = new InMemoryOpenStack();
+
+        List<String> groupIds = new ArrayList<>();
+        for (int i = 0; i < this.portPairs; i++) {
+            Port ingress = createPort();
+            Port egress = createPort();
+            PortPair portPair = this.openStack.portPairs.create(Builders.portPair()
+                    .ingressId(ingress.getId()).egressId(egress.getId()).build());
+            this.pairs.add(portPair);
+
+            if ((i + 1) % PAIRS_PER_GROUP == 0 || i == this.portPairs - 1) {
+                List<String> pairIds = new ArrayList<>();
+                for (int j = i - i % PAIRS_PER_GROUP; j <= i; j++) {
+                    pairIds.add(this.pairs.get(j).getId());
+                }
+                PortPairGroup group = this.openStack.portPairGroups.create(Builders.portPairGroup()
+                        .portPairs(pairIds).build());
+                this.groups.add(group);
+                groupIds.add(group.getId());
+            }
+
+            if (groupIds.size() == GROUPS_PER_CHAIN || i == this.portPairs - 1 && !groupIds.isEmpty()) {
+                createChain(groupIds);
+                groupIds = new ArrayList<>();
+            }
+        }
+
+        for (int i = 0; i < SPARE_PORT_PAIRS; i++) {
+            this.sparePorts.add(new NetworkElementImpl[] { element(createPort(), null), element(createPort(), null) });
+        }
+
+        int subnets = (this.portCount + PORTS_PER_SUBNET - 1) / PORTS_PER_SUBNET;
+        for (int i = 0; i < subnets; i++) {
+            this.openStack.ports.create(Builders.port().deviceOwner(GatewayPortResolver.ROUTER_INTERFACE_DEVICE_OWNER)
+                    .fixedIp(address(i, 1), subnet(i)).build());
+        }
+
+        this.projectContext = newProjectContext();
+        this.redirectionApi = new NeutronSfcSdnRedirectionApi(this.openStack.osClient, this.projectContext);
+        this.utils = new RedirectionApiUtils(new OsCalls(this.openStack.osClient, this.projectContext));
+
+        // Benchmarks run against warm caches unless they build their own context
+        this.utils.fetchContainingPortPairGroup(this.pairs.get(0).getId());
+        this.utils.fetchDefaultGatewayPort(this.inspectedPorts.get(0).getElementId());
+    }
+
+    ProjectContext newProjectContext() {
+        return ProjectContext.builder()
+                .filteredQueryService(this.openStack.filteredQueries)
+                .revisionedPortChainService(this.openStack.revisionedPortChains)
+                .build();
+    }
+
+    static <T> T random(List<T> list) {
+        return list.get(ThreadLocalRandom.current().nextInt(list.size()));
+    }
+
+    static NetworkElementImpl element(Port port, String parentId) {
+        List<String> ips = new ArrayList<>();
+        port.getFixedIps().forEach(ip -> ips.add(ip.getIpAddress()));
+        return new NetworkElementImpl(port.getId(), singletonList(port.getMacAddress()), ips, parentId);
+    }
+
+    private void createChain(List<String> groupIds) {
+        List<String> flowClassifierIds = new ArrayList<>();
+        for (int i = 0; i < HOOKS_PER_CHAIN; i++) {
+            Port inspected = createPort();
+            this.inspectedPorts.add(element(inspected, null));
+
+            FlowClassifier flowClassifier = this.openStack.flowClassifiers.create(Builders.flowClassifier()
+                    .logicalDestinationPort(inspected.getId()).build());
+            this.flowClassifiers.add(flowClassifier);
+            flowClassifierIds.add(flowClassifier.getId());
+        }
+
+        this.chains.add(this.openStack.portChains.create(Builders.portChain()
+                .portPairGroups(groupIds).flowClassifiers(flowClassifierIds).build()));
+    }
+
+    private Port createPort() {
+        int index = this.portCount++;
+        int subnet = index / PORTS_PER_SUBNET;
+        return this.openStack.ports.create(Builders.port()
+                .macAddress(String.format("fa:16:3e:%02x:%02x:%02x", index >> 16 & 0xff, index >> 8 & 0xff, index & 0xff))
+                .fixedIp(address(subnet, index % PORTS_PER_SUBNET + 2), subnet(subnet)).build());
+    }
+
+    private static String subnet(int subnet) {
+        return "bench-subnet-" + subnet;
+    }
+
+    private static String address(int subnet, int host) {
+        return String.format("10.%d.%d.%d", subnet >> 8 & 0xff, subnet & 0xff, host);
+    }
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.api;
+
+import java.util.List;
+
+import org.osc.controller.nsfc.utils.OperationContext;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.sdk.controller.FailurePolicyType;
+import org.osc.sdk.controller.TagEncapsulationType;
+import org.osc.sdk.controller.api.SdnRedirectionApi;
+import org.osc.sdk.controller.element.Element;
+import org.osc.sdk.controller.element.InspectionHookElement;
+import org.osc.sdk.controller.element.InspectionPortElement;
+import org.osc.sdk.controller.element.NetworkElement;
+import org.osc.sdk.controller.exception.NetworkPortNotFoundException;
+
+/**
+ * Records every operation of the wrapped redirection api in the {@link OsCallMetrics}, with the openstack calls
+ * issued for it. The calls are counted in an {@link OperationContext} of the operation, so that operations
+ * running at the same time are each charged their own calls, including those run on other threads.
+ * <p>
+ * The operations neutron SFC does not support issue no call and are not recorded.
+ */
+public class MeasuredSdnRedirectionApi implements SdnRedirectionApi {
+
+    private final SdnRedirectionApi api;
+    private final OsCallMetrics metrics;
+
+    public MeasuredSdnRedirectionApi(SdnRedirectionApi api, OsCallMetrics metrics) {
+        this.api = api;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public InspectionPortElement getInspectionPort(InspectionPortElement inspectionPort) throws Exception {
+        return this.metrics.measure("getInspectionPort", () -> this.api.getInspectionPort(inspectionPort));
+    }
+
+    @Override
+    public Element registerInspectionPort(InspectionPortElement inspectionPort) throws Exception {
+        return this.metrics.measure("registerInspectionPort", () -> this.api.registerInspectionPort(inspectionPort));
+    }
+
+    @Override
+    public void removeInspectionPort(InspectionPortElement inspectionPort)
+            throws NetworkPortNotFoundException, Exception {
+        this.metrics.measure("removeInspectionPort", () -> {
+            this.api.removeInspectionPort(inspectionPort);
+            return null;
+        });
+    }
+
+    @Override
+    public String installInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort, Long tag,
+            TagEncapsulationType encType, Long order, FailurePolicyType failurePolicyType)
+            throws NetworkPortNotFoundException, Exception {
+        return this.metrics.measure("installInspectionHook", () -> this.api.installInspectionHook(inspectedPort,
+                inspectionPort, tag, encType, order, failurePolicyType));
+    }
+
+    @Override
+    public void updateInspectionHook(InspectionHookElement existingInspectionHook) throws Exception {
+        this.metrics.measure("updateInspectionHook", () -> {
+            this.api.updateInspectionHook(existingInspectionHook);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeInspectionHook(String inspectionHookId) throws Exception {
+        this.metrics.measure("removeInspectionHook", () -> {
+            this.api.removeInspectionHook(inspectionHookId);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
+            throws Exception {
+        this.metrics.measure("removeInspectionHook", () -> {
+            this.api.removeInspectionHook(inspectedPort, inspectionPort);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeAllInspectionHooks(NetworkElement inspectedPort) throws Exception {
+        this.metrics.measure("removeAllInspectionHooks", () -> {
+            this.api.removeAllInspectionHooks(inspectedPort);
+            return null;
+        });
+    }
+
+    @Override
+    public InspectionHookElement getInspectionHook(String inspectionHookId) throws Exception {
+        return this.metrics.measure("getInspectionHook", () -> this.api.getInspectionHook(inspectionHookId));
+    }
+
+    @Override
+    public InspectionHookElement getInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
+            throws Exception {
+        return this.metrics.measure("getInspectionHook",
+                () -> this.api.getInspectionHook(inspectedPort, inspectionPort));
+    }
+
+    @Override
+    public NetworkElement registerNetworkElement(List<NetworkElement> inspectionPortGroupList) throws Exception {
+        return this.metrics.measure("registerNetworkElement",
+                () -> this.api.registerNetworkElement(inspectionPortGroupList));
+    }
+
+    @Override
+    public NetworkElement updateNetworkElement(NetworkElement portGroup, List<NetworkElement> inspectionPortGroupList)
+            throws Exception {
+        return this.metrics.measure("updateNetworkElement",
+                () -> this.api.updateNetworkElement(portGroup, inspectionPortGroupList));
+    }
+
+    @Override
+    public void deleteNetworkElement(NetworkElement portGroup) throws Exception {
+        this.metrics.measure("deleteNetworkElement", () -> {
+            this.api.deleteNetworkElement(portGroup);
+            return null;
+        });
+    }
+
+    @Override
+    public List<NetworkElement> getNetworkElements(NetworkElement element) throws Exception {
+        return this.metrics.measure("getNetworkElements", () -> this.api.getNetworkElements(element));
+    }
+
+    @Override
+    public NetworkElement getNetworkElementByDeviceOwnerId(String deviceOwnerId) throws Exception {
+        return this.metrics.measure("getNetworkElementByDeviceOwnerId",
+                () -> this.api.getNetworkElementByDeviceOwnerId(deviceOwnerId));
+    }
+
+    @Override
+    public Long getInspectionHookTag(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
+            throws NetworkPortNotFoundException, Exception {
+        return this.api.getInspectionHookTag(inspectedPort, inspectionPort);
+    }
+
+    @Override
+    public void setInspectionHookTag(NetworkElement inspectedPort, InspectionPortElement inspectionPort, Long tag)
+            throws Exception {
+        this.api.setInspectionHookTag(inspectedPort, inspectionPort, tag);
+    }
+
+    @Override
+    public FailurePolicyType getInspectionHookFailurePolicy(NetworkElement inspectedPort,
+            InspectionPortElement inspectionPort) throws Exception {
+        return this.api.getInspectionHookFailurePolicy(inspectedPort, inspectionPort);
+    }
+
+    @Override
+    public void setInspectionHookFailurePolicy(NetworkElement inspectedPort, InspectionPortElement inspectionPort,
+            FailurePolicyType failurePolicyType) throws Exception {
+        this.api.setInspectionHookFailurePolicy(inspectedPort, inspectionPort, failurePolicyType);
+    }
+
+    @Override
+    public void setInspectionHookOrder(NetworkElement inspectedPort, InspectionPortElement inspectionPort, Long order)
+            throws Exception {
+        this.api.setInspectionHookOrder(inspectedPort, inspectionPort, order);
+    }
+
+    @Override
+    public Long getInspectionHookOrder(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
+            throws Exception {
+        return this.api.getInspectionHookOrder(inspectedPort, inspectionPort);
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.api.close();
+    }
+}
@@ -18,20 +18,51 @@ package org.osc.controller.nsfc.api;
 
 import static org.osc.sdk.controller.Constants.*;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
-import org.apache.commons.lang.NotImplementedException;
 import org.openstack4j.api.OSClient.OSClientV3;
 import org.openstack4j.api.client.IOSClientBuilder.V3;
 import org.openstack4j.model.common.Identifier;
 import org.openstack4j.openstack.OSFactory;
+import org.osc.controller.nsfc.utils.DevicePortCache;
+import org.osc.controller.nsfc.utils.GatewayPortResolver;
+import org.osc.controller.nsfc.utils.HttpTransport;
+import org.osc.controller.nsfc.utils.LookupBatcher;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.OsCallsAsync;
+import org.osc.controller.nsfc.utils.PortChainWriteQueue;
+import org.osc.controller.nsfc.utils.PortInfoResolver;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.controller.nsfc.utils.SessionCache;
+import org.osc.controller.nsfc.utils.SharedOsClient;
+import org.osc.controller.nsfc.utils.TopologyCache;
 import org.osc.sdk.controller.FlowInfo;
 import org.osc.sdk.controller.FlowPortInfo;
 import org.osc.sdk.controller.Status;
 import org.osc.sdk.controller.api.SdnControllerApi;
 import org.osc.sdk.controller.api.SdnRedirectionApi;
 import org.osc.sdk.controller.element.VirtualizationConnectorElement;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 @Component(configurationPid = "org.osc.nsfc.SdnController",
     property = { PLUGIN_NAME + "=Neutron-sfc",
@@ -39,21 +70,183 @@ import org.osgi.service.component.annotations.Component;
                  SUPPORT_SFC + ":Boolean=false",
                  SUPPORT_FAILURE_POLICY + ":Boolean=false",
                  USE_PROVIDER_CREDS + ":Boolean=true",
-                 QUERY_PORT_INFO + ":Boolean=false",
+                 QUERY_PORT_INFO + ":Boolean=true",
                  SUPPORT_PORT_GROUP + ":Boolean=false",
                  SUPPORT_NEUTRON_SFC + ":Boolean=true"})
 public class NeutronSfcSdnControllerApi implements SdnControllerApi {
 
+    private static final Logger LOG = LoggerFactory.getLogger(NeutronSfcSdnControllerApi.class);
+
     private static final String VERSION = "0.1";
     private static final String NAME = "Neutron-sfc";
 
     private static final String AUTH_URL_LOCAL = "/v3";
     private static final int AUTH_URL_PORT = 5000;
 
+    @interface Config {
+        /**
+         * Age in milliseconds after which the port pair, port pair group and port chain snapshot is reloaded.
+         */
+        long topology_cache_ttl_ms() default TopologyCache.DEFAULT_TTL_MS;
+
+        /**
+         * Reload the topology snapshot whenever a lookup finds nothing, in case another client created it.
+         * Without it, objects created outside the plugin stay unseen until the snapshot expires, and the install
+         * paths create duplicates of them meanwhile.
+         */
+        boolean topology_cache_refresh_on_miss() default true;
+
+        /**
+         * Age in milliseconds after which the subnet to router interface map is rebuilt.
+         */
+        long gateway_port_cache_ttl_ms() default GatewayPortResolver.DEFAULT_TTL_MS;
+
+        /**
+         * Age in milliseconds after which the ports of a device are listed again. With zero they are listed on
+         * every lookup.
+         */
+        long device_port_cache_ttl_ms() default DevicePortCache.DEFAULT_TTL_MS;
+
+        /**
+         * Maximum number of devices whose ports are cached per project, the least recently looked up being dropped.
+         */
+        int device_port_cache_size() default DevicePortCache.DEFAULT_MAX_DEVICES;
+
+        /**
+         * Maximum number of openstack calls a redirection api issues in parallel.
+         */
+        int worker_threads() default DEFAULT_WORKER_THREADS;
+
+        /**
+         * How long in milliseconds before its expiry a keystone token is replaced by a new one.
+         */
+        long session_refresh_margin_ms() default SessionCache.DEFAULT_REFRESH_MARGIN_MS;
+
+        /**
+         * How long in milliseconds flow classifier changes of a port chain are collected into a single update.
+         * With zero a change is written at once, merged only with those arriving while the chain is being written.
+         */
+        long port_chain_write_window_ms() default 0;
+
+        /**
+         * How long in milliseconds port and port pair lookups by id are collected into a single list request.
+         * With zero each lookup is issued on its own.
+         */
+        long lookup_batch_window_ms() default 0;
+
+        /**
+         * Number of ids beyond which collected lookups are requested without waiting for the end of the window.
+         */
+        int lookup_batch_size() default LookupBatcher.DEFAULT_MAX_BATCH_SIZE;
+
+        /**
+         * Deleting a service function chain also deletes the port pair groups, port pairs and flow classifiers
+         * OSC created for it and no other chain uses.
+         */
+        boolean cascade_delete_network_element() default false;
+
+        /**
+         * How long in milliseconds to wait for a connection to openstack, or for a free one in the pool.
+         */
+        int connect_timeout_ms() default HttpTransport.DEFAULT_CONNECT_TIMEOUT_MS;
+
+        /**
+         * How long in milliseconds to wait for openstack to answer a call.
+         */
+        int read_timeout_ms() default HttpTransport.DEFAULT_READ_TIMEOUT_MS;
+
+        /**
+         * Maximum number of connections pooled for all the openstack endpoints.
+         */
+        int max_connections() default HttpTransport.DEFAULT_MAX_CONNECTIONS;
+
+        /**
+         * Maximum number of connections pooled for a single openstack endpoint.
+         */
+        int max_connections_per_route() default HttpTransport.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+        /**
+         * How long in milliseconds an idle connection is kept open, unless openstack closes it earlier.
+         */
+        long keep_alive_ms() default HttpTransport.DEFAULT_KEEP_ALIVE_MS;
+
+        /**
+         * Ask openstack for gzip or deflate compressed responses.
+         */
+        boolean http_compression() default true;
+    }
+
+    private static final int DEFAULT_WORKER_THREADS = 8;
+
+    private final ConcurrentMap<String, ProjectContext> projectContexts = new ConcurrentHashMap<>();
+
+    private long topologyCacheTtlMillis = TopologyCache.DEFAULT_TTL_MS;
+    private boolean topologyCacheRefreshOnMiss = true;
+    private long gatewayPortCacheTtlMillis = GatewayPortResolver.DEFAULT_TTL_MS;
+    private long devicePortCacheTtlMillis = DevicePortCache.DEFAULT_TTL_MS;
+    private int devicePortCacheSize = DevicePortCache.DEFAULT_MAX_DEVICES;
+    private int workerThreads = DEFAULT_WORKER_THREADS;
+    private long portChainWriteWindowMillis;
+    private long lookupBatchWindowMillis;
+    private int lookupBatchSize = LookupBatcher.DEFAULT_MAX_BATCH_SIZE;
+    private boolean cascadeDeleteNetworkElement;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+    private ExecutorService lookupExecutor;
+
+    private HttpTransport transport = new HttpTransport();
+    private SessionCache sessionCache = new SessionCache(SessionCache.DEFAULT_REFRESH_MARGIN_MS,
+                                                         this.transport.getConfig());
+
+    private final OsCallMetrics metrics = new OsCallMetrics();
+    private final List<ObjectName> mbeanNames = new ArrayList<>();
+
     public NeutronSfcSdnControllerApi() {
         // For dependency injection. could be package private?
     }
 
+    @Activate
+    void activate(Config config) {
+        this.topologyCacheTtlMillis = config.topology_cache_ttl_ms();
+        this.topologyCacheRefreshOnMiss = config.topology_cache_refresh_on_miss();
+        this.gatewayPortCacheTtlMillis = config.gateway_port_cache_ttl_ms();
+        this.devicePortCacheTtlMillis = config.device_port_cache_ttl_ms();
+        this.devicePortCacheSize = config.device_port_cache_size();
+        this.workerThreads = config.worker_threads();
+        this.portChainWriteWindowMillis = config.port_chain_write_window_ms();
+        this.lookupBatchWindowMillis = config.lookup_batch_window_ms();
+        this.lookupBatchSize = config.lookup_batch_size();
+        this.cascadeDeleteNetworkElement = config.cascade_delete_network_element();
+        this.transport = new HttpTransport(config.connect_timeout_ms(), config.read_timeout_ms(),
+                                           config.max_connections(), config.max_connections_per_route(),
+                                           config.keep_alive_ms(), config.http_compression());
+        this.sessionCache = new SessionCache(config.session_refresh_margin_ms(), this.transport.getConfig());
+        registerMetrics();
+    }
+
+    @Deactivate
+    void deactivate() throws Exception {
+        unregisterMetrics();
+        close();
+        shutdownWorkers();
+        this.transport.uninstall();
+    }
+
+    /**
+     * @return the statistics of the openstack calls of all the redirection apis, also published over JMX
+     */
+    public OsCallMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * @return the statistics of the http connections to openstack, also published over JMX
+     */
+    public HttpTransport getTransport() {
+        return this.transport;
+    }
+
     @Override
     public Status getStatus(VirtualizationConnectorElement vc, String region) throws Exception {
         return new Status(NAME, VERSION, true);
@@ -61,6 +254,58 @@ public class NeutronSfcSdnControllerApi implements SdnControllerApi {
 
     @Override
     public SdnRedirectionApi createRedirectionApi(VirtualizationConnectorElement vc, String region) {
+        SharedOsClient sharedClient = sharedClient(vc);
+        return new MeasuredSdnRedirectionApi(
+                new NeutronSfcSdnRedirectionApi(sharedClient, projectContext(vc), this.cascadeDeleteNetworkElement),
+                this.metrics);
+    }
+
+    /**
+     * Resolves the ports of all the flows together, with a bounded number of neutron port lists per query.
+     */
+    @Override
+    public HashMap<String, FlowPortInfo> queryPortInfo(VirtualizationConnectorElement vc, String region,
+            HashMap<String, FlowInfo> portsQuery) throws Exception {
+        if (portsQuery == null || portsQuery.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        ProjectContext projectContext = projectContext(vc);
+        OsCalls osCalls = new OsCalls(sharedClient(vc), projectContext);
+        OsCallsAsync osCallsAsync = new OsCallsAsync(osCalls, projectContext.getExecutor());
+        return new PortInfoResolver(osCalls, osCallsAsync).resolve(portsQuery);
+    }
+
+    /**
+     * Drops the cached sessions and project state. The workers and the scheduler are only shut down on
+     * deactivation, as the redirection apis still open keep running on them.
+     */
+    @Override
+    public void close() throws Exception {
+        this.projectContexts.clear();
+        this.sessionCache.clear();
+    }
+
+    private synchronized void shutdownWorkers() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+            this.executor = null;
+        }
+        if (this.scheduler != null) {
+            this.scheduler.shutdown();
+            this.scheduler = null;
+        }
+        if (this.lookupExecutor != null) {
+            this.lookupExecutor.shutdown();
+            this.lookupExecutor = null;
+        }
+    }
+
+    /**
+     * A client of the cached session of the VC credentials, usable from several threads as the redirection api
+     * runs its calls on the workers.
+     */
+    private SharedOsClient sharedClient(VirtualizationConnectorElement vc) {
         if (vc == null || vc.getName() == null || vc.getName().length() == 0) {
             throw new IllegalArgumentException("Non-null VC with non-empty name required!");
         }
@@ -70,28 +315,125 @@ public class NeutronSfcSdnControllerApi implements SdnControllerApi {
         String password = vc.getProviderPassword();
         String tenantName = vc.getProviderAdminTenantName();
 
-        V3 v3 = OSFactory.builderV3()
-                .endpoint(authUrl(vc.getProviderIpAddress()))
-                .credentials(username, password, Identifier.byName(domain))
-                .scopeToProject(Identifier.byName(tenantName), Identifier.byName(domain));
+        String endpoint = authUrl(vc.getProviderIpAddress());
 
-        OSClientV3 osClient = v3.authenticate();
+        // Tokens are reused across redirection apis until they are about to expire
+        String sessionKey = endpoint + "/" + domain + "/" + tenantName + "/" + username;
+        OSClientV3 osClient = this.sessionCache.getClient(sessionKey, password, () -> {
+            // Authenticating is the first call of a session, which may build the http client
+            this.transport.install();
+            V3 v3 = OSFactory.builderV3()
+                    .withConfig(this.transport.getConfig())
+                    .endpoint(endpoint)
+                    .credentials(username, password, Identifier.byName(domain))
+                    .scopeToProject(Identifier.byName(tenantName), Identifier.byName(domain));
 
-        return new NeutronSfcSdnRedirectionApi(osClient);
+            return this.metrics.record(OsCallMetrics.TOKEN, OsCallMetrics.POST, v3::authenticate);
+        });
+
+        return new SharedOsClient(osClient, this.transport.getConfig());
     }
 
-    @Override
-    public HashMap<String, FlowPortInfo> queryPortInfo(VirtualizationConnectorElement vc, String region,
-            HashMap<String, FlowInfo> portsQuery) throws Exception {
-        throw new NotImplementedException("Neutron SFC SDN Controller does not support flow based query");
+    /**
+     * The state of a project outlives the redirection api, which OSC creates per operation.
+     */
+    private ProjectContext projectContext(VirtualizationConnectorElement vc) {
+        ExecutorService executor = executor();
+        return this.projectContexts.computeIfAbsent(projectKey(vc),
+                k -> ProjectContext.builder()
+                        .topologyCache(new TopologyCache(this.topologyCacheTtlMillis, this.topologyCacheRefreshOnMiss))
+                        .gatewayPortResolver(new GatewayPortResolver(this.gatewayPortCacheTtlMillis))
+                        .devicePortCache(new DevicePortCache(this.devicePortCacheTtlMillis, this.devicePortCacheSize))
+                        .executor(executor)
+                        .metrics(this.metrics)
+                        .portChainWriteQueue(portChainWriteQueue())
+                        .lookupBatcher(lookupBatcher())
+                        .build());
     }
 
-    @Override
-    public void close() throws Exception {
-        //no-op
+    private synchronized ExecutorService executor() {
+        if (this.executor == null) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("nsfc-worker-%d").setDaemon(true).build();
+            this.executor = Executors.newFixedThreadPool(this.workerThreads, threadFactory);
+        }
+        return this.executor;
+    }
+
+    private synchronized PortChainWriteQueue portChainWriteQueue() {
+        if (this.portChainWriteWindowMillis <= 0) {
+            return new PortChainWriteQueue();
+        }
+
+        return new PortChainWriteQueue(this.portChainWriteWindowMillis, scheduler(), executor());
+    }
+
+    private synchronized LookupBatcher lookupBatcher() {
+        if (this.lookupBatchWindowMillis <= 0) {
+            return new LookupBatcher();
+        }
+        return new LookupBatcher(this.lookupBatchWindowMillis, this.lookupBatchSize, scheduler(), lookupExecutor());
+    }
+
+    /**
+     * Sends the batched lookups. Not the workers, which the lookups are mostly made from: with all of them
+     * waiting for their lookups, none would be left to send the requests.
+     */
+    private synchronized ExecutorService lookupExecutor() {
+        if (this.lookupExecutor == null) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("nsfc-lookup-%d")
+                    .setDaemon(true).build();
+            this.lookupExecutor = Executors.newCachedThreadPool(threadFactory);
+        }
+        return this.lookupExecutor;
+    }
+
+    /**
+     * Ends the windows of the port chain updates and batched lookups of all the projects, which then run on the
+     * workers and on the lookup executor.
+     */
+    private synchronized ScheduledExecutorService scheduler() {
+        if (this.scheduler == null) {
+            ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("nsfc-scheduler-%d")
+                    .setDaemon(true).build();
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        }
+        return this.scheduler;
+    }
+
+    private void registerMetrics() {
+        registerMBean(this.metrics, OsCallMetrics.OBJECT_NAME);
+        registerMBean(this.transport, HttpTransport.OBJECT_NAME);
+    }
+
+    private void registerMBean(Object mbean, String objectName) {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(mbean, name);
+                this.mbeanNames.add(name);
+            }
+        } catch (JMException e) {
+            LOG.warn("Failed to register " + objectName, e);
+        }
+    }
+
+    private void unregisterMetrics() {
+        for (ObjectName name : this.mbeanNames) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException e) {
+                LOG.warn("Failed to unregister " + name, e);
+            }
+        }
+        this.mbeanNames.clear();
     }
 
     private static String authUrl(String ip) {
         return "http://" + ip + ":" + AUTH_URL_PORT + AUTH_URL_LOCAL;
     }
+
+    private static String projectKey(VirtualizationConnectorElement vc) {
+        return vc.getProviderIpAddress() + "/" + vc.getProviderAdminDomainId() + "/" + vc.getProviderAdminTenantName();
+    }
 }
@@ -19,14 +19,18 @@ package org.osc.controller.nsfc.api;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
 import static org.osc.controller.nsfc.utils.ArgumentCheckUtil.throwExceptionIfNullOrEmptyNetworkElementList;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.openstack4j.api.Builders;
@@ -37,12 +41,22 @@ import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
 import org.osc.controller.nsfc.entities.FlowClassifierElement;
+import org.osc.controller.nsfc.entities.InspectionHookInstallResult;
 import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.PortPairElement;
 import org.osc.controller.nsfc.entities.PortPairGroupElement;
+import org.osc.controller.nsfc.entities.ReconciliationReport;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.ChainTeardown;
+import org.osc.controller.nsfc.utils.DevicePortCache;
+import org.osc.controller.nsfc.utils.InspectionHookIndex;
 import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.OsCallsAsync;
+import org.osc.controller.nsfc.utils.PortChainWriteQueue;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.controller.nsfc.utils.ReconciliationEngine;
 import org.osc.controller.nsfc.utils.RedirectionApiUtils;
+import org.osc.controller.nsfc.utils.SharedOsClient;
 import org.osc.sdk.controller.FailurePolicyType;
 import org.osc.sdk.controller.TagEncapsulationType;
 import org.osc.sdk.controller.api.SdnRedirectionApi;
@@ -60,13 +74,42 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
 
     private RedirectionApiUtils utils;
     private OsCalls osCalls;
+    private OsCallsAsync osCallsAsync;
+    private PortChainWriteQueue portChainWriteQueue;
+    private InspectionHookIndex inspectionHookIndex;
+    private DevicePortCache devicePortCache;
+    private boolean cascadeDelete;
 
     public NeutronSfcSdnRedirectionApi() {
     }
 
     public NeutronSfcSdnRedirectionApi(OSClientV3 osClient) {
-        this.osCalls = new OsCalls(osClient);
+        this(osClient, ProjectContext.builder().build());
+    }
+
+    public NeutronSfcSdnRedirectionApi(OSClientV3 osClient, ProjectContext projectContext) {
+        this(new SharedOsClient(osClient), projectContext);
+    }
+
+    /**
+     * @param osClient shared by the threads calling this redirection api and by the workers of the project
+     */
+    public NeutronSfcSdnRedirectionApi(SharedOsClient osClient, ProjectContext projectContext) {
+        this(osClient, projectContext, false);
+    }
+
+    /**
+     * @param cascadeDelete whether deleting a service function chain also deletes the port pair groups, port pairs
+     *        and flow classifiers OSC created for it, see {@link ChainTeardown}
+     */
+    public NeutronSfcSdnRedirectionApi(SharedOsClient osClient, ProjectContext projectContext, boolean cascadeDelete) {
+        this.cascadeDelete = cascadeDelete;
+        this.osCalls = new OsCalls(osClient, projectContext);
         this.utils = new RedirectionApiUtils(this.osCalls);
+        this.osCallsAsync = new OsCallsAsync(this.osCalls, projectContext.getExecutor());
+        this.portChainWriteQueue = projectContext.getPortChainWriteQueue();
+        this.inspectionHookIndex = projectContext.getInspectionHookIndex();
+        this.devicePortCache = projectContext.getDevicePortCache();
     }
 
     // Inspection port methods
@@ -110,15 +153,23 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         PortPairGroup portPairGroup = null;
         String inspectionPortPairGroupId = inspectionPort.getParentId();
 
+        NetworkElement ingress = inspectionPort.getIngressPort();
+        NetworkElement egress = inspectionPort.getEgressPort();
+
+        // The port pair group and the port pair are looked up together
+        CompletableFuture<PortPairGroup> portPairGroupFuture = inspectionPortPairGroupId != null
+                ? this.osCallsAsync.getPortPairGroup(inspectionPortPairGroupId)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<PortPair> portPairFuture =
+                this.osCallsAsync.supplyAsync(() -> this.utils.fetchPortPairByNetworkElements(ingress, egress));
+
         if (inspectionPortPairGroupId != null) {
-            portPairGroup = this.osCalls.getPortPairGroup(inspectionPortPairGroupId);
+            portPairGroup = OsCallsAsync.await(portPairGroupFuture);
             checkArgument(portPairGroup != null,
                     "Cannot find %s by id: %s!", "Port Pair Group", inspectionPortPairGroupId);
         }
 
-        NetworkElement ingress = inspectionPort.getIngressPort();
-        NetworkElement egress = inspectionPort.getEgressPort();
-        PortPair portPair = this.utils.fetchPortPairByNetworkElements(ingress, egress);
+        PortPair portPair = OsCallsAsync.await(portPairFuture);
 
         if (portPair == null) {
             portPair = Builders.portPair().egressId(egress.getElementId())
@@ -141,12 +192,13 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
             portPairGroup = this.osCalls.createPortPairGroup(portPairGroup);
             inspectionPortPairGroupId = portPairGroup.getId();
         } else {
-
-            if (!portPairGroup.getPortPairs().contains(portPair.getId())) {
-                portPairGroup.getPortPairs().add(portPair.getId());
+            List<String> portPairs = new ArrayList<>(portPairGroup.getPortPairs());
+            if (!portPairs.contains(portPair.getId())) {
+                portPairs.add(portPair.getId());
             }
 
-            this.osCalls.updatePortPairGroup(portPairGroup.getId(), portPairGroup);
+            this.osCalls.updatePortPairGroup(portPairGroup.getId(), portPairGroup,
+                                             Builders.portPairGroup().portPairs(portPairs).build());
         }
 
         NetworkElementImpl ingressElement = null;
@@ -180,24 +232,26 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         PortPair portPair = this.utils.fetchPortPairForInspectionPort(inspectionPort);
 
         if (portPair != null) {
-            PortPairGroup portPairGroup = this.utils.fetchContainingPortPairGroup(portPair.getId());
+            // The topology cache only tells which group and chain to read, the writes are built on them as read
+            PortPairGroup portPairGroup = readContainingPortPairGroup(portPair.getId());
 
             if (portPairGroup != null) {
-                portPairGroup.getPortPairs().remove(portPair.getId());
+                List<String> portPairs = new ArrayList<>(portPairGroup.getPortPairs());
+                portPairs.remove(portPair.getId());
 
-                if (portPairGroup.getPortPairs().size() > 0) {
-                    PortPairGroup ppgUpdate = Builders.portPairGroup().portPairs(portPairGroup.getPortPairs()).build();
-                    this.osCalls.updatePortPairGroup(portPairGroup.getId(), ppgUpdate);
+                if (portPairs.size() > 0) {
+                    PortPairGroup ppgUpdate = Builders.portPairGroup().portPairs(portPairs).build();
+                    this.osCalls.updatePortPairGroup(portPairGroup.getId(), portPairGroup, ppgUpdate);
                 } else {
-                    PortChain portChain = this.utils.fetchContainingPortChain(portPairGroup.getId());
+                    PortChain portChain = readContainingPortChain(portPairGroup.getId());
 
                     if (portChain != null) {
-                        List<String> ppgIds = portChain.getPortPairGroups();
+                        List<String> ppgIds = new ArrayList<>(portChain.getPortPairGroups());
                         ppgIds.remove(portPairGroup.getId());
 
                         // service function chain with with no port pair should be allowed to exist?
                         PortChain portChainUpdate = Builders.portChain().portPairGroups(ppgIds).build();
-                        this.osCalls.updatePortChain(portChain.getId(), portChainUpdate);
+                        this.osCalls.updatePortChain(portChain.getId(), portChain, portChainUpdate);
                     }
                     this.osCalls.deletePortPairGroup(portPairGroup.getId());
                 }
@@ -210,6 +264,27 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         }
     }
 
+    private PortPairGroup readContainingPortPairGroup(String portPairId) {
+        PortPairGroup cached = this.utils.fetchContainingPortPairGroup(portPairId);
+        if (cached == null) {
+            return null;
+        }
+
+        PortPairGroup portPairGroup = this.osCalls.getPortPairGroup(cached.getId());
+        return portPairGroup != null && portPairGroup.getPortPairs() != null
+                && portPairGroup.getPortPairs().contains(portPairId) ? portPairGroup : null;
+    }
+
+    private PortChain readContainingPortChain(String portPairGroupId) {
+        PortChain cached = this.utils.fetchContainingPortChain(portPairGroupId);
+        if (cached == null) {
+            return null;
+        }
+
+        PortChain portChain = this.osCalls.getPortChain(cached.getId());
+        return portChain != null && portChain.getPortPairGroups().contains(portPairGroupId) ? portChain : null;
+    }
+
     // Inspection Hooks methods
     @Override
     public String installInspectionHook(NetworkElement inspectedPortElement,
@@ -217,7 +292,6 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
                                         TagEncapsulationType encType, Long order,
                                         FailurePolicyType failurePolicyType)
             throws NetworkPortNotFoundException, Exception {
-
         checkArgument(inspectedPortElement != null && inspectedPortElement.getElementId() != null,
                       "null passed for %s !", "Inspected Port");
         checkArgument(inspectionPortElement != null && inspectionPortElement.getElementId() != null,
@@ -226,23 +300,138 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         LOG.info("Installing Inspection Hook for (Inspected Port {} ; Inspection Port {}):",
                 inspectedPortElement, inspectionPortElement);
 
-        PortChain portChain = this.osCalls.getPortChain(inspectionPortElement.getElementId());
+        // The port chain, the inspected port and the router interfaces do not depend on each other
+        CompletableFuture<PortChain> portChainFuture = this.osCallsAsync.getPortChain(inspectionPortElement.getElementId());
+        CompletableFuture<Port> inspectedPortFuture = this.osCallsAsync.getPortAddresses(inspectedPortElement.getElementId());
+        CompletableFuture<Void> gatewayPortsFuture = this.osCallsAsync.refreshGatewayPortsIfStale();
+
+        PortChain portChain = OsCallsAsync.await(portChainFuture);
         checkArgument(portChain != null,
                       "Cannot find %s by id: %s!", "Service Function Chain", inspectionPortElement.getElementId());
 
-        String defaultGatewayInterfacePortId = this.utils.fetchDefaultGatewayPort(inspectedPortElement.getElementId()).getId();
-        FlowClassifier flowClassifier = this.utils.buildFlowClassifier(inspectedPortElement.getElementId(), defaultGatewayInterfacePortId);
+        Port inspectedPort = OsCallsAsync.await(inspectedPortFuture);
+        if (inspectedPort == null) {
+            throw new IllegalStateException(
+                    String.format("Cannot find fixed ip of inspected port %s", inspectedPortElement.getElementId()));
+        }
+        OsCallsAsync.await(gatewayPortsFuture);
+
+        String flowClassifierId = this.utils.createFlowClassifier(inspectedPortElement.getElementId(), inspectedPort)
+                .getId();
+        this.portChainWriteQueue.await(this.portChainWriteQueue.addFlowClassifiers(this.osCalls, portChain.getId(),
+                portChain, singletonList(flowClassifierId)));
+        this.inspectionHookIndex.put(inspectedPortElement.getElementId(), portChain.getId(), flowClassifierId);
 
-        flowClassifier = this.osCalls.createFlowClassifier(flowClassifier);
-        portChain.getFlowClassifiers().add(flowClassifier.getId());
-        this.osCalls.updatePortChain(portChain.getId(), portChain);
+        return flowClassifierId;
+    }
 
-        return flowClassifier.getId();
+    /**
+     * Installs many inspection hooks at once. Flow classifiers are created in parallel and all the classifiers
+     * of a given port chain are added to it with a single port chain update.
+     * <p>
+     * A failure affects only the hooks concerned: a hook whose classifier cannot be created, or whose port chain
+     * cannot be found or updated, is reported as failed and its classifier, if any, is deleted again.
+     *
+     * @param inspectionHooks pairs of inspected port and service function chain
+     * @return one result per requested hook, in the order of the request
+     */
+    public List<InspectionHookInstallResult> installInspectionHooks(List<? extends InspectionHookElement> inspectionHooks)
+            throws Exception {
+        return this.osCalls.getMetrics().measure("installInspectionHooks", () -> installHooks(inspectionHooks));
+    }
+
+    private List<InspectionHookInstallResult> installHooks(List<? extends InspectionHookElement> inspectionHooks)
+            throws Exception {
+        checkArgument(inspectionHooks != null, "null passed for %s !", "Inspection Hook list");
+
+        LOG.info("Installing {} Inspection Hooks", inspectionHooks.size());
+
+        List<InspectionHookInstallResult> results = new ArrayList<>();
+        Map<String, List<InspectionHookInstallResult>> resultsByChain = new LinkedHashMap<>();
+
+        for (InspectionHookElement hook : inspectionHooks) {
+            InspectionHookInstallResult result = new InspectionHookInstallResult(hook);
+            results.add(result);
+
+            NetworkElement inspectedPort = hook != null ? hook.getInspectedPort() : null;
+            InspectionPortElement inspectionPort = hook != null ? hook.getInspectionPort() : null;
+            if (inspectedPort == null || inspectedPort.getElementId() == null) {
+                result.setError(new IllegalArgumentException(String.format("null passed for %s !", "Inspected Port")));
+            } else if (inspectionPort == null || inspectionPort.getElementId() == null) {
+                result.setError(new IllegalArgumentException(
+                        String.format("null passed for %s !", "Service Function Chain")));
+            } else {
+                resultsByChain.computeIfAbsent(inspectionPort.getElementId(), k -> new ArrayList<>()).add(result);
+            }
+        }
+
+        Map<String, CompletableFuture<PortChain>> portChainFutures = new LinkedHashMap<>();
+        for (String portChainId : resultsByChain.keySet()) {
+            portChainFutures.put(portChainId, this.osCallsAsync.getPortChain(portChainId));
+        }
+
+        Map<InspectionHookInstallResult, CompletableFuture<FlowClassifier>> flowClassifierFutures = new LinkedHashMap<>();
+        for (List<InspectionHookInstallResult> chainResults : resultsByChain.values()) {
+            for (InspectionHookInstallResult result : chainResults) {
+                String inspectedPortId = result.getRequestedHook().getInspectedPort().getElementId();
+                flowClassifierFutures.put(result,
+                        this.osCallsAsync.supplyAsync(() -> this.utils.createFlowClassifier(inspectedPortId)));
+            }
+        }
+
+        for (Map.Entry<InspectionHookInstallResult, CompletableFuture<FlowClassifier>> entry : flowClassifierFutures.entrySet()) {
+            try {
+                entry.getKey().setHookId(OsCallsAsync.await(entry.getValue()).getId());
+            } catch (Exception e) {
+                entry.getKey().setError(e);
+            }
+        }
+
+        for (Map.Entry<String, List<InspectionHookInstallResult>> entry : resultsByChain.entrySet()) {
+            String portChainId = entry.getKey();
+            List<InspectionHookInstallResult> created = entry.getValue().stream()
+                    .filter(r -> r.getError() == null)
+                    .collect(toList());
+
+            if (created.isEmpty()) {
+                continue;
+            }
+
+            try {
+                PortChain portChain = OsCallsAsync.await(portChainFutures.get(portChainId));
+                checkArgument(portChain != null, "Cannot find %s by id: %s!", "Service Function Chain", portChainId);
+
+                List<String> hookIds = created.stream().map(InspectionHookInstallResult::getHookId).collect(toList());
+                this.portChainWriteQueue.await(
+                        this.portChainWriteQueue.addFlowClassifiers(this.osCalls, portChainId, portChain, hookIds));
+                for (InspectionHookInstallResult result : created) {
+                    this.inspectionHookIndex.put(result.getRequestedHook().getInspectedPort().getElementId(),
+                            portChainId, result.getHookId());
+                }
+            } catch (Exception e) {
+                LOG.error("Failed to add {} Flow Classifiers to Port Chain {}", created.size(), portChainId, e);
+
+                for (InspectionHookInstallResult result : created) {
+                    deleteFlowClassifierQuietly(result.getHookId());
+                    result.setHookId(null);
+                    result.setError(e);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private void deleteFlowClassifierQuietly(String flowClassifierId) {
+        try {
+            this.osCalls.deleteFlowClassifier(flowClassifierId);
+        } catch (Exception e) {
+            LOG.warn("Failed to clean up Flow Classifier {}", flowClassifierId, e);
+        }
     }
 
     @Override
     public void updateInspectionHook(InspectionHookElement providedHook) throws Exception {
-
         if (providedHook == null || providedHook.getHookId() == null) {
             throw new IllegalArgumentException("Attempt to update a null Inspection Hook!");
         }
@@ -256,10 +445,20 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         checkArgument(providedInspectionPort != null && providedInspectionPort.getElementId() != null,
                       "null passed for %s !", "Service Function Chain");
 
-        FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(providedHook.getHookId());
+        // Only the protected port depends on the flow classifier
+        CompletableFuture<FlowClassifier> flowClassifierFuture = this.osCallsAsync.getFlowClassifier(providedHook.getHookId());
+        CompletableFuture<Port> protectedPortFuture = flowClassifierFuture.thenCompose(
+                fc -> fc != null ? this.osCallsAsync.supplyAsync(() -> this.utils.fetchProtectedPort(fc))
+                                 : CompletableFuture.completedFuture(null));
+        CompletableFuture<PortChain> providedPortChainFuture =
+                this.osCallsAsync.getPortChain(providedInspectionPort.getElementId());
+        CompletableFuture<PortChain> currentPortChainFuture =
+                this.osCallsAsync.findContainingPortChainForFC(providedHook.getHookId());
+
+        FlowClassifier flowClassifier = OsCallsAsync.await(flowClassifierFuture);
         checkArgument(flowClassifier != null, "Cannot find Flow Classifier %s", providedHook.getHookId());;
 
-        Port protectedPort = this.utils.fetchProtectedPort(flowClassifier);
+        Port protectedPort = OsCallsAsync.await(protectedPortFuture);
 
         // Detect attempt to re-write the inspected hook
         Set<String> ipsProtected = protectedPort.getFixedIps().stream().map(ip -> ip.getIpAddress()).collect(Collectors.toSet());
@@ -270,24 +469,26 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
                             providedInspectedPort.getElementId(), protectedPort.getId(), flowClassifier.getId()));
         }
 
-        PortChain providedPortChain = this.osCalls.getPortChain(providedInspectionPort.getElementId());
+        PortChain providedPortChain = OsCallsAsync.await(providedPortChainFuture);
         checkArgument(providedPortChain != null, "null passed for %s !", "Service Function Chain");
 
-        PortChain currentPortChain = this.utils.fetchContainingPortChainForFC(flowClassifier.getId());
+        PortChain currentPortChain = OsCallsAsync.await(currentPortChainFuture);
 
         if (currentPortChain != null) {
             if (currentPortChain.getId().equals(providedInspectionPort.getElementId())) {
                 return;
             }
-            currentPortChain.getFlowClassifiers().remove(flowClassifier.getId());
-            this.osCalls.updatePortChain(currentPortChain.getId(), currentPortChain);
-        }
-
-        if (!providedPortChain.getFlowClassifiers().contains(flowClassifier.getId())) {
-            providedPortChain.getFlowClassifiers().add(flowClassifier.getId());
+            // Chains of the topology cache may be stale, the update reads it again
+            this.portChainWriteQueue.await(this.portChainWriteQueue.removeFlowClassifiers(this.osCalls,
+                    currentPortChain.getId(), null, singletonList(flowClassifier.getId())));
+            this.inspectionHookIndex.remove(flowClassifier.getLogicalDestinationPort(), currentPortChain.getId(),
+                    flowClassifier.getId());
         }
 
-        this.osCalls.updatePortChain(providedPortChain.getId(), providedPortChain);
+        this.portChainWriteQueue.await(this.portChainWriteQueue.addFlowClassifiers(this.osCalls,
+                providedPortChain.getId(), providedPortChain, singletonList(flowClassifier.getId())));
+        this.inspectionHookIndex.put(flowClassifier.getLogicalDestinationPort(), providedPortChain.getId(),
+                flowClassifier.getId());
     }
 
     @Override
@@ -297,21 +498,86 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
             return;
         }
 
-        FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(inspectionHookId);
+        CompletableFuture<FlowClassifier> flowClassifierFuture = this.osCallsAsync.getFlowClassifier(inspectionHookId);
+        CompletableFuture<PortChain> portChainFuture = this.osCallsAsync.findContainingPortChainForFC(inspectionHookId);
+
+        FlowClassifier flowClassifier = OsCallsAsync.await(flowClassifierFuture);
         if (flowClassifier == null) {
             LOG.warn("Flow Classifier {} does not exist on openstack", inspectionHookId);
             return;
         }
 
-        PortChain portChain = this.utils.fetchContainingPortChainForFC(flowClassifier.getId());
-        if (portChain != null) {
-            portChain.getFlowClassifiers().remove(flowClassifier.getId());
-            this.osCalls.updatePortChain(portChain.getId(), portChain);
+        PortChain portChain = OsCallsAsync.await(portChainFuture);
+        removeFlowClassifier(flowClassifier, portChain != null ? portChain.getId() : null);
+    }
+
+    @Override
+    public void removeInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
+            throws Exception {
+        if (inspectedPort == null || inspectedPort.getElementId() == null
+                || inspectionPort == null || inspectionPort.getElementId() == null) {
+            LOG.warn("Attempt to remove an Inspection Hook with null Inspected Port or Service Function Chain");
+            return;
+        }
+
+        FlowClassifier flowClassifier = this.osCalls.findInspectionHook(inspectedPort.getElementId(),
+                inspectionPort.getElementId());
+        if (flowClassifier == null) {
+            LOG.warn("No Flow Classifier for Inspected Port {} in Port Chain {}", inspectedPort.getElementId(),
+                    inspectionPort.getElementId());
+            return;
+        }
+
+        removeFlowClassifier(flowClassifier, inspectionPort.getElementId());
+    }
+
+    private void removeFlowClassifier(FlowClassifier flowClassifier, String portChainId) throws Exception {
+        if (portChainId != null) {
+            // Chains of the topology cache may be stale, the update reads it again
+            this.portChainWriteQueue.await(this.portChainWriteQueue.removeFlowClassifiers(this.osCalls, portChainId,
+                    null, singletonList(flowClassifier.getId())));
+            this.inspectionHookIndex.remove(flowClassifier.getLogicalDestinationPort(), portChainId,
+                    flowClassifier.getId());
         }
 
         this.osCalls.deleteFlowClassifier(flowClassifier.getId());
     }
 
+    @Override
+    public void removeAllInspectionHooks(NetworkElement inspectedPort) throws Exception {
+        if (inspectedPort == null || inspectedPort.getElementId() == null) {
+            LOG.warn("Attempt to remove the Inspection Hooks of a null Inspected Port");
+            return;
+        }
+
+        String inspectedPortId = inspectedPort.getElementId();
+        List<String> flowClassifierIds = this.osCalls.listFlowClassifiersByDestinationPort(inspectedPortId).stream()
+                .map(FlowClassifier::getId).collect(toList());
+        if (flowClassifierIds.isEmpty()) {
+            return;
+        }
+
+        // One update per chain, the classifiers can only be deleted once out of their chain
+        Map<String, List<String>> flowClassifierIdsByChain = new LinkedHashMap<>();
+        this.osCalls.findContainingPortChainsForFCs(flowClassifierIds).forEach((flowClassifierId, portChain) ->
+                flowClassifierIdsByChain.computeIfAbsent(portChain.getId(), k -> new ArrayList<>())
+                        .add(flowClassifierId));
+
+        List<CompletableFuture<?>> updates = new ArrayList<>();
+        flowClassifierIdsByChain.forEach((portChainId, ids) ->
+                updates.add(this.portChainWriteQueue.removeFlowClassifiers(this.osCalls, portChainId, null, ids)));
+        this.portChainWriteQueue.await(CompletableFuture.allOf(updates.toArray(new CompletableFuture<?>[0])));
+
+        List<CompletableFuture<?>> deletes = new ArrayList<>();
+        for (String flowClassifierId : flowClassifierIds) {
+            deletes.add(this.osCallsAsync.deleteFlowClassifier(flowClassifierId));
+        }
+        OsCallsAsync.await(CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0])));
+
+        flowClassifierIdsByChain.forEach((portChainId, ids) ->
+                ids.forEach(id -> this.inspectionHookIndex.remove(inspectedPortId, portChainId, id)));
+    }
+
     @Override
     public InspectionHookElement getInspectionHook(String inspectionHookId) throws Exception {
         if (inspectionHookId == null) {
@@ -319,7 +585,10 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
             return null;
         }
 
-        FlowClassifier flowClassifier = this.osCalls.getFlowClassifier(inspectionHookId);
+        CompletableFuture<FlowClassifier> flowClassifierFuture = this.osCallsAsync.getFlowClassifier(inspectionHookId);
+        CompletableFuture<PortChain> portChainFuture = this.osCallsAsync.findContainingPortChainForFC(inspectionHookId);
+
+        FlowClassifier flowClassifier = OsCallsAsync.await(flowClassifierFuture);
 
         if (flowClassifier == null) {
             LOG.warn("No flow classifier for id %s", inspectionHookId);
@@ -327,7 +596,7 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         }
 
         FlowClassifierElement retVal = new FlowClassifierElement(inspectionHookId);
-        PortChain portChain = this.utils.fetchContainingPortChainForFC(inspectionHookId);
+        PortChain portChain = OsCallsAsync.await(portChainFuture);
 
         // only inspectionPort part of the returned object is ever used, which is SFC
         if (portChain != null) {
@@ -339,6 +608,48 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         return retVal;
     }
 
+    @Override
+    public InspectionHookElement getInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
+            throws Exception {
+        if (inspectedPort == null || inspectedPort.getElementId() == null
+                || inspectionPort == null || inspectionPort.getElementId() == null) {
+            LOG.warn("Attempt to get an Inspection Hook with null Inspected Port or Service Function Chain");
+            return null;
+        }
+
+        FlowClassifier flowClassifier = this.osCalls.findInspectionHook(inspectedPort.getElementId(),
+                inspectionPort.getElementId());
+        if (flowClassifier == null) {
+            return null;
+        }
+
+        NetworkElementImpl inspectedPortElement = new NetworkElementImpl(inspectedPort.getElementId(),
+                inspectedPort.getMacAddresses(), inspectedPort.getPortIPs(), inspectedPort.getParentId());
+        ServiceFunctionChainElement sfcElement = new ServiceFunctionChainElement(inspectionPort.getElementId());
+        FlowClassifierElement retVal = new FlowClassifierElement(flowClassifier.getId(), inspectedPortElement,
+                sfcElement);
+        sfcElement.getInspectionHooks().add(retVal);
+
+        return retVal;
+    }
+
+    /**
+     * Makes neutron match the complete set of port pairs, port pair groups, port chains and inspection hooks OSC
+     * expects, listing each kind of object once rather than looking them up one by one.
+     *
+     * @param serviceFunctionChains every port chain, with their port pair groups and inspection hooks
+     * @param portPairGroups every port pair group, including those in no chain yet
+     * @return the creates, updates and deletes applied, with their failures
+     * @see ReconciliationEngine
+     */
+    public ReconciliationReport reconcile(List<ServiceFunctionChainElement> serviceFunctionChains,
+            List<PortPairGroupElement> portPairGroups) throws Exception {
+        ReconciliationEngine engine = new ReconciliationEngine(this.osCalls, this.osCallsAsync, this.utils,
+                this.portChainWriteQueue);
+        return this.osCalls.getMetrics().measure("reconcile",
+                () -> engine.reconcile(serviceFunctionChains, portPairGroups));
+    }
+
     // SFC methods
     @Override
     public NetworkElement registerNetworkElement(List<NetworkElement> portPairGroupList) throws Exception {
@@ -381,17 +692,18 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         checkArgument(portChain != null,
                       "Cannot find %s by id: %s!", "Service Function Chain", serviceFunctionChain.getElementId());
 
-        portChain = Builders.portChain().from(portChain)
-                            .portPairGroups(Collections.emptyList()).build();
-        this.osCalls.updatePortChain(portChain.getId(), portChain);
-
         List<String> portPairGroupIds = portPairGroupList
                 .stream()
                 .map(ppg -> ppg.getElementId())
                 .collect(toList());
 
-        portChain = Builders.portChain().portPairGroups(portPairGroupIds).build();
-        PortChain portChainUpdated = this.osCalls.updatePortChain(serviceFunctionChain.getElementId(), portChain);
+        PortChain portChainUpdated = portChain;
+        if (!portPairGroupIds.equals(portChain.getPortPairGroups())) {
+            PortChain cleared = this.osCalls.updatePortChain(portChain.getId(), portChain,
+                    Builders.portChain().portPairGroups(Collections.emptyList()).build());
+            portChainUpdated = this.osCalls.updatePortChain(portChain.getId(), cleared,
+                    Builders.portChain().portPairGroups(portPairGroupIds).build());
+        }
 
         List<PortPairGroupElement> portPairGroups =
                 portPairGroupIds.stream().map(id -> new PortPairGroupElement(id)).collect(toList());
@@ -406,7 +718,11 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         checkArgument(serviceFunctionChain != null && serviceFunctionChain.getElementId() != null,
                       "null passed for %s !", "Service Function Chain Id");
 
-        this.osCalls.deletePortChain(serviceFunctionChain.getElementId());
+        if (this.cascadeDelete) {
+            new ChainTeardown(this.osCalls, this.osCallsAsync).teardown(serviceFunctionChain.getElementId());
+        } else {
+            this.osCalls.deletePortChain(serviceFunctionChain.getElementId());
+        }
     }
 
     @Override
@@ -432,28 +748,39 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         return new ArrayList<>(portPairGroupElements);
     }
 
-    // Unsupported operations in SFC
+    /**
+     * @return the port of the device as a network element, null if it has none
+     * @throws IllegalStateException if the device has more than one port
+     */
     @Override
-    public InspectionHookElement getInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
-            throws Exception {
-        throw new UnsupportedOperationException(String.format(
-                "Retriving inspection hooks with Inspected port: %s and Inspection port: %s is not supported.",
-                inspectedPort, inspectedPort));
-    }
+    public NetworkElement getNetworkElementByDeviceOwnerId(String deviceOwnerId) throws Exception {
+        checkArgument(deviceOwnerId != null, "null passed for %s !", "Device Owner Id");
 
-    @Override
-    public void removeAllInspectionHooks(NetworkElement inspectedPort) throws Exception {
-        throw new UnsupportedOperationException("Removing all inspection hooks is not supported in neutron SFC.");
-    }
+        List<Port> ports = this.devicePortCache.getPorts(deviceOwnerId, this.osCalls);
+        if (ports.isEmpty()) {
+            LOG.warn("No Port found for device {}", deviceOwnerId);
+            return null;
+        }
+        // A network element is a single port, none of the ports of the device stands for the others
+        if (ports.size() > 1) {
+            throw new IllegalStateException(String.format("Found %d ports on device %s, expected a single one",
+                    ports.size(), deviceOwnerId));
+        }
 
-    @Override
-    public void removeInspectionHook(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
-            throws Exception {
-        throw new UnsupportedOperationException(String.format(
-                "Removing inspection hooks with Inspected port: %s and Inspection port: %s is not supported.",
-                inspectedPort, inspectedPort));
+        Port port = ports.get(0);
+        List<String> macAddresses = new ArrayList<>();
+        List<String> portIps = new ArrayList<>();
+        if (port.getMacAddress() != null) {
+            macAddresses.add(port.getMacAddress());
+        }
+        if (port.getFixedIps() != null) {
+            port.getFixedIps().forEach(ip -> portIps.add(ip.getIpAddress()));
+        }
+
+        return new NetworkElementImpl(port.getId(), macAddresses, portIps, null);
     }
 
+    // Unsupported operations in SFC
     @Override
     public Long getInspectionHookTag(NetworkElement inspectedPort, InspectionPortElement inspectionPort)
             throws NetworkPortNotFoundException, Exception {
@@ -490,12 +817,6 @@ public class NeutronSfcSdnRedirectionApi implements SdnRedirectionApi {
         throw new UnsupportedOperationException("Hook order is not supported in neutron SFC.");
     }
 
-    @Override
-    public NetworkElement getNetworkElementByDeviceOwnerId(String deviceOwnerId) throws Exception {
-        throw new UnsupportedOperationException(
-                "Retrieving the network element given the device owner id is currently not supported.");
-    }
-
     @Override
     public void close() throws Exception {
     }
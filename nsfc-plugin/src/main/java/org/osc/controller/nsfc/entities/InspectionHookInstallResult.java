@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.entities;
+
+import org.osc.sdk.controller.element.InspectionHookElement;
+
+/**
+ * Outcome of installing one inspection hook of a batch: either the id of the created hook or the failure.
+ */
+public class InspectionHookInstallResult {
+
+    private final InspectionHookElement requestedHook;
+
+    private String hookId;
+
+    private Exception error;
+
+    public InspectionHookInstallResult(InspectionHookElement requestedHook) {
+        this.requestedHook = requestedHook;
+    }
+
+    public InspectionHookElement getRequestedHook() {
+        return this.requestedHook;
+    }
+
+    public String getHookId() {
+        return this.hookId;
+    }
+
+    public void setHookId(String hookId) {
+        this.hookId = hookId;
+    }
+
+    public Exception getError() {
+        return this.error;
+    }
+
+    public void setError(Exception error) {
+        this.error = error;
+    }
+
+    public boolean isSuccess() {
+        return this.error == null && this.hookId != null;
+    }
+
+    @Override
+    public String toString() {
+        return "InspectionHookInstallResult [requestedHook=" + this.requestedHook + ", hookId=" + this.hookId
+                + ", error=" + this.error + "]";
+    }
+}
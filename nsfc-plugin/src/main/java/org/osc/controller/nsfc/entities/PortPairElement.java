@@ -47,6 +47,10 @@ public class PortPairElement implements InspectionPortElement {
         return this.elementId;
     }
 
+    public void setElementId(String elementId) {
+        this.elementId = elementId;
+    }
+
     @Override
     public NetworkElementImpl getIngressPort() {
         return this.ingressPort;
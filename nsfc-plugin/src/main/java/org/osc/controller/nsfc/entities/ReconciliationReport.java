@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.entities;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Actions a reconciliation applied to openstack, in the order they completed, failed ones included.
+ */
+public class ReconciliationReport {
+
+    public enum ActionType {
+        CREATE, UPDATE, DELETE
+    }
+
+    public static class Action {
+
+        private final ActionType type;
+
+        private final String resource;
+
+        private final String id;
+
+        private final Exception error;
+
+        public Action(ActionType type, String resource, String id, Exception error) {
+            this.type = type;
+            this.resource = resource;
+            this.id = id;
+            this.error = error;
+        }
+
+        public ActionType getType() {
+            return this.type;
+        }
+
+        /**
+         * @return the kind of openstack object, as named by {@link org.osc.controller.nsfc.utils.OsCallMetrics}
+         */
+        public String getResource() {
+            return this.resource;
+        }
+
+        /**
+         * @return the id of the object, null for a create that failed
+         */
+        public String getId() {
+            return this.id;
+        }
+
+        public Exception getError() {
+            return this.error;
+        }
+
+        public boolean isSuccess() {
+            return this.error == null;
+        }
+
+        @Override
+        public String toString() {
+            return "Action [type=" + this.type + ", resource=" + this.resource + ", id=" + this.id
+                    + ", error=" + this.error + "]";
+        }
+    }
+
+    private final List<Action> actions = new ArrayList<>();
+
+    public synchronized void add(Action action) {
+        this.actions.add(action);
+    }
+
+    public synchronized List<Action> getActions() {
+        return new ArrayList<>(this.actions);
+    }
+
+    public synchronized List<Action> getFailures() {
+        return this.actions.stream().filter(a -> !a.isSuccess()).collect(toList());
+    }
+
+    public synchronized boolean isSuccess() {
+        return this.actions.stream().allMatch(Action::isSuccess);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ReconciliationReport [actions=" + this.actions + "]";
+    }
+}
@@ -45,6 +45,10 @@ public class ServiceFunctionChainElement implements NetworkElement, InspectionPo
         return this.elementId;
     }
 
+    public void setElementId(String elementId) {
+        this.elementId = elementId;
+    }
+
     public List<PortPairGroupElement> getPortPairGroups() {
         return this.portPairGroups;
     }
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.osc.controller.nsfc.utils.ReconciliationEngine.FLOW_CLASSIFIER_PREFIX;
+import static org.osc.controller.nsfc.utils.ReconciliationEngine.PORT_PAIR_GROUP_PREFIX;
+import static org.osc.controller.nsfc.utils.ReconciliationEngine.PORT_PAIR_PREFIX;
+import static org.osc.controller.nsfc.utils.SfcSnapshot.isOwned;
+import static org.osc.controller.nsfc.utils.SfcSnapshot.toException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deletes a port chain along with the port pair groups, port pairs and flow classifiers OSC created for it.
+ * <p>
+ * The whole tree is resolved from a single listing of each resource type, then deleted in the order neutron
+ * requires: the chain, its groups, and last their port pairs along with the flow classifiers of the chain.
+ * The deletes of a level run in parallel on the project executor. A group still in another chain and a flow
+ * classifier still in another chain are kept, and so are the objects OSC did not create, recognized by their
+ * name. Objects whose parent could not be deleted are kept as well.
+ */
+public class ChainTeardown {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChainTeardown.class);
+
+    private final OsCalls osCalls;
+    private final OsCallsAsync osCallsAsync;
+
+    private final Map<String, PortPair> portPairs = new HashMap<>();
+    private final Map<String, PortPairGroup> portPairGroups = new HashMap<>();
+    private final Map<String, PortChain> portChains = new HashMap<>();
+    private final Map<String, FlowClassifier> flowClassifiers = new HashMap<>();
+
+    public ChainTeardown(OsCalls osCalls, OsCallsAsync osCallsAsync) {
+        this.osCalls = osCalls;
+        this.osCallsAsync = osCallsAsync;
+    }
+
+    /**
+     * @throws Exception the first failure, with the others as suppressed ones, once every delete not depending
+     *             on the failed ones was attempted
+     */
+    public void teardown(String portChainId) throws Exception {
+        snapshot();
+
+        PortChain portChain = this.portChains.remove(portChainId);
+        if (portChain == null) {
+            // Deleted already, or never listed: the chain alone is deleted as before
+            this.osCalls.deletePortChain(portChainId);
+            return;
+        }
+
+        Set<String> otherChainsGroups = this.portChains.values().stream()
+                .flatMap(c -> idsOf(c.getPortPairGroups()).stream()).collect(toSet());
+        Set<String> otherChainsFlowClassifiers = this.portChains.values().stream()
+                .flatMap(c -> idsOf(c.getFlowClassifiers()).stream()).collect(toSet());
+
+        List<Exception> failures = new ArrayList<>();
+
+        List<CompletableFuture<String>> chainLevel = new ArrayList<>();
+        chainLevel.add(delete(portChainId, () -> this.osCalls.deletePortChain(portChainId), failures));
+        if (succeeded(chainLevel).isEmpty()) {
+            throw failure(failures);
+        }
+
+        List<CompletableFuture<String>> groupLevel = new ArrayList<>();
+        for (String id : idsOf(portChain.getPortPairGroups())) {
+            PortPairGroup portPairGroup = this.portPairGroups.get(id);
+            if (portPairGroup != null && !otherChainsGroups.contains(id)
+                    && isOwned(portPairGroup.getName(), PORT_PAIR_GROUP_PREFIX)) {
+                groupLevel.add(delete(id, () -> this.osCalls.deletePortPairGroup(id), failures));
+            }
+        }
+
+        List<CompletableFuture<String>> leafLevel = new ArrayList<>();
+        for (String groupId : succeeded(groupLevel)) {
+            for (String id : idsOf(this.portPairGroups.get(groupId).getPortPairs())) {
+                PortPair portPair = this.portPairs.get(id);
+                if (portPair != null && isOwned(portPair.getName(), PORT_PAIR_PREFIX)) {
+                    leafLevel.add(delete(id, () -> this.osCalls.deletePortPair(id), failures));
+                }
+            }
+        }
+        for (String id : idsOf(portChain.getFlowClassifiers())) {
+            FlowClassifier flowClassifier = this.flowClassifiers.get(id);
+            if (flowClassifier != null && !otherChainsFlowClassifiers.contains(id)
+                    && isOwned(flowClassifier.getName(), FLOW_CLASSIFIER_PREFIX)) {
+                leafLevel.add(delete(id, () -> this.osCalls.deleteFlowClassifier(id), failures));
+            }
+        }
+        awaitAll(leafLevel);
+
+        LOG.info("Port chain {} torn down with {} port pair groups and {} port pairs and flow classifiers, {} failed",
+                portChainId, groupLevel.size(), leafLevel.size(), failures.size());
+        if (!failures.isEmpty()) {
+            throw failure(failures);
+        }
+    }
+
+    private void snapshot() throws Exception {
+        SfcSnapshot snapshot = SfcSnapshot.list(this.osCalls, this.osCallsAsync);
+        this.portPairs.putAll(snapshot.getPortPairs());
+        this.portPairGroups.putAll(snapshot.getPortPairGroups());
+        this.portChains.putAll(snapshot.getPortChains());
+        this.flowClassifiers.putAll(snapshot.getFlowClassifiers());
+    }
+
+    /**
+     * @return a future of the id, or of null if the delete failed, the failure being added to the given ones.
+     *         It never completes exceptionally.
+     */
+    private CompletableFuture<String> delete(String id, Runnable call, List<Exception> failures) {
+        return this.osCallsAsync.runAsync(call).handle((nothing, t) -> {
+            if (t == null) {
+                return id;
+            }
+
+            Exception cause = toException(t);
+            LOG.warn("Port chain teardown failed to delete {}", id, cause);
+            synchronized (failures) {
+                failures.add(cause);
+            }
+            return null;
+        });
+    }
+
+    private static List<String> succeeded(List<CompletableFuture<String>> level) throws Exception {
+        awaitAll(level);
+        return level.stream().map(CompletableFuture::join).filter(Objects::nonNull).collect(toList());
+    }
+
+    private static void awaitAll(Collection<CompletableFuture<String>> level) throws Exception {
+        SfcSnapshot.awaitAll(level, SfcSnapshot.DEFAULT_TIMEOUT_MS, "port chain teardown deletes");
+    }
+
+    private static Exception failure(List<Exception> failures) {
+        Exception first = failures.get(0);
+        failures.stream().skip(1).filter(f -> f != first).forEach(first::addSuppressed);
+        return first;
+    }
+
+    private static List<String> idsOf(List<String> ids) {
+        return ids == null ? new ArrayList<>() : ids;
+    }
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstack4j.model.network.Port;
+
+/**
+ * Maps device ids, such as those of the VMs and service appliances, to their ports.
+ * <p>
+ * The ports of a device are listed on their own, filtered by device id on the openstack side. At most the
+ * configured number of devices are kept, the least recently looked up being dropped first, each for no longer
+ * than the time to live. A device without ports is not cached, its ports are likely being created. A device is
+ * dropped as soon as one of its ports is found gone.
+ */
+public class DevicePortCache {
+
+    public static final long DEFAULT_TTL_MS = 60000;
+
+    public static final int DEFAULT_MAX_DEVICES = 1000;
+
+    private final long ttlMillis;
+
+    private final Map<String, DevicePorts> portsByDevice;
+
+    public DevicePortCache() {
+        this(DEFAULT_TTL_MS, DEFAULT_MAX_DEVICES);
+    }
+
+    /**
+     * @param ttlMillis age after which the ports of a device are listed again. Zero or less lists them every time.
+     * @param maxDevices number of devices beyond which the least recently looked up is dropped
+     */
+    public DevicePortCache(long ttlMillis, int maxDevices) {
+        this.ttlMillis = ttlMillis;
+        this.portsByDevice = new LinkedHashMap<String, DevicePorts>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DevicePorts> eldest) {
+                return size() > maxDevices;
+            }
+        };
+    }
+
+    /**
+     * @return the ports of the device with their {@link OsCalls#PORT_DEVICE_FIELDS}, empty if it has none
+     */
+    public List<Port> getPorts(String deviceId, OsCalls osCalls) {
+        synchronized (this) {
+            DevicePorts entry = this.portsByDevice.get(deviceId);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt < this.ttlMillis) {
+                return entry.ports;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        List<Port> ports = new ArrayList<>(osCalls.listPortsByDeviceId(deviceId));
+
+        synchronized (this) {
+            if (ports.isEmpty()) {
+                this.portsByDevice.remove(deviceId);
+            } else {
+                this.portsByDevice.put(deviceId, new DevicePorts(ports, start));
+            }
+        }
+        return ports;
+    }
+
+    /**
+     * Drops the device, typically because its ports were added or removed.
+     */
+    public synchronized void invalidate(String deviceId) {
+        this.portsByDevice.remove(deviceId);
+    }
+
+    /**
+     * Drops the device the port belongs to, if cached.
+     */
+    public synchronized void invalidatePort(String portId) {
+        Iterator<DevicePorts> entries = this.portsByDevice.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().ports.stream().anyMatch(port -> portId.equals(port.getId()))) {
+                entries.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return this.portsByDevice.size();
+    }
+
+    private static class DevicePorts {
+        final List<Port> ports;
+        final long loadedAt;
+
+        DevicePorts(List<Port> ports, long loadedAt) {
+            this.ports = ports;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.List;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+
+/**
+ * Neutron list queries filtered on the server side, which the openstack4j services do not offer.
+ * Null filters are left out of the query.
+ * <p>
+ * The paged queries return at most {@code limit} resources sorted by id, starting after the resource whose
+ * id is the marker, or from the first one with a null marker. Neutron deployments with pagination disabled
+ * ignore both and return everything.
+ * <p>
+ * Queries taking fields return resources with only those attributes set, or whole resources for null fields.
+ * Paged queries need the id among them, being the next marker.
+ */
+public interface FilteredQueryService {
+
+    List<? extends PortPair> listPortPairs(String ingressId, String egressId);
+
+    List<? extends Port> listPorts(String deviceOwner, String subnetId);
+
+    /**
+     * @return the port, null if it does not exist
+     */
+    Port getPort(String portId, List<String> fields);
+
+    List<? extends PortPair> listPortPairs(String ingressId, String egressId, int limit, String marker,
+            List<String> fields);
+
+    List<? extends Port> listPorts(String deviceOwner, String subnetId, int limit, String marker, List<String> fields);
+
+    List<? extends PortPairGroup> listPortPairGroups(int limit, String marker, List<String> fields);
+
+    List<? extends PortChain> listPortChains(int limit, String marker, List<String> fields);
+
+    /**
+     * @return the ports among the given ids that exist, in no particular order. Fields need the id.
+     */
+    List<? extends Port> listPortsById(List<String> portIds, List<String> fields);
+
+    /**
+     * @return the port pairs among the given ids that exist, in no particular order. Fields need the id.
+     */
+    List<? extends PortPair> listPortPairsById(List<String> portPairIds, List<String> fields);
+
+    /**
+     * @return the ports of the device, such as a VM
+     */
+    List<? extends Port> listPortsByDeviceId(String deviceId, List<String> fields);
+
+    /**
+     * @return the ports with any of the MAC addresses
+     */
+    List<? extends Port> listPortsByMacAddress(List<String> macAddresses, List<String> fields);
+
+    /**
+     * @return the ports with a fixed ip among the given addresses
+     */
+    List<? extends Port> listPortsByIpAddress(List<String> ipAddresses, List<String> fields);
+
+    /**
+     * @return the flow classifiers steering the traffic to the given port
+     */
+    List<? extends FlowClassifier> listFlowClassifiers(String logicalDestinationPort);
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.List;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.openstack.networking.domain.NeutronPort;
+import org.openstack4j.openstack.networking.domain.NeutronPort.Ports;
+import org.openstack4j.openstack.networking.domain.ext.NeutronFlowClassifier.FlowClassifiers;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortChain.PortChains;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortPair.PortPairs;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortPairGroup.PortPairGroups;
+import org.openstack4j.openstack.networking.internal.BaseNetworkingServices;
+
+/**
+ * Issues the queries through the openstack4j session bound to the calling thread, like the openstack4j services do.
+ */
+public class FilteredQueryServiceImpl extends BaseNetworkingServices implements FilteredQueryService {
+
+    @Override
+    public List<? extends PortPair> listPortPairs(String ingressId, String egressId) {
+        return listPortPairs(ingressId, egressId, 0, null, null);
+    }
+
+    @Override
+    public List<? extends Port> listPorts(String deviceOwner, String subnetId) {
+        return listPorts(deviceOwner, subnetId, 0, null, null);
+    }
+
+    @Override
+    public Port getPort(String portId, List<String> fields) {
+        return project(get(NeutronPort.class, uri("/ports/%s", portId)), fields).execute();
+    }
+
+    @Override
+    public List<? extends PortPair> listPortPairs(String ingressId, String egressId, int limit, String marker,
+            List<String> fields) {
+        Invocation<PortPairs> invocation = project(page(get(PortPairs.class, uri("/sfc/port_pairs")), limit, marker),
+                                                   fields);
+        if (ingressId != null) {
+            invocation = invocation.param("ingress", ingressId);
+        }
+        if (egressId != null) {
+            invocation = invocation.param("egress", egressId);
+        }
+        return invocation.execute().getList();
+    }
+
+    @Override
+    public List<? extends Port> listPorts(String deviceOwner, String subnetId, int limit, String marker,
+            List<String> fields) {
+        Invocation<Ports> invocation = project(page(get(Ports.class, uri("/ports")), limit, marker), fields);
+        if (deviceOwner != null) {
+            invocation = invocation.param("device_owner", deviceOwner);
+        }
+        if (subnetId != null) {
+            invocation = invocation.param("fixed_ips", "subnet_id=" + subnetId);
+        }
+        return invocation.execute().getList();
+    }
+
+    @Override
+    public List<? extends PortPairGroup> listPortPairGroups(int limit, String marker, List<String> fields) {
+        return project(page(get(PortPairGroups.class, uri("/sfc/port_pair_groups")), limit, marker), fields)
+                .execute().getList();
+    }
+
+    @Override
+    public List<? extends PortChain> listPortChains(int limit, String marker, List<String> fields) {
+        return project(page(get(PortChains.class, uri("/sfc/port_chains")), limit, marker), fields)
+                .execute().getList();
+    }
+
+    @Override
+    public List<? extends Port> listPortsById(List<String> portIds, List<String> fields) {
+        return project(ids(get(Ports.class, uri("/ports")), portIds), fields).execute().getList();
+    }
+
+    @Override
+    public List<? extends PortPair> listPortPairsById(List<String> portPairIds, List<String> fields) {
+        return project(ids(get(PortPairs.class, uri("/sfc/port_pairs")), portPairIds), fields).execute().getList();
+    }
+
+    @Override
+    public List<? extends Port> listPortsByDeviceId(String deviceId, List<String> fields) {
+        return project(get(Ports.class, uri("/ports")).param("device_id", deviceId), fields).execute().getList();
+    }
+
+    @Override
+    public List<? extends Port> listPortsByMacAddress(List<String> macAddresses, List<String> fields) {
+        Invocation<Ports> invocation = get(Ports.class, uri("/ports"));
+        for (String macAddress : macAddresses) {
+            invocation = invocation.param("mac_address", macAddress);
+        }
+        return project(invocation, fields).execute().getList();
+    }
+
+    @Override
+    public List<? extends Port> listPortsByIpAddress(List<String> ipAddresses, List<String> fields) {
+        Invocation<Ports> invocation = get(Ports.class, uri("/ports"));
+        for (String ipAddress : ipAddresses) {
+            invocation = invocation.param("fixed_ips", "ip_address=" + ipAddress);
+        }
+        return project(invocation, fields).execute().getList();
+    }
+
+    @Override
+    public List<? extends FlowClassifier> listFlowClassifiers(String logicalDestinationPort) {
+        return get(FlowClassifiers.class, uri("/sfc/flow_classifiers"))
+                .param("logical_destination_port", logicalDestinationPort).execute().getList();
+    }
+
+    /**
+     * Neutron takes one id parameter per resource.
+     */
+    private static <R> Invocation<R> ids(Invocation<R> invocation, List<String> ids) {
+        for (String id : ids) {
+            invocation = invocation.param("id", id);
+        }
+        return invocation;
+    }
+
+    /**
+     * A limit of zero or less leaves the query unpaged.
+     */
+    private static <R> Invocation<R> page(Invocation<R> invocation, int limit, String marker) {
+        if (limit <= 0) {
+            return invocation;
+        }
+
+        invocation = invocation.param("limit", limit);
+        if (marker != null) {
+            invocation = invocation.param("marker", marker);
+        }
+        return invocation;
+    }
+
+    /**
+     * Neutron takes one fields parameter per attribute.
+     */
+    private static <R> Invocation<R> project(Invocation<R> invocation, List<String> fields) {
+        if (fields != null) {
+            for (String field : fields) {
+                invocation = invocation.param("fields", field);
+            }
+        }
+        return invocation;
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstack4j.model.network.IP;
+import org.openstack4j.model.network.Port;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Maps subnet ids to the router interface port acting as default gateway on that subnet.
+ * <p>
+ * The map is built from a paged listing of the router interface ports of the project, filtered
+ * by device owner on the openstack side. It is rebuilt by a single caller when it is older than the
+ * configured time to live. A subnet not found in it, or {@link #invalidate(String) invalidated}, is queried
+ * on its own.
+ */
+public class GatewayPortResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GatewayPortResolver.class);
+
+    public static final String ROUTER_INTERFACE_DEVICE_OWNER = "network:router_interface";
+
+    public static final long DEFAULT_TTL_MS = 300000;
+
+    private final long ttlMillis;
+
+    private volatile Map<String, Port> gatewayPortBySubnet = new HashMap<>();
+    private volatile long loadedAt;
+    private volatile boolean loaded;
+
+    public GatewayPortResolver() {
+        this(DEFAULT_TTL_MS);
+    }
+
+    /**
+     * @param ttlMillis age after which the subnet map is rebuilt. Zero or less rebuilds it on every call.
+     */
+    public GatewayPortResolver(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the router interface port for the subnet, or null if the subnet has no router interface
+     * @throws IllegalStateException if more than one router interface port is attached to the subnet
+     */
+    public Port resolve(String subnetId, OsCalls osCalls) {
+        boolean reloaded = reloadIfStale(osCalls);
+
+        if (!reloaded && !this.gatewayPortBySubnet.containsKey(subnetId)) {
+            LOG.debug("No router interface cached for subnet {}. Querying the subnet", subnetId);
+            reload(subnetId, osCalls);
+        }
+
+        Port gatewayPort = this.gatewayPortBySubnet.get(subnetId);
+        if (gatewayPort == null && this.gatewayPortBySubnet.containsKey(subnetId)) {
+            throw new IllegalStateException(
+                    String.format("Found more than one router interface port on subnet %s", subnetId));
+        }
+
+        return gatewayPort;
+    }
+
+    /**
+     * Rebuilds the map if it is stale, so that it can be warmed up before the subnet is known.
+     */
+    public void refreshIfStale(OsCalls osCalls) {
+        reloadIfStale(osCalls);
+    }
+
+    public boolean isStale() {
+        return !this.loaded || System.currentTimeMillis() - this.loadedAt >= this.ttlMillis;
+    }
+
+    /**
+     * Drops the entry of a subnet, typically because its router interface was removed or replaced. The next
+     * call for the subnet queries it again.
+     */
+    public synchronized void invalidate(String subnetId) {
+        Map<String, Port> updated = new HashMap<>(this.gatewayPortBySubnet);
+        updated.remove(subnetId);
+        this.gatewayPortBySubnet = updated;
+    }
+
+    /**
+     * @return whether this call rebuilt the map, callers waiting for another one to do it finding it fresh
+     */
+    private boolean reloadIfStale(OsCalls osCalls) {
+        if (isStale()) {
+            synchronized (this) {
+                if (isStale()) {
+                    reload(osCalls);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private synchronized void reload(OsCalls osCalls) {
+        long start = System.currentTimeMillis();
+        Map<String, Port> updated = new HashMap<>();
+        osCalls.streamPorts(ROUTER_INTERFACE_DEVICE_OWNER, null, OsCalls.PORT_ADDRESS_FIELDS)
+                .forEach(port -> addRouterInterface(updated, port, null));
+
+        this.gatewayPortBySubnet = updated;
+        this.loadedAt = start;
+        this.loaded = true;
+    }
+
+    private synchronized void reload(String subnetId, OsCalls osCalls) {
+        // Queried meanwhile by another caller missing it
+        if (this.gatewayPortBySubnet.containsKey(subnetId)) {
+            return;
+        }
+
+        List<? extends Port> routerInterfacePorts =
+                osCalls.listPortsByDeviceOwnerAndSubnet(ROUTER_INTERFACE_DEVICE_OWNER, subnetId);
+
+        Map<String, Port> found = new HashMap<>();
+        for (Port port : routerInterfacePorts) {
+            addRouterInterface(found, port, subnetId);
+        }
+
+        if (found.containsKey(subnetId)) {
+            Map<String, Port> updated = new HashMap<>(this.gatewayPortBySubnet);
+            updated.put(subnetId, found.get(subnetId));
+            this.gatewayPortBySubnet = updated;
+        }
+    }
+
+    /**
+     * A subnet mapped to null has more than one router interface.
+     * @param onlySubnetId if not null, the other subnets of the port are skipped
+     */
+    private static void addRouterInterface(Map<String, Port> gatewayPortBySubnet, Port port, String onlySubnetId) {
+        if (!ROUTER_INTERFACE_DEVICE_OWNER.equals(port.getDeviceOwner()) || port.getFixedIps() == null) {
+            return;
+        }
+
+        for (IP ip : port.getFixedIps()) {
+            if (onlySubnetId != null && !onlySubnetId.equals(ip.getSubnetId())) {
+                continue;
+            }
+
+            if (!gatewayPortBySubnet.containsKey(ip.getSubnetId())) {
+                gatewayPortBySubnet.put(ip.getSubnetId(), port);
+            } else {
+                Port other = gatewayPortBySubnet.get(ip.getSubnetId());
+                if (other == null || !other.getId().equals(port.getId())) {
+                    gatewayPortBySubnet.put(ip.getSubnetId(), null);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import org.openstack4j.core.transport.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Settings of the http transport carrying the openstack calls, and statistics of its requests and connections.
+ * <p>
+ * The timeouts and connection limits go to openstack4j through the {@link #getConfig() config} of the sessions,
+ * which every connector honours at least in part. With the Apache HttpClient connector, the single client
+ * openstack4j builds for the whole JVM on the first call is also shaped by {@link PooledHttpClientInterceptor}
+ * once the transport is {@link #install installed}: the statistics are only collected then. Installing another
+ * transport, as a reconfigured component does, moves the statistics and connection limits over to it.
+ */
+public class HttpTransport implements HttpTransportMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpTransport.class);
+
+    public static final String OBJECT_NAME = "org.osc.nsfc:type=HttpTransport";
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 10000;
+    public static final int DEFAULT_READ_TIMEOUT_MS = 60000;
+    public static final int DEFAULT_MAX_CONNECTIONS = 64;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 16;
+    public static final long DEFAULT_KEEP_ALIVE_MS = 30000;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final long keepAliveMillis;
+    private final boolean compression;
+    private final Config config;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder connectionsOpened = new LongAdder();
+    private volatile IntSupplier leasedConnections = () -> 0;
+    private volatile IntSupplier idleConnections = () -> 0;
+    private volatile boolean installed;
+
+    public HttpTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MS, DEFAULT_READ_TIMEOUT_MS, DEFAULT_MAX_CONNECTIONS,
+             DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_KEEP_ALIVE_MS, true);
+    }
+
+    /**
+     * @param keepAliveMillis how long an idle connection is kept, unless the server asks for less
+     * @param compression whether to ask for compressed responses
+     */
+    public HttpTransport(int connectTimeoutMillis, int readTimeoutMillis, int maxConnections,
+            int maxConnectionsPerRoute, long keepAliveMillis, boolean compression) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.keepAliveMillis = keepAliveMillis;
+        this.compression = compression;
+        this.config = Config.newConfig()
+                .withConnectionTimeout(connectTimeoutMillis)
+                .withReadTimeout(readTimeoutMillis)
+                .withMaxConnections(maxConnections)
+                .withMaxConnectionsPerRoute(maxConnectionsPerRoute);
+    }
+
+    /**
+     * Makes openstack4j build its http client through this transport, if the uber bundle embeds the
+     * Apache HttpClient connector.
+     */
+    public void install() {
+        if (this.installed) {
+            return;
+        }
+
+        try {
+            PooledHttpClientInterceptor.register(this);
+        } catch (NoClassDefFoundError e) {
+            LOG.info("The openstack4j connector is not Apache HttpClient. Only the timeouts and connection limits apply");
+        }
+        this.installed = true;
+    }
+
+    /**
+     * Stops openstack4j from building its http client through this transport. The client already built keeps its
+     * pool, but no longer counts its requests and connections here. They go back to the transport installed
+     * before, if still installed, the client only losing the interceptor once no transport is left.
+     */
+    public void uninstall() {
+        if (!this.installed) {
+            return;
+        }
+
+        try {
+            PooledHttpClientInterceptor.unregister(this);
+        } catch (NoClassDefFoundError e) {
+            // Nothing was registered
+        }
+        this.installed = false;
+    }
+
+    /**
+     * @return the openstack4j config of the sessions, carrying the timeouts and connection limits. The same
+     *         instance is shared by all the sessions, so that connectors caching their clients by config reuse them
+     */
+    public Config getConfig() {
+        return this.config;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return this.connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return this.readTimeoutMillis;
+    }
+
+    public int getMaxConnections() {
+        return this.maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return this.maxConnectionsPerRoute;
+    }
+
+    public long getKeepAliveMillis() {
+        return this.keepAliveMillis;
+    }
+
+    public boolean isCompression() {
+        return this.compression;
+    }
+
+    @Override
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    @Override
+    public long getConnectionsOpened() {
+        return this.connectionsOpened.sum();
+    }
+
+    @Override
+    public double getConnectionReuseRate() {
+        long requests = this.requests.sum();
+        return requests == 0 ? 0 : Math.max(0, 1 - (double) this.connectionsOpened.sum() / requests);
+    }
+
+    @Override
+    public int getLeasedConnections() {
+        return this.leasedConnections.getAsInt();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return this.idleConnections.getAsInt();
+    }
+
+    void requestSent() {
+        this.requests.increment();
+    }
+
+    void connectionOpened() {
+        this.connectionsOpened.increment();
+    }
+
+    void poolStatistics(IntSupplier leasedConnections, IntSupplier idleConnections) {
+        this.leasedConnections = leasedConnections;
+        this.idleConnections = idleConnections;
+    }
+}
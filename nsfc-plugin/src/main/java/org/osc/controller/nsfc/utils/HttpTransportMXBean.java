@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+/**
+ * Management view of the http connections carrying the openstack calls, registered under
+ * {@link HttpTransport#OBJECT_NAME}.
+ */
+public interface HttpTransportMXBean {
+
+    /**
+     * @return the number of http requests sent, retries included
+     */
+    long getRequests();
+
+    /**
+     * @return the number of connections opened to openstack
+     */
+    long getConnectionsOpened();
+
+    /**
+     * @return the share of requests sent over a connection already open, between 0 and 1
+     */
+    double getConnectionReuseRate();
+
+    /**
+     * @return the number of pooled connections currently carrying a request
+     */
+    int getLeasedConnections();
+
+    /**
+     * @return the number of pooled connections kept alive and waiting for a request
+     */
+    int getIdleConnections();
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flow classifiers of the inspection hooks by inspected port and port chain.
+ * <p>
+ * A hook is a flow classifier whose logical destination port is the inspected port, see
+ * {@link RedirectionApiUtils#buildFlowClassifier}, in the port chain of the service function chain. Entries are
+ * recorded as hooks are installed or found, and may be stale: they are hints to be checked against openstack,
+ * a stale entry being removed once found so. At most the configured number of entries are kept, the least
+ * recently used being dropped first, so that the hooks removed behind the back of the plugin do not pile up.
+ */
+public class InspectionHookIndex {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final Map<List<String>, String> flowClassifierIds;
+
+    public InspectionHookIndex() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries number of entries beyond which the least recently used is dropped
+     */
+    public InspectionHookIndex(int maxEntries) {
+        this.flowClassifierIds = new LinkedHashMap<List<String>, String>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<String>, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the id of the flow classifier last recorded for the inspected port in the port chain, null if none
+     */
+    public synchronized String get(String inspectedPortId, String portChainId) {
+        return this.flowClassifierIds.get(key(inspectedPortId, portChainId));
+    }
+
+    public synchronized void put(String inspectedPortId, String portChainId, String flowClassifierId) {
+        this.flowClassifierIds.put(key(inspectedPortId, portChainId), flowClassifierId);
+    }
+
+    /**
+     * Forgets the entry, unless another flow classifier was recorded for the inspected port and port chain since.
+     */
+    public synchronized void remove(String inspectedPortId, String portChainId, String flowClassifierId) {
+        this.flowClassifierIds.remove(key(inspectedPortId, portChainId), flowClassifierId);
+    }
+
+    public synchronized int size() {
+        return this.flowClassifierIds.size();
+    }
+
+    private static List<String> key(String inspectedPortId, String portChainId) {
+        return Arrays.asList(inspectedPortId, portChainId);
+    }
+}
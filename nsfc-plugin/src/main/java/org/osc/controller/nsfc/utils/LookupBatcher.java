@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static java.util.stream.Collectors.toMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import org.openstack4j.model.common.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the lookups by id of a kind of resource, from any thread of the project, into list requests filtered
+ * on their ids.
+ * <p>
+ * The lookups arriving within the window following the first of them are looked up together, once the window
+ * is over or as soon as they reach the maximum batch size, whichever comes first. A lookup thus waits at most
+ * the window before its request is sent. The same id looked up twice in a batch is requested once.
+ * <p>
+ * The scheduler only ends the windows, the requests of the batches being sent on an executor of their own. That
+ * executor must not be one the lookups are made from, such as the workers of the controller: the callers
+ * waiting for their lookups could hold all of its threads and leave none to send the requests.
+ * A full batch is sent on the thread of its last lookup.
+ */
+public class LookupBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LookupBatcher.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    /**
+     * How long a lookup waits for its request beyond the window, enough for a list at the default read timeout.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 120000;
+
+    /**
+     * Lists the resources with the given ids, through the calls of the first lookup of the batch.
+     */
+    public interface ListByIds<T extends Resource> {
+        List<? extends T> list(OsCalls osCalls, List<String> ids);
+    }
+
+    private final long windowMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final ConcurrentMap<String, ResourceQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Leaves lookups alone, each one issued at once on its own.
+     */
+    public LookupBatcher() {
+        this(0, DEFAULT_MAX_BATCH_SIZE, null, null);
+    }
+
+    /**
+     * @param windowMillis how long lookups are collected before their request, zero to issue each one on its own
+     * @param maxBatchSize ids beyond which a batch is requested without waiting for the end of its window
+     * @param scheduler ends the windows, only needed with a window
+     * @param executor requests the batches at the end of their window, only needed with a window. Never a bounded
+     *            pool the lookups are made from
+     */
+    public LookupBatcher(long windowMillis, int maxBatchSize, ScheduledExecutorService scheduler, Executor executor) {
+        if (windowMillis > 0 && (scheduler == null || executor == null)) {
+            throw new IllegalArgumentException(
+                    "A scheduler and an executor are needed to look resources up after a window");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("The maximum batch size must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    public boolean isEnabled() {
+        return this.windowMillis > 0;
+    }
+
+    public long getWindowMillis() {
+        return this.windowMillis;
+    }
+
+    public int getMaxBatchSize() {
+        return this.maxBatchSize;
+    }
+
+    /**
+     * Waits for a lookup, at most the window and {@link #DEFAULT_TIMEOUT_MS}.
+     *
+     * @throws TimeoutException if the lookup is not done by then
+     */
+    public <T> T await(CompletableFuture<T> lookup) throws Exception {
+        long timeoutMillis = this.windowMillis + DEFAULT_TIMEOUT_MS;
+        try {
+            return OsCallsAsync.await(lookup, timeoutMillis);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Lookup by id not done after " + timeoutMillis + " ms");
+        }
+    }
+
+    /**
+     * @param resource the kind of resource, always listed by the same function
+     * @param listByIds lists the resources of the batch
+     * @return completed with the resource, or with null if it does not exist
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Resource> CompletableFuture<T> load(OsCalls osCalls, String resource, String id,
+            ListByIds<T> listByIds) {
+        ResourceQueue queue = this.queues.computeIfAbsent(resource, k -> new ResourceQueue());
+
+        Batch batch;
+        CompletableFuture<Resource> lookup;
+        boolean full;
+        boolean schedule = false;
+        synchronized (queue) {
+            if (queue.pending == null) {
+                queue.pending = new Batch(osCalls, listByIds);
+                schedule = true;
+            }
+
+            batch = queue.pending;
+            lookup = batch.lookups.computeIfAbsent(id, k -> new CompletableFuture<>());
+            batch.operations.add(OperationContext.current());
+            full = batch.lookups.size() >= this.maxBatchSize;
+            if (full) {
+                queue.pending = null;
+            }
+        }
+
+        if (full) {
+            request(resource, batch);
+        } else if (schedule) {
+            this.scheduler.schedule(() -> endWindow(resource, queue, batch), this.windowMillis, TimeUnit.MILLISECONDS);
+        }
+        return (CompletableFuture<T>) lookup;
+    }
+
+    /**
+     * Hands the batch over to the executor, the scheduler being shared with the other projects and the callers
+     * of the lookups waiting on their own threads.
+     */
+    private void endWindow(String resource, ResourceQueue queue, Batch batch) {
+        synchronized (queue) {
+            // A full batch was requested by its last lookup
+            if (queue.pending != batch) {
+                return;
+            }
+            queue.pending = null;
+        }
+
+        try {
+            this.executor.execute(() -> request(resource, batch));
+        } catch (RejectedExecutionException e) {
+            LOG.error("Failed to schedule the lookup of {} {} by id", batch.lookups.size(), resource, e);
+            batch.lookups.values().forEach(lookup -> lookup.completeExceptionally(e));
+        }
+    }
+
+    private void request(String resource, Batch batch) {
+        List<String> ids = new ArrayList<>(batch.lookups.keySet());
+        try {
+            // The request is charged to every operation with a lookup in the batch
+            List<? extends Resource> found = OperationContext.call(OperationContext.of(batch.operations),
+                    batch.osCalls.withSession(() -> batch.listByIds.list(batch.osCalls, ids)));
+            Map<String, Resource> byId = found.stream()
+                    .collect(toMap(Resource::getId, Function.identity(), (first, duplicate) -> first));
+            batch.lookups.forEach((id, lookup) -> lookup.complete(byId.get(id)));
+        } catch (Exception e) {
+            LOG.error("Failed to look {} {} up by id", ids.size(), resource, e);
+            batch.lookups.values().forEach(lookup -> lookup.completeExceptionally(e));
+        }
+    }
+
+    private static class ResourceQueue {
+        Batch pending;
+    }
+
+    private static class Batch {
+        final OsCalls osCalls;
+        final ListByIds<?> listByIds;
+        final Map<String, CompletableFuture<Resource>> lookups = new LinkedHashMap<>();
+        final List<OperationContext> operations = new ArrayList<>();
+
+        Batch(OsCalls osCalls, ListByIds<?> listByIds) {
+            this.osCalls = osCalls;
+            this.listByIds = listByIds;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The redirection api operation a thread is working for, which the openstack calls it issues are counted against.
+ * <p>
+ * The context is bound to the thread running the operation, and carried over to the work it hands to other
+ * threads with {@link #wrap}. Work done at once for several operations, like a batch of lookups or of port chain
+ * updates, runs in the context {@link #of} all of them: each one is charged every call of the batch.
+ */
+public final class OperationContext {
+
+    private static final ThreadLocal<OperationContext> CURRENT = new ThreadLocal<>();
+
+    private final Collection<LongAdder> roundTrips;
+
+    public OperationContext() {
+        this(Collections.singletonList(new LongAdder()));
+    }
+
+    private OperationContext(Collection<LongAdder> roundTrips) {
+        this.roundTrips = roundTrips;
+    }
+
+    /**
+     * @return the context of the operation the calling thread is working for, null if none
+     */
+    public static OperationContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param operations contexts of the operations, null ones being ignored
+     * @return the context of work done for all the operations, null if there are none
+     */
+    public static OperationContext of(Collection<OperationContext> operations) {
+        Set<LongAdder> roundTrips = Collections.newSetFromMap(new IdentityHashMap<>());
+        operations.stream().filter(Objects::nonNull).forEach(operation -> roundTrips.addAll(operation.roundTrips));
+        return roundTrips.isEmpty() ? null : new OperationContext(roundTrips);
+    }
+
+    /**
+     * Runs the task with the context bound to the calling thread, then restores the context it had.
+     *
+     * @param context null to run the task outside of any operation
+     */
+    public static <T> T call(OperationContext context, Callable<T> task) throws Exception {
+        OperationContext previous = CURRENT.get();
+        set(context);
+        try {
+            return task.call();
+        } finally {
+            set(previous);
+        }
+    }
+
+    /**
+     * @return the task, running in the context of the calling thread whichever thread runs it
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        OperationContext context = CURRENT.get();
+        return () -> call(context, task);
+    }
+
+    /**
+     * Counts an openstack call against the operation of the calling thread, if any.
+     */
+    static void roundTrip() {
+        OperationContext context = CURRENT.get();
+        if (context != null) {
+            context.roundTrips.forEach(LongAdder::increment);
+        }
+    }
+
+    /**
+     * @return the openstack calls issued for the operation so far, from any thread
+     */
+    public long getRoundTrips() {
+        return this.roundTrips.stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static void set(OperationContext context) {
+        if (context != null) {
+            CURRENT.set(context);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
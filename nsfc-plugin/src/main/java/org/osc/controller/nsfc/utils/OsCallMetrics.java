@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.model.common.ActionResponse;
+
+/**
+ * Latency, count, error and payload statistics of the openstack calls, by resource and verb, and
+ * the number of those calls each redirection api operation issued, as counted by its {@link OperationContext}.
+ * <p>
+ * Shared by all the projects of a controller api. Cache hits are not openstack calls and are not recorded,
+ * reads collapsed into an identical one in flight are only counted apart.
+ */
+public class OsCallMetrics implements OsCallMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.osc.nsfc:type=OsCallMetrics";
+
+    public static final String PORT = "port";
+    public static final String PORT_PAIR = "port_pair";
+    public static final String PORT_PAIR_GROUP = "port_pair_group";
+    public static final String PORT_CHAIN = "port_chain";
+    public static final String FLOW_CLASSIFIER = "flow_classifier";
+    public static final String TOKEN = "token";
+
+    public static final String GET = "GET";
+    public static final String LIST = "LIST";
+    public static final String POST = "POST";
+    public static final String PUT = "PUT";
+    public static final String DELETE = "DELETE";
+
+    /**
+     * Upper bounds in milliseconds of the latency histogram buckets, the last bucket being unbounded.
+     */
+    static final long[] LATENCY_BUCKETS_MS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000 };
+
+    private final ConcurrentMap<String, CallAccumulator> calls = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, OperationAccumulator> operations = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the openstack call and records its outcome under the resource and verb.
+     * <p>
+     * A null result of a {@link #GET} is recorded as a 404, which is how openstack4j reports it.
+     */
+    public <T> T record(String resource, String verb, Supplier<T> call) {
+        CallAccumulator accumulator = accumulator(resource, verb);
+
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            accumulator.record(System.nanoTime() - start, 0, errorOf(e));
+            throw e;
+        }
+
+        accumulator.record(System.nanoTime() - start, payloadOf(result), errorOf(verb, result));
+        return result;
+    }
+
+    /**
+     * Records a read that was not issued, an identical one being in flight, see {@link SingleFlight}.
+     */
+    public void recordCollapsed(String resource, String verb) {
+        accumulator(resource, verb).collapsed.increment();
+    }
+
+    /**
+     * Runs a redirection api operation in a context of its own, and records the openstack calls issued for it
+     * from any thread.
+     */
+    public <T> T measure(String operation, Callable<T> body) throws Exception {
+        OperationContext context = new OperationContext();
+        try {
+            return OperationContext.call(context, body);
+        } finally {
+            recordOperation(operation, context.getRoundTrips());
+        }
+    }
+
+    public void recordOperation(String operation, long roundTrips) {
+        this.operations.computeIfAbsent(operation, OperationAccumulator::new).record(roundTrips);
+    }
+
+    @Override
+    public List<CallStatistics> getCalls() {
+        return new TreeMap<>(this.calls).values().stream().map(CallAccumulator::snapshot).collect(toList());
+    }
+
+    @Override
+    public List<OperationStatistics> getOperations() {
+        return new TreeMap<>(this.operations).values().stream().map(OperationAccumulator::snapshot).collect(toList());
+    }
+
+    @Override
+    public void reset() {
+        this.calls.clear();
+        this.operations.clear();
+    }
+
+    private CallAccumulator accumulator(String resource, String verb) {
+        return this.calls.computeIfAbsent(resource + " " + verb, k -> new CallAccumulator(resource, verb));
+    }
+
+    private static int payloadOf(Object result) {
+        if (result == null || result instanceof ActionResponse) {
+            return 0;
+        }
+        return result instanceof Collection ? ((Collection<?>) result).size() : 1;
+    }
+
+    private static String errorOf(String verb, Object result) {
+        if (result == null) {
+            return GET.equals(verb) ? "404" : null;
+        }
+
+        if (result instanceof ActionResponse && !((ActionResponse) result).isSuccess()) {
+            return String.valueOf(((ActionResponse) result).getCode());
+        }
+        return null;
+    }
+
+    private static String errorOf(RuntimeException e) {
+        if (e instanceof ResponseException && ((ResponseException) e).getStatus() > 0) {
+            return String.valueOf(((ResponseException) e).getStatus());
+        }
+        return e.getClass().getSimpleName();
+    }
+
+    private static class CallAccumulator {
+        private final String resource;
+        private final String verb;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+        private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS_MS.length + 1];
+        private final LongAdder payloadItems = new LongAdder();
+        private final LongAdder collapsed = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        CallAccumulator(String resource, String verb) {
+            this.resource = resource;
+            this.verb = verb;
+            Arrays.setAll(this.latencyBuckets, i -> new LongAdder());
+        }
+
+        void record(long nanos, int payload, String error) {
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+            this.latencyBuckets[bucketOf(TimeUnit.NANOSECONDS.toMillis(nanos))].increment();
+            this.payloadItems.add(payload);
+            if (error != null) {
+                this.errors.computeIfAbsent(error, k -> new LongAdder()).increment();
+            }
+        }
+
+        CallStatistics snapshot() {
+            Map<String, Long> errorCounts = new TreeMap<>();
+            this.errors.forEach((error, count) -> errorCounts.put(error, count.sum()));
+
+            return new CallStatistics(this.resource, this.verb, this.count.sum(), this.totalNanos.sum(),
+                    this.maxNanos.get(), Arrays.stream(this.latencyBuckets).mapToLong(LongAdder::sum).toArray(),
+                    this.payloadItems.sum(), this.collapsed.sum(), errorCounts);
+        }
+
+        private static int bucketOf(long millis) {
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS_MS.length && millis > LATENCY_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            return bucket;
+        }
+    }
+
+    private static class OperationAccumulator {
+        private final String operation;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAccumulator maxRoundTrips = new LongAccumulator(Long::max, 0);
+
+        OperationAccumulator(String operation) {
+            this.operation = operation;
+        }
+
+        void record(long roundTrips) {
+            this.count.increment();
+            this.roundTrips.add(roundTrips);
+            this.maxRoundTrips.accumulate(roundTrips);
+        }
+
+        OperationStatistics snapshot() {
+            return new OperationStatistics(this.operation, this.count.sum(), this.roundTrips.sum(),
+                    this.maxRoundTrips.get());
+        }
+    }
+
+    /**
+     * Statistics of the calls of one verb on one resource.
+     */
+    public static class CallStatistics {
+        private final String resource;
+        private final String verb;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] latencyCounts;
+        private final long payloadItems;
+        private final long collapsed;
+        private final Map<String, Long> errors;
+
+        CallStatistics(String resource, String verb, long count, long totalNanos, long maxNanos,
+                long[] latencyCounts, long payloadItems, long collapsed, Map<String, Long> errors) {
+            this.resource = resource;
+            this.verb = verb;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.latencyCounts = latencyCounts;
+            this.payloadItems = payloadItems;
+            this.collapsed = collapsed;
+            this.errors = errors;
+        }
+
+        public String getResource() {
+            return this.resource;
+        }
+
+        public String getVerb() {
+            return this.verb;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMeanLatencyMillis() {
+            return this.count == 0 ? 0 : this.totalNanos / 1e6 / this.count;
+        }
+
+        public double getMaxLatencyMillis() {
+            return this.maxNanos / 1e6;
+        }
+
+        /**
+         * @return the upper bounds of the latency buckets, see {@link #getLatencyCounts()}
+         */
+        public long[] getLatencyBucketsMillis() {
+            return LATENCY_BUCKETS_MS.clone();
+        }
+
+        /**
+         * @return the number of calls per latency bucket, with one more bucket for the slower ones
+         */
+        public long[] getLatencyCounts() {
+            return this.latencyCounts.clone();
+        }
+
+        /**
+         * @return the number of entities returned by the calls, a list counting for its size
+         */
+        public long getPayloadItems() {
+            return this.payloadItems;
+        }
+
+        /**
+         * @return the number of calls not issued because an identical one was in flight, not part of the count
+         */
+        public long getCollapsed() {
+            return this.collapsed;
+        }
+
+        /**
+         * @return the number of failed calls by http status, or by exception type when there is none
+         */
+        public Map<String, Long> getErrors() {
+            return this.errors;
+        }
+    }
+
+    /**
+     * Openstack calls issued by one kind of redirection api operation.
+     */
+    public static class OperationStatistics {
+        private final String operation;
+        private final long count;
+        private final long roundTrips;
+        private final long maxRoundTrips;
+
+        OperationStatistics(String operation, long count, long roundTrips, long maxRoundTrips) {
+            this.operation = operation;
+            this.count = count;
+            this.roundTrips = roundTrips;
+            this.maxRoundTrips = maxRoundTrips;
+        }
+
+        public String getOperation() {
+            return this.operation;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getRoundTrips() {
+            return this.roundTrips;
+        }
+
+        public double getMeanRoundTrips() {
+            return this.count == 0 ? 0 : (double) this.roundTrips / this.count;
+        }
+
+        public long getMaxRoundTrips() {
+            return this.maxRoundTrips;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.List;
+
+import org.osc.controller.nsfc.utils.OsCallMetrics.CallStatistics;
+import org.osc.controller.nsfc.utils.OsCallMetrics.OperationStatistics;
+
+/**
+ * Management view of the openstack calls issued by the plugin, registered under {@link OsCallMetrics#OBJECT_NAME}.
+ */
+public interface OsCallMetricsMXBean {
+
+    /**
+     * @return one entry per resource and verb called since the last reset
+     */
+    List<CallStatistics> getCalls();
+
+    /**
+     * @return one entry per redirection api operation run since the last reset
+     */
+    List<OperationStatistics> getOperations();
+
+    void reset();
+}
@@ -18,34 +18,130 @@ package org.osc.controller.nsfc.utils;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static org.osc.controller.nsfc.exceptions.SdnControllerResponseNsfcException.Operation.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.*;
+
+import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.openstack4j.api.Builders;
 import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.api.exceptions.ResponseException;
 import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.common.Resource;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.model.network.ext.builder.PortChainBuilder;
+import org.openstack4j.model.network.ext.builder.PortPairGroupBuilder;
 import org.osc.controller.nsfc.exceptions.SdnControllerResponseNsfcException;
+import org.osc.controller.nsfc.utils.LookupBatcher.ListByIds;
+import org.osc.controller.nsfc.utils.PagedIterator.PageLoader;
 
 public class OsCalls {
 
+    /**
+     * Conditional port chain updates attempted before giving up on the concurrent writers.
+     */
+    static final int MAX_PORT_CHAIN_UPDATE_ATTEMPTS = 5;
+
+    /**
+     * Resources requested per page by the streaming listings.
+     */
+    public static final int PAGE_SIZE = 200;
+
+    /**
+     * Attributes of a port needed to locate it on its subnets: the inspected, protected and gateway ports.
+     */
+    public static final List<String> PORT_ADDRESS_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("id", "device_owner", "fixed_ips"));
+
+    /**
+     * Attributes of a port needed to describe a device as a network element.
+     */
+    public static final List<String> PORT_DEVICE_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("id", "device_id", "mac_address", "fixed_ips"));
+
+    private static final int PRECONDITION_FAILED = 412;
+
+    private SharedOsClient session;
     private OSClientV3 osClient;
+    private TopologyCache topologyCache;
+    private GatewayPortResolver gatewayPortResolver;
+    private FilteredQueryService filteredQueryService;
+    private OsCallMetrics metrics;
+    private RevisionedPortChainService revisionedPortChainService;
+    private SingleFlight singleFlight;
+    private LookupBatcher lookupBatcher;
+    private InspectionHookIndex inspectionHookIndex;
+    private DevicePortCache devicePortCache;
+    private final LongAdder roundTrips = new LongAdder();
 
     public OsCalls(OSClientV3 osClient) {
-        this.osClient = osClient;
+        this(osClient, ProjectContext.builder().build());
+    }
+
+    public OsCalls(OSClientV3 osClient, ProjectContext projectContext) {
+        this(new SharedOsClient(osClient), projectContext);
+    }
+
+    public OsCalls(SharedOsClient session, ProjectContext projectContext) {
+        this.session = session;
+        this.osClient = session.getClient();
+        this.topologyCache = projectContext.getTopologyCache();
+        this.gatewayPortResolver = projectContext.getGatewayPortResolver();
+        this.filteredQueryService = projectContext.getFilteredQueryService();
+        this.metrics = projectContext.getMetrics();
+        this.revisionedPortChainService = projectContext.getRevisionedPortChainService();
+        this.singleFlight = projectContext.getSingleFlight();
+        this.lookupBatcher = projectContext.getLookupBatcher();
+        this.inspectionHookIndex = projectContext.getInspectionHookIndex();
+        this.devicePortCache = projectContext.getDevicePortCache();
+    }
+
+    /**
+     * openstack4j keeps the authenticated session in a thread local. Wraps the task so that it
+     * binds this client's session to whichever thread ends up running it.
+     */
+    public <T> Callable<T> withSession(Callable<T> task) {
+        return () -> {
+            this.session.bind();
+            return task.call();
+        };
+    }
+
+    /**
+     * @return the number of openstack calls issued so far by this instance, from any thread
+     */
+    public long getRoundTrips() {
+        return this.roundTrips.sum();
+    }
+
+    public OsCallMetrics getMetrics() {
+        return this.metrics;
     }
 
     public FlowClassifier createFlowClassifier(FlowClassifier flowClassifier) {
         checkArgument(flowClassifier != null, "null passed for %s !", "Flow Classifier");
 
-        flowClassifier = flowClassifier.toBuilder().id(null).build();
+        FlowClassifier request = flowClassifier.toBuilder().id(null).build();
 
         try {
-            flowClassifier = this.osClient.sfc().flowclassifiers().create(flowClassifier);
+            flowClassifier = call(FLOW_CLASSIFIER, POST, () -> this.osClient.sfc().flowclassifiers().create(request));
             if (flowClassifier == null) {
                 throw new RuntimeException("Create Flow Classifier operation returned null");
             }
@@ -59,10 +155,10 @@ public class OsCalls {
 
     public PortChain createPortChain(PortChain portChain) {
         checkArgument(portChain != null, "null passed for %s !", "Port Chain");
-        portChain = portChain.toBuilder().id(null).build();
+        PortChain request = portChain.toBuilder().id(null).build();
 
         try {
-            portChain = this.osClient.sfc().portchains().create(portChain);
+            portChain = call(PORT_CHAIN, POST, () -> this.osClient.sfc().portchains().create(request));
             if (portChain == null) {
                 throw new RuntimeException("Create Port Chain operation returned null");
             }
@@ -70,15 +166,17 @@ public class OsCalls {
             throw new SdnControllerResponseNsfcException(Create, PortChain.class, e);
         }
 
-        return initializePortChainCollections(portChain);
+        portChain = initializePortChainCollections(portChain);
+        this.topologyCache.put(portChain);
+        return portChain;
     }
 
     public PortPairGroup createPortPairGroup(PortPairGroup portPairGroup) {
         checkArgument(portPairGroup != null, "null passed for %s !", "Port Pair Group");
-        portPairGroup = portPairGroup.toBuilder().id(null).build();
+        PortPairGroup request = portPairGroup.toBuilder().id(null).build();
 
         try {
-            portPairGroup = this.osClient.sfc().portpairgroups().create(portPairGroup);
+            portPairGroup = call(PORT_PAIR_GROUP, POST, () -> this.osClient.sfc().portpairgroups().create(request));
             if (portPairGroup == null) {
                 throw new RuntimeException("Create Port Pair Group operation returned null");
             }
@@ -86,15 +184,16 @@ public class OsCalls {
             throw new SdnControllerResponseNsfcException(Create, PortPairGroup.class, e);
         }
 
+        this.topologyCache.put(portPairGroup);
         return portPairGroup;
     }
 
     public PortPair createPortPair(PortPair portPair) {
         checkArgument(portPair != null, "null passed for %s !", "Port Pair");
-        portPair = portPair.toBuilder().id(null).build();
+        PortPair request = portPair.toBuilder().id(null).build();
 
         try {
-            portPair = this.osClient.sfc().portpairs().create(portPair);
+            portPair = call(PORT_PAIR, POST, () -> this.osClient.sfc().portpairs().create(request));
             if (portPair == null) {
                 throw new RuntimeException("Create Port Pair operation returned null");
             }
@@ -102,55 +201,321 @@ public class OsCalls {
             throw new SdnControllerResponseNsfcException(Create, PortPair.class, e);
         }
 
+        this.topologyCache.put(portPair);
         return portPair;
     }
 
     public List<? extends PortPairGroup> listPortPairGroups() {
-        return this.osClient.sfc().portpairgroups().list();
+        return read(PORT_PAIR_GROUP, LIST, null, () -> this.osClient.sfc().portpairgroups().list());
     }
 
     public List<? extends PortPair> listPortPairs() {
-        return this.osClient.sfc().portpairs().list();
+        return read(PORT_PAIR, LIST, null, () -> this.osClient.sfc().portpairs().list());
     }
 
     public List<? extends PortChain> listPortChains() {
-        return this.osClient.sfc().portchains().list();
+        return read(PORT_CHAIN, LIST, null, () -> this.osClient.sfc().portchains().list());
+    }
+
+    public List<? extends FlowClassifier> listFlowClassifiers() {
+        return read(FLOW_CLASSIFIER, LIST, null, () -> this.osClient.sfc().flowclassifiers().list());
+    }
+
+    /**
+     * Replaces the topology cache with listings the caller already made.
+     */
+    public void loadTopology(List<? extends PortPair> portPairs, List<? extends PortPairGroup> portPairGroups,
+            List<? extends PortChain> portChains) {
+        synchronized (this.topologyCache) {
+            this.topologyCache.load(portPairs, portPairGroups, portChains);
+        }
+    }
+
+    /**
+     * Port pairs with the given ingress and egress ports, filtered by neutron.
+     */
+    public List<? extends PortPair> listPortPairs(String ingressId, String egressId) {
+        return read(PORT_PAIR, LIST, ingressId + " " + egressId,
+                () -> this.filteredQueryService.listPortPairs(ingressId, egressId));
+    }
+
+    /**
+     * The streaming listings below request one page of {@link #PAGE_SIZE} resources at a time, each page
+     * counting as one call. A consumer that stops early, with {@code findFirst} or {@code anyMatch}, does
+     * not request the remaining pages.
+     *
+     * @param fields the attributes to return, which must include the id, or null for whole resources
+     */
+    public Stream<PortPair> streamPortPairs(String ingressId, String egressId, List<String> fields) {
+        return pages(PORT_PAIR, (limit, marker) -> this.filteredQueryService.listPortPairs(ingressId, egressId,
+                                                                                           limit, marker, fields));
+    }
+
+    /**
+     * @see #streamPortPairs
+     */
+    public Stream<Port> streamPorts(String deviceOwner, String subnetId, List<String> fields) {
+        return pages(PORT, (limit, marker) -> this.filteredQueryService.listPorts(deviceOwner, subnetId,
+                                                                                  limit, marker, fields));
+    }
+
+    /**
+     * @see #streamPortPairs
+     */
+    public Stream<PortPairGroup> streamPortPairGroups(List<String> fields) {
+        return pages(PORT_PAIR_GROUP,
+                     (limit, marker) -> this.filteredQueryService.listPortPairGroups(limit, marker, fields));
+    }
+
+    /**
+     * @see #streamPortPairs
+     */
+    public Stream<PortChain> streamPortChains(List<String> fields) {
+        return pages(PORT_CHAIN, (limit, marker) -> this.filteredQueryService.listPortChains(limit, marker, fields));
+    }
+
+    /**
+     * Looks the port pair up in the topology cache, then asks neutron for that pair alone.
+     * Neutron never holds a port pair without ingress or egress, so those are not queried.
+     */
+    public PortPair findPortPair(String ingressId, String egressId) {
+        PortPair portPair = topology().getPortPair(ingressId, egressId);
+        if (portPair == null && ingressId != null && egressId != null) {
+            // Older networking-sfc releases ignore the filters, hence the check
+            portPair = streamPortPairs(ingressId, egressId, TopologyCache.PORT_PAIR_FIELDS)
+                    .filter(pp -> ingressId.equals(pp.getIngressId()) && egressId.equals(pp.getEgressId()))
+                    .findFirst().orElse(null);
+
+            if (portPair != null) {
+                this.topologyCache.put(portPair);
+            }
+        }
+        return portPair;
+    }
+
+    public PortPairGroup findContainingPortPairGroup(String portPairId) {
+        PortPairGroup portPairGroup = topology().getContainingPortPairGroup(portPairId);
+        if (portPairGroup == null && this.topologyCache.isRefreshOnMiss()) {
+            portPairGroup = reloadTopology().getContainingPortPairGroup(portPairId);
+        }
+        return portPairGroup;
+    }
+
+    public PortChain findContainingPortChain(String portPairGroupId) {
+        PortChain portChain = topology().getContainingPortChain(portPairGroupId);
+        if (portChain == null && this.topologyCache.isRefreshOnMiss()) {
+            portChain = reloadTopology().getContainingPortChain(portPairGroupId);
+        }
+        return portChain;
+    }
+
+    public PortChain findContainingPortChainForFC(String flowClassifierId) {
+        PortChain portChain = topology().getContainingPortChainForFC(flowClassifierId);
+        if (portChain == null && this.topologyCache.isRefreshOnMiss()) {
+            portChain = reloadTopology().getContainingPortChainForFC(flowClassifierId);
+        }
+        return portChain;
+    }
+
+    /**
+     * Same as {@link #findContainingPortChainForFC} for several flow classifiers, reloading the topology at most once.
+     *
+     * @return the chains by flow classifier id, without the flow classifiers in no chain
+     */
+    public Map<String, PortChain> findContainingPortChainsForFCs(Collection<String> flowClassifierIds) {
+        Map<String, PortChain> portChains = containingPortChainsForFCs(topology(), flowClassifierIds);
+        if (portChains.size() < flowClassifierIds.size() && this.topologyCache.isRefreshOnMiss()) {
+            portChains = containingPortChainsForFCs(reloadTopology(), flowClassifierIds);
+        }
+        return portChains;
+    }
+
+    /**
+     * Finds the flow classifier of the inspection hook of the port in the chain through the
+     * {@link InspectionHookIndex}. An entry is checked with a get of its flow classifier. Without one, or with a stale
+     * one, the flow classifiers of the port are listed and all of them indexed.
+     *
+     * @return the flow classifier, null if the port has no hook in the chain
+     */
+    public FlowClassifier findInspectionHook(String inspectedPortId, String portChainId) {
+        String flowClassifierId = this.inspectionHookIndex.get(inspectedPortId, portChainId);
+        if (flowClassifierId != null) {
+            FlowClassifier flowClassifier = getFlowClassifier(flowClassifierId);
+            PortChain portChain = topology().getContainingPortChainForFC(flowClassifierId);
+            if (flowClassifier != null && inspectedPortId.equals(flowClassifier.getLogicalDestinationPort())
+                    && portChain != null && portChainId.equals(portChain.getId())) {
+                return flowClassifier;
+            }
+            this.inspectionHookIndex.remove(inspectedPortId, portChainId, flowClassifierId);
+        }
+
+        List<? extends FlowClassifier> flowClassifiers = listFlowClassifiersByDestinationPort(inspectedPortId);
+        Map<String, PortChain> portChains = findContainingPortChainsForFCs(
+                flowClassifiers.stream().map(FlowClassifier::getId).collect(toList()));
+
+        FlowClassifier found = null;
+        for (FlowClassifier flowClassifier : flowClassifiers) {
+            PortChain portChain = portChains.get(flowClassifier.getId());
+            if (portChain != null) {
+                this.inspectionHookIndex.put(inspectedPortId, portChain.getId(), flowClassifier.getId());
+                if (portChainId.equals(portChain.getId())) {
+                    found = flowClassifier;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Flow classifiers steering the traffic to the port, filtered by neutron.
+     */
+    public List<? extends FlowClassifier> listFlowClassifiersByDestinationPort(String portId) {
+        return read(FLOW_CLASSIFIER, LIST, "logical_destination_port " + portId,
+                () -> this.filteredQueryService.listFlowClassifiers(portId));
     }
 
     public FlowClassifier getFlowClassifier(String flowClassifierId) {
-        return this.osClient.sfc().flowclassifiers().get(flowClassifierId);
+        return read(FLOW_CLASSIFIER, GET, flowClassifierId,
+                () -> this.osClient.sfc().flowclassifiers().get(flowClassifierId));
     }
 
+    /**
+     * @return the port chain along with its revision, see {@link #updatePortChainFlowClassifiers}
+     */
     public PortChain getPortChain(String portChainId) {
-        PortChain portChain = this.osClient.sfc().portchains().get(portChainId);
+        return read(PORT_CHAIN, GET, portChainId,
+                () -> initializePortChainCollections(this.revisionedPortChainService.get(portChainId)));
+    }
+
+    /**
+     * Same as {@link #getPortChain} without joining an identical read in flight, which may have started
+     * before the last update of the chain.
+     */
+    private PortChain getLatestPortChain(String portChainId) {
+        PortChain portChain = call(PORT_CHAIN, GET, () -> this.revisionedPortChainService.get(portChainId));
         return initializePortChainCollections(portChain);
     }
 
     public PortPairGroup getPortPairGroup(String portPairGroupId) {
-        return this.osClient.sfc().portpairgroups().get(portPairGroupId);
+        return read(PORT_PAIR_GROUP, GET, portPairGroupId,
+                () -> this.osClient.sfc().portpairgroups().get(portPairGroupId));
     }
 
     public PortPair getPortPair(String portPairId) {
-        return this.osClient.sfc().portpairs().get(portPairId);
+        if (this.lookupBatcher.isEnabled()) {
+            return lookup(PORT_PAIR, portPairId, OsCalls::listPortPairsById);
+        }
+        return read(PORT_PAIR, GET, portPairId, () -> this.osClient.sfc().portpairs().get(portPairId));
+    }
+
+    /**
+     * @return the existing port pairs among the given ids, in a single call
+     */
+    public List<? extends PortPair> listPortPairsById(List<String> portPairIds) {
+        return call(PORT_PAIR, LIST, () -> this.filteredQueryService.listPortPairsById(portPairIds, null));
     }
 
     public Port getPort(String portId) {
-        return this.osClient.networking().port().get(portId);
+        return found(portId, read(PORT, GET, portId, () -> this.osClient.networking().port().get(portId)));
     }
-    
-    public List<? extends Port> listPorts(){
-    	return this.osClient.networking().port().list();
+
+    /**
+     * @return the port with only its {@link #PORT_ADDRESS_FIELDS}
+     */
+    public Port getPortAddresses(String portId) {
+        if (this.lookupBatcher.isEnabled()) {
+            return found(portId, lookup(PORT, portId, OsCalls::listPortAddressesById));
+        }
+        return found(portId, read(PORT, GET, portId + " " + PORT_ADDRESS_FIELDS,
+                () -> this.filteredQueryService.getPort(portId, PORT_ADDRESS_FIELDS)));
     }
 
+    /**
+     * A port found gone may still be cached as one of its device's.
+     */
+    private Port found(String portId, Port port) {
+        if (port == null) {
+            this.devicePortCache.invalidatePort(portId);
+        }
+        return port;
+    }
+
+    /**
+     * @return the existing ports among the given ids, in a single call, with only their {@link #PORT_ADDRESS_FIELDS}
+     */
+    public List<? extends Port> listPortAddressesById(List<String> portIds) {
+        return call(PORT, LIST, () -> this.filteredQueryService.listPortsById(portIds, PORT_ADDRESS_FIELDS));
+    }
+
+    /**
+     * Ports of the device, filtered by neutron, with only their {@link #PORT_DEVICE_FIELDS}.
+     */
+    public List<? extends Port> listPortsByDeviceId(String deviceId) {
+        return read(PORT, LIST, "device_id " + deviceId + " " + PORT_DEVICE_FIELDS,
+                () -> this.filteredQueryService.listPortsByDeviceId(deviceId, PORT_DEVICE_FIELDS));
+    }
+
+    /**
+     * Ports with any of the MAC addresses, filtered by neutron, with only their {@link #PORT_DEVICE_FIELDS}.
+     */
+    public List<? extends Port> listPortsByMacAddress(List<String> macAddresses) {
+        return call(PORT, LIST,
+                () -> this.filteredQueryService.listPortsByMacAddress(macAddresses, PORT_DEVICE_FIELDS));
+    }
+
+    /**
+     * Ports with any of the fixed ips, filtered by neutron, with only their {@link #PORT_DEVICE_FIELDS}.
+     */
+    public List<? extends Port> listPortsByIpAddress(List<String> ipAddresses) {
+        return call(PORT, LIST, () -> this.filteredQueryService.listPortsByIpAddress(ipAddresses, PORT_DEVICE_FIELDS));
+    }
+
+    public List<? extends Port> listPorts() {
+        return read(PORT, LIST, null, () -> this.osClient.networking().port().list());
+    }
+
+    /**
+     * Ports with the given device owner and a fixed ip on the subnet, filtered by neutron, with only
+     * their {@link #PORT_ADDRESS_FIELDS}.
+     */
+    public List<? extends Port> listPortsByDeviceOwnerAndSubnet(String deviceOwner, String subnetId) {
+        return read(PORT, LIST, deviceOwner + " " + subnetId + " " + PORT_ADDRESS_FIELDS,
+                () -> this.filteredQueryService.listPorts(deviceOwner, subnetId, 0, null, PORT_ADDRESS_FIELDS));
+    }
+
+    /**
+     * @return the router interface port on the subnet, resolved through the gateway port cache
+     */
+    public Port getDefaultGatewayPort(String subnetId) {
+        return this.gatewayPortResolver.resolve(subnetId, this);
+    }
+
+    /**
+     * Has the next {@link #getDefaultGatewayPort} of the subnet query it again.
+     */
+    public void invalidateDefaultGatewayPort(String subnetId) {
+        this.gatewayPortResolver.invalidate(subnetId);
+    }
+
+    /**
+     * Lists the router interfaces ahead of {@link #getDefaultGatewayPort} if the gateway port cache is stale.
+     */
+    public void refreshGatewayPortsIfStale() {
+        this.gatewayPortResolver.refreshIfStale(this);
+    }
+
+    /**
+     * Sends the attributes set on the port chain, as neutron leaves the others unchanged.
+     */
     public PortChain updatePortChain(String portChainId, PortChain portChain) {
         checkArgument(portChainId != null, "null passed for %s !", "Port Chain Id");
         checkArgument(portChain != null, "null passed for %s !", "Port Chain");
 
         // OS won't let us modify some attributes. Must be null on update object
-        portChain = portChain.toBuilder().id(null).projectId(null).chainParameters(null).chainId(null).build();
+        PortChain request = portChain.toBuilder().id(null).projectId(null).chainParameters(null).chainId(null).build();
 
         try {
-            portChain = this.osClient.sfc().portchains().update(portChainId, portChain);
+            portChain = call(PORT_CHAIN, PUT, () -> this.osClient.sfc().portchains().update(portChainId, request));
             if (portChain == null) {
                 throw new RuntimeException("Update Port Chain operation returned null for port chain " + portChainId);
             }
@@ -158,30 +523,153 @@ public class OsCalls {
             throw new SdnControllerResponseNsfcException(Update, PortChain.class, e);
         }
 
-        return initializePortChainCollections(portChain);
+        portChain = initializePortChainCollections(portChain);
+        this.topologyCache.put(portChain);
+        return portChain;
+    }
+
+    /**
+     * Edits the flow classifiers of the port chain as a compare-and-swap on its neutron revision. The update
+     * carries {@code If-Match} with the revision the edit was made on; when another writer updated the chain
+     * in between, neutron fails it with a 412 and the chain is read again and the edit re-applied.
+     * <p>
+     * Neutron releases that do not report revisions get an unconditional update of the flow classifiers alone.
+     *
+     * @param lastRead the chain just read with {@link #getPortChain}, null to read it here
+     * @param change edits the flow classifier ids in place, returning false when there is nothing to update
+     * @return the updated chain, or the chain read when there was nothing to update
+     */
+    public PortChain updatePortChainFlowClassifiers(String portChainId, PortChain lastRead,
+            Predicate<List<String>> change) {
+        checkArgument(portChainId != null, "null passed for %s !", "Port Chain Id");
+        checkArgument(change != null, "null passed for %s !", "Port Chain change");
+
+        PortChain portChain = lastRead;
+        for (int attempt = 1;; attempt++) {
+            if (portChain == null) {
+                portChain = attempt == 1 ? getPortChain(portChainId) : getLatestPortChain(portChainId);
+                checkArgument(portChain != null, "Cannot find %s by id: %s!", "Service Function Chain", portChainId);
+            }
+
+            List<String> flowClassifiers = new ArrayList<>(portChain.getFlowClassifiers());
+            if (!change.test(flowClassifiers)) {
+                return portChain;
+            }
+
+            PortChain request = Builders.portChain().flowClassifiers(flowClassifiers).build();
+            Long revisionNumber = RevisionedPortChain.revisionOf(portChain);
+
+            try {
+                portChain = call(PORT_CHAIN, PUT,
+                        () -> this.revisionedPortChainService.update(portChainId, request, revisionNumber));
+                if (portChain == null) {
+                    throw new RuntimeException("Update Port Chain operation returned null for port chain " + portChainId);
+                }
+            } catch (ResponseException e) {
+                if (e.getStatus() == PRECONDITION_FAILED && attempt < MAX_PORT_CHAIN_UPDATE_ATTEMPTS) {
+                    portChain = null;
+                    continue;
+                }
+                throw new SdnControllerResponseNsfcException(Update, PortChain.class, e);
+            } catch (Exception e) {
+                throw new SdnControllerResponseNsfcException(Update, PortChain.class, e);
+            }
+
+            portChain = initializePortChainCollections(portChain);
+            this.topologyCache.put(portChain);
+            return portChain;
+        }
+    }
+
+    /**
+     * Sends only the attributes of the desired port chain that differ from the current one, and nothing at all
+     * when none differs. Attributes left null on the desired chain are not changed.
+     *
+     * @return the updated chain, or the current one when there was nothing to update
+     */
+    public PortChain updatePortChain(String portChainId, PortChain current, PortChain desired) {
+        checkArgument(current != null, "null passed for %s !", "Current Port Chain");
+        checkArgument(desired != null, "null passed for %s !", "Port Chain");
+
+        PortChainBuilder request = Builders.portChain();
+        boolean changed = false;
+        if (differs(desired.getName(), current.getName())) {
+            request.name(desired.getName());
+            changed = true;
+        }
+        if (differs(desired.getDescription(), current.getDescription())) {
+            request.description(desired.getDescription());
+            changed = true;
+        }
+        // The order of the port pair groups is the order of the chain, not so for the flow classifiers
+        if (differs(desired.getPortPairGroups(), current.getPortPairGroups())) {
+            request.portPairGroups(desired.getPortPairGroups());
+            changed = true;
+        }
+        if (differsAsSet(desired.getFlowClassifiers(), current.getFlowClassifiers())) {
+            request.flowClassifiers(desired.getFlowClassifiers());
+            changed = true;
+        }
+
+        return changed ? updatePortChain(portChainId, request.build()) : current;
     }
 
+    /**
+     * Sends the attributes set on the port pair group, as neutron leaves the others unchanged.
+     */
     public PortPairGroup updatePortPairGroup(String portPairGroupId, PortPairGroup portPairGroup) {
         checkArgument(portPairGroupId != null, "null passed for %s !", "Port Pair Group Id");
         checkArgument(portPairGroup != null, "null passed for %s !", "Port Pair Group");
 
         // OS won't let us modify some attributes. Must be null on update object
-        portPairGroup  = portPairGroup.toBuilder().id(null).projectId(null).portPairGroupParameters(null).build();
+        PortPairGroup request = portPairGroup.toBuilder().id(null).projectId(null).portPairGroupParameters(null).build();
 
         try {
-            portPairGroup = this.osClient.sfc().portpairgroups().update(portPairGroupId, portPairGroup);
+            portPairGroup = call(PORT_PAIR_GROUP, PUT,
+                    () -> this.osClient.sfc().portpairgroups().update(portPairGroupId, request));
             if (portPairGroup == null) {
                 throw new RuntimeException("Update Port Pair Group operation returned null for port pair" + portPairGroupId);
             }
         } catch (Exception e) {
             throw new SdnControllerResponseNsfcException(Update, PortPairGroup.class, e);
         }
+
+        this.topologyCache.put(portPairGroup);
         return portPairGroup;
     }
 
+    /**
+     * Sends only the attributes of the desired port pair group that differ from the current one, and nothing
+     * at all when none differs. Attributes left null on the desired group are not changed.
+     *
+     * @return the updated group, or the current one when there was nothing to update
+     */
+    public PortPairGroup updatePortPairGroup(String portPairGroupId, PortPairGroup current, PortPairGroup desired) {
+        checkArgument(current != null, "null passed for %s !", "Current Port Pair Group");
+        checkArgument(desired != null, "null passed for %s !", "Port Pair Group");
+
+        PortPairGroupBuilder request = Builders.portPairGroup();
+        boolean changed = false;
+        if (differs(desired.getName(), current.getName())) {
+            request.name(desired.getName());
+            changed = true;
+        }
+        if (differs(desired.getDescription(), current.getDescription())) {
+            request.description(desired.getDescription());
+            changed = true;
+        }
+        if (differsAsSet(desired.getPortPairs(), current.getPortPairs())) {
+            request.portPairs(desired.getPortPairs());
+            changed = true;
+        }
+
+        return changed ? updatePortPairGroup(portPairGroupId, request.build()) : current;
+    }
+
     public void deleteFlowClassifier(String flowClassifierId) {
         try {
-            ActionResponse response = this.osClient.sfc().flowclassifiers().delete(flowClassifierId);
+            ActionResponse response = call(FLOW_CLASSIFIER, DELETE,
+                    () -> this.osClient.sfc().flowclassifiers().delete(flowClassifierId));
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
                     return;
@@ -196,9 +684,10 @@ public class OsCalls {
 
     public void deletePortChain(String portChainId) {
         try {
-            ActionResponse response = this.osClient.sfc().portchains().delete(portChainId);
+            ActionResponse response = call(PORT_CHAIN, DELETE, () -> this.osClient.sfc().portchains().delete(portChainId));
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.topologyCache.removePortChain(portChainId);
                     return;
                 }
                 String msg = String.format("Deleting port chain %s Response %d %s", portChainId, response.getCode(), response.getFault());
@@ -207,13 +696,17 @@ public class OsCalls {
         } catch (Exception e) {
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
         }
+
+        this.topologyCache.removePortChain(portChainId);
     }
 
     public void deletePortPairGroup(String portPairGroupId) {
         try {
-            ActionResponse response = this.osClient.sfc().portpairgroups().delete(portPairGroupId);
+            ActionResponse response = call(PORT_PAIR_GROUP, DELETE,
+                    () -> this.osClient.sfc().portpairgroups().delete(portPairGroupId));
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.topologyCache.removePortPairGroup(portPairGroupId);
                     return;
                 }
                 String msg = String.format("Deleting port pair %s Response %d %s", portPairGroupId, response.getCode(), response.getFault());
@@ -222,13 +715,16 @@ public class OsCalls {
         } catch (Exception e) {
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
         }
+
+        this.topologyCache.removePortPairGroup(portPairGroupId);
     }
 
     public void deletePortPair(String portPairId) {
         try {
-            ActionResponse response = this.osClient.sfc().portpairs().delete(portPairId);
+            ActionResponse response = call(PORT_PAIR, DELETE, () -> this.osClient.sfc().portpairs().delete(portPairId));
             if (!response.isSuccess()) {
                 if (response.getCode() == 404) {
+                    this.topologyCache.removePortPair(portPairId);
                     return;
                 }
                 String msg = String.format("Deleting port pair %s Response %d %s", portPairId, response.getCode(), response.getFault());
@@ -237,6 +733,88 @@ public class OsCalls {
         } catch (Exception e) {
             throw new SdnControllerResponseNsfcException(Delete, PortPair.class, e);
         }
+
+        this.topologyCache.removePortPair(portPairId);
+    }
+
+    private static boolean differs(Object desired, Object current) {
+        return desired != null && !desired.equals(current);
+    }
+
+    private static boolean differsAsSet(List<String> desired, List<String> current) {
+        return desired != null && (current == null || !new HashSet<>(desired).equals(new HashSet<>(current)));
+    }
+
+    private <T> T call(String resource, String verb, Supplier<T> call) {
+        // Every call binds the session, so that any thread can use this instance
+        this.session.bind();
+        this.roundTrips.increment();
+        OperationContext.roundTrip();
+        return this.metrics.record(resource, verb, call);
+    }
+
+    /**
+     * Same as {@link #call} for a read, which callers asking for the same read at the same time share.
+     * The result may thus be handed to other threads and must not be modified.
+     *
+     * @param key the parameters of the read, along with the resource and verb
+     */
+    private <T> T read(String resource, String verb, String key, Supplier<T> read) {
+        return this.singleFlight.execute(resource + " " + verb + " " + key, () -> call(resource, verb, read),
+                () -> this.metrics.recordCollapsed(resource, verb));
+    }
+
+    /**
+     * Looks the resource up along with those other threads look up at the same time, see {@link LookupBatcher}.
+     *
+     * @return the resource, null if it does not exist like the openstack4j get
+     */
+    private <T extends Resource> T lookup(String resource, String id, ListByIds<T> listByIds) {
+        try {
+            return this.lookupBatcher.await(this.lookupBatcher.load(this, resource, id, listByIds));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to look " + resource + " " + id + " up", e);
+        }
+    }
+
+    private <T extends Resource> Stream<T> pages(String resource, PageLoader<T> loader) {
+        PageLoader<T> counted = (limit, marker) -> call(resource, LIST, () -> loader.load(limit, marker));
+        return PagedIterator.stream(PAGE_SIZE, counted);
+    }
+
+    private static Map<String, PortChain> containingPortChainsForFCs(TopologyCache topology,
+            Collection<String> flowClassifierIds) {
+        Map<String, PortChain> portChains = new HashMap<>();
+        for (String flowClassifierId : flowClassifierIds) {
+            PortChain portChain = topology.getContainingPortChainForFC(flowClassifierId);
+            if (portChain != null) {
+                portChains.put(flowClassifierId, portChain);
+            }
+        }
+        return portChains;
+    }
+
+    private TopologyCache topology() {
+        if (this.topologyCache.isStale()) {
+            synchronized (this.topologyCache) {
+                if (this.topologyCache.isStale()) {
+                    reloadTopology();
+                }
+            }
+        }
+        return this.topologyCache;
+    }
+
+    private TopologyCache reloadTopology() {
+        synchronized (this.topologyCache) {
+            this.topologyCache.load(
+                    streamPortPairs(null, null, TopologyCache.PORT_PAIR_FIELDS).collect(toList()),
+                    streamPortPairGroups(TopologyCache.PORT_PAIR_GROUP_FIELDS).collect(toList()),
+                    streamPortChains(TopologyCache.PORT_CHAIN_FIELDS).collect(toList()));
+        }
+        return this.topologyCache;
     }
 
     private PortChain initializePortChainCollections(PortChain portChain) {
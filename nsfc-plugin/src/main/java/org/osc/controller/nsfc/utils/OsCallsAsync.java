@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+
+/**
+ * Non blocking facade of {@link OsCalls}. Every call runs on the executor of the project context
+ * with the openstack session of the wrapped client, so that independent calls can be issued together
+ * and the caller only waits for the slowest of them.
+ */
+public class OsCallsAsync {
+
+    private final OsCalls osCalls;
+    private final Executor executor;
+
+    public OsCallsAsync(OsCalls osCalls, Executor executor) {
+        this.osCalls = osCalls;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs any sequence of {@link OsCalls} on the executor.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> call) {
+        Callable<T> task = OperationContext.wrap(this.osCalls.withSession(call::get));
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, this.executor);
+    }
+
+    public CompletableFuture<Void> runAsync(Runnable call) {
+        return supplyAsync(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public CompletableFuture<Port> getPort(String portId) {
+        return supplyAsync(() -> this.osCalls.getPort(portId));
+    }
+
+    public CompletableFuture<Port> getPortAddresses(String portId) {
+        return supplyAsync(() -> this.osCalls.getPortAddresses(portId));
+    }
+
+    public CompletableFuture<FlowClassifier> getFlowClassifier(String flowClassifierId) {
+        return supplyAsync(() -> this.osCalls.getFlowClassifier(flowClassifierId));
+    }
+
+    public CompletableFuture<PortChain> getPortChain(String portChainId) {
+        return supplyAsync(() -> this.osCalls.getPortChain(portChainId));
+    }
+
+    public CompletableFuture<PortPairGroup> getPortPairGroup(String portPairGroupId) {
+        return supplyAsync(() -> this.osCalls.getPortPairGroup(portPairGroupId));
+    }
+
+    public CompletableFuture<PortPair> getPortPair(String portPairId) {
+        return supplyAsync(() -> this.osCalls.getPortPair(portPairId));
+    }
+
+    public CompletableFuture<List<? extends PortPair>> listPortPairs() {
+        return supplyAsync(() -> this.osCalls.listPortPairs());
+    }
+
+    public CompletableFuture<List<? extends PortPairGroup>> listPortPairGroups() {
+        return supplyAsync(() -> this.osCalls.listPortPairGroups());
+    }
+
+    public CompletableFuture<List<? extends PortChain>> listPortChains() {
+        return supplyAsync(() -> this.osCalls.listPortChains());
+    }
+
+    public CompletableFuture<List<? extends FlowClassifier>> listFlowClassifiers() {
+        return supplyAsync(() -> this.osCalls.listFlowClassifiers());
+    }
+
+    public CompletableFuture<PortPair> findPortPair(String ingressId, String egressId) {
+        return supplyAsync(() -> this.osCalls.findPortPair(ingressId, egressId));
+    }
+
+    public CompletableFuture<PortChain> findContainingPortChainForFC(String flowClassifierId) {
+        return supplyAsync(() -> this.osCalls.findContainingPortChainForFC(flowClassifierId));
+    }
+
+    public CompletableFuture<Void> refreshGatewayPortsIfStale() {
+        return runAsync(() -> this.osCalls.refreshGatewayPortsIfStale());
+    }
+
+    public CompletableFuture<FlowClassifier> createFlowClassifier(FlowClassifier flowClassifier) {
+        return supplyAsync(() -> this.osCalls.createFlowClassifier(flowClassifier));
+    }
+
+    public CompletableFuture<PortChain> updatePortChain(String portChainId, PortChain portChain) {
+        return supplyAsync(() -> this.osCalls.updatePortChain(portChainId, portChain));
+    }
+
+    public CompletableFuture<PortPairGroup> updatePortPairGroup(String portPairGroupId, PortPairGroup portPairGroup) {
+        return supplyAsync(() -> this.osCalls.updatePortPairGroup(portPairGroupId, portPairGroup));
+    }
+
+    public CompletableFuture<Void> deleteFlowClassifier(String flowClassifierId) {
+        return runAsync(() -> this.osCalls.deleteFlowClassifier(flowClassifierId));
+    }
+
+    public CompletableFuture<Void> deletePortChain(String portChainId) {
+        return runAsync(() -> this.osCalls.deletePortChain(portChainId));
+    }
+
+    public CompletableFuture<Void> deletePortPairGroup(String portPairGroupId) {
+        return runAsync(() -> this.osCalls.deletePortPairGroup(portPairGroupId));
+    }
+
+    public CompletableFuture<Void> deletePortPair(String portPairId) {
+        return runAsync(() -> this.osCalls.deletePortPair(portPairId));
+    }
+
+    /**
+     * Waits for the future and rethrows the original failure rather than the {@link CompletionException} wrapping it.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Same as {@link #await(CompletableFuture)}, giving up with a {@link java.util.concurrent.TimeoutException}
+     * after the timeout. The awaited work goes on regardless.
+     */
+    public static <T> T await(CompletableFuture<T> future, long timeoutMillis) throws Exception {
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.openstack4j.model.common.Resource;
+
+/**
+ * Iterates over a neutron collection one page at a time, so that a single page is held in memory and
+ * a consumer that stops early does not download the rest. The next page is requested on the consuming thread
+ * once the current one is consumed. A page larger than requested, or one repeating the previous page,
+ * means neutron does not paginate and is the last one.
+ */
+public class PagedIterator<T extends Resource> implements Iterator<T> {
+
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        /**
+         * @param marker the id of the last resource of the previous page, null for the first page
+         */
+        List<? extends T> load(int limit, String marker);
+    }
+
+    private final int pageSize;
+    private final PageLoader<T> loader;
+
+    private Iterator<? extends T> page = Collections.emptyIterator();
+    private String marker;
+    private boolean lastPage;
+
+    public PagedIterator(int pageSize, PageLoader<T> loader) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be positive: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.loader = loader;
+    }
+
+    public static <T extends Resource> Stream<T> stream(int pageSize, PageLoader<T> loader) {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+                new PagedIterator<>(pageSize, loader), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!this.page.hasNext()) {
+            if (this.lastPage) {
+                return false;
+            }
+
+            List<? extends T> items = this.loader.load(this.pageSize, this.marker);
+            String previousMarker = this.marker;
+            this.marker = items.isEmpty() ? null : items.get(items.size() - 1).getId();
+
+            boolean repeated = this.marker != null && this.marker.equals(previousMarker);
+            this.lastPage = items.size() != this.pageSize || repeated;
+            this.page = repeated ? Collections.emptyIterator() : items.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return this.page.next();
+    }
+}
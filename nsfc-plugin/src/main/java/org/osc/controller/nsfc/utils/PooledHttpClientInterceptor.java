@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.openstack4j.connectors.httpclient.HttpClientConfigInterceptor;
+import org.openstack4j.connectors.httpclient.HttpClientFactory;
+import org.openstack4j.core.transport.Config;
+
+/**
+ * Gives the http client of the openstack4j Apache HttpClient connector a connection pool limited in total and
+ * per route, keeps its connections alive between calls and has it ask for gzip or deflate responses, which it
+ * decodes. Requests and new connections are counted in the {@link HttpTransport}.
+ * <p>
+ * openstack4j holds a single interceptor and a single client for the whole JVM, so one shared interceptor is
+ * registered, on behalf of the transport last {@link #register registered}. A transport registered after the
+ * client was built takes over its statistics, connection limits and keep alive; whether the client asks for
+ * compressed responses stays as it was built. The interceptor stays registered as long as any transport is:
+ * unregistering the current one hands the client back to the transport registered before it.
+ * <p>
+ * Only loaded when the uber bundle embeds that connector.
+ */
+public class PooledHttpClientInterceptor implements HttpClientConfigInterceptor {
+
+    private static final PooledHttpClientInterceptor SHARED = new PooledHttpClientInterceptor(null);
+
+    // In the order they were registered, guarded by the class
+    private static final List<HttpTransport> REGISTERED = new ArrayList<>();
+
+    private volatile HttpTransport transport;
+    private volatile PoolingHttpClientConnectionManager pool;
+
+    public PooledHttpClientInterceptor(HttpTransport transport) {
+        this.transport = transport;
+    }
+
+    static synchronized void register(HttpTransport transport) {
+        if (REGISTERED.isEmpty()) {
+            HttpClientFactory.INSTANCE.registerInterceptor(SHARED);
+        }
+        REGISTERED.remove(transport);
+        REGISTERED.add(transport);
+        SHARED.use(transport);
+    }
+
+    /**
+     * Unregisters the shared interceptor once no transport is left registered.
+     */
+    static synchronized void unregister(HttpTransport transport) {
+        if (!REGISTERED.remove(transport)) {
+            return;
+        }
+
+        if (REGISTERED.isEmpty()) {
+            HttpClientFactory.INSTANCE.unregisterInterceptor();
+            SHARED.transport = null;
+        } else if (SHARED.transport == transport) {
+            SHARED.use(REGISTERED.get(REGISTERED.size() - 1));
+        }
+    }
+
+    /**
+     * @return the transport the shared interceptor works for, null when none is registered
+     */
+    public static synchronized HttpTransport getRegisteredTransport() {
+        return SHARED.transport;
+    }
+
+    private void use(HttpTransport transport) {
+        this.transport = transport;
+        PoolingHttpClientConnectionManager pool = this.pool;
+        if (pool != null) {
+            applyLimits(pool, transport);
+        }
+    }
+
+    @Override
+    public void onClientCreate(HttpClientBuilder client, RequestConfig.Builder requestConfig, Config config) {
+        HttpTransport transport = this.transport;
+        SSLConnectionSocketFactory sslSockets = config.getSslContext() != null
+                ? new SSLConnectionSocketFactory(config.getSslContext())
+                : SSLConnectionSocketFactory.getSocketFactory();
+        HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> connections = (route, connectionConfig) -> {
+            HttpTransport current = this.transport;
+            if (current != null) {
+                current.connectionOpened();
+            }
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, connectionConfig);
+        };
+
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", sslSockets)
+                        .build(),
+                connections);
+        applyLimits(pool, transport);
+        this.pool = pool;
+
+        // The pool replaces the limits openstack4j set on the builder from the config
+        client.setConnectionManager(pool)
+                .setKeepAliveStrategy(keepAliveStrategy())
+                .evictIdleConnections(transport.getKeepAliveMillis(), TimeUnit.MILLISECONDS)
+                .addInterceptorLast((HttpRequestInterceptor) (request, context) -> {
+                    HttpTransport current = this.transport;
+                    if (current != null) {
+                        current.requestSent();
+                    }
+                });
+        if (!transport.isCompression()) {
+            client.disableContentCompression();
+        }
+
+        requestConfig.setConnectTimeout(transport.getConnectTimeoutMillis())
+                .setConnectionRequestTimeout(transport.getConnectTimeoutMillis())
+                .setSocketTimeout(transport.getReadTimeoutMillis());
+    }
+
+    private static void applyLimits(PoolingHttpClientConnectionManager pool, HttpTransport transport) {
+        pool.setMaxTotal(transport.getMaxConnections());
+        pool.setDefaultMaxPerRoute(transport.getMaxConnectionsPerRoute());
+        transport.poolStatistics(() -> pool.getTotalStats().getLeased(), () -> pool.getTotalStats().getAvailable());
+    }
+
+    /**
+     * Keeps a connection for the time the server allows, at most the keep alive of the current transport.
+     */
+    private ConnectionKeepAliveStrategy keepAliveStrategy() {
+        long builtKeepAliveMillis = this.transport.getKeepAliveMillis();
+        return (response, context) -> {
+            HttpTransport current = this.transport;
+            long keepAliveMillis = current != null ? current.getKeepAliveMillis() : builtKeepAliveMillis;
+            long allowed = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return allowed > 0 ? Math.min(allowed, keepAliveMillis) : keepAliveMillis;
+        };
+    }
+}
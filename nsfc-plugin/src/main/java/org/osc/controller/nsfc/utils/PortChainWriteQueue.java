@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.openstack4j.model.network.ext.PortChain;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the flow classifier changes of a port chain into as few port chain updates as possible, since
+ * networking-sfc reprograms the flows of the whole chain on each of them.
+ * <p>
+ * The updates of a given chain are written one at a time. Changes submitted while the chain is being
+ * written, or within the window following the first of them, go to the next update together, where the
+ * last change of a classifier wins. Every submitter is completed when the update that
+ * carries its change lands.
+ * <p>
+ * The scheduler only ends the windows, the delayed updates being written on the executor, so that a slow update
+ * of a chain does not hold back those of the other chains. The queue of a chain is dropped as soon as nothing is
+ * pending or being written for it.
+ */
+public class PortChainWriteQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PortChainWriteQueue.class);
+
+    /**
+     * How long a submitter waits for its update beyond the window, enough for an update queued behind another one
+     * and retried on conflicts at the default read timeout.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 300000;
+
+    private final long windowMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    private final ConcurrentMap<String, ChainQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Writes each change as soon as no update of its chain is in progress.
+     */
+    public PortChainWriteQueue() {
+        this(0, null, null);
+    }
+
+    /**
+     * @param windowMillis how long changes are collected before an update, zero to write them at once
+     * @param scheduler ends the windows, only needed with a window
+     * @param executor writes the updates delayed by a window, only needed with a window
+     */
+    public PortChainWriteQueue(long windowMillis, ScheduledExecutorService scheduler, Executor executor) {
+        if (windowMillis > 0 && (scheduler == null || executor == null)) {
+            throw new IllegalArgumentException(
+                    "A scheduler and an executor are needed to write port chains after a window");
+        }
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    public long getWindowMillis() {
+        return this.windowMillis;
+    }
+
+    /**
+     * Waits for an update of the queue, at most the window and {@link #DEFAULT_TIMEOUT_MS}.
+     *
+     * @throws TimeoutException if the update is not done by then, though it may still be applied later
+     */
+    public <T> T await(CompletableFuture<T> update) throws Exception {
+        long timeoutMillis = this.windowMillis + DEFAULT_TIMEOUT_MS;
+        try {
+            return OsCallsAsync.await(update, timeoutMillis);
+        } catch (TimeoutException e) {
+            throw new TimeoutException("Port chain update not done after " + timeoutMillis + " ms");
+        }
+    }
+
+    /**
+     * @return the number of chains with changes pending or being written
+     */
+    public int size() {
+        return this.queues.size();
+    }
+
+    /**
+     * @return whether a change pending or being written adds the flow classifier to a chain
+     */
+    public boolean isAdding(String flowClassifierId) {
+        for (ChainQueue queue : this.queues.values()) {
+            synchronized (queue) {
+                if (adds(queue.pending, flowClassifierId) || adds(queue.current, flowClassifierId)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param lastRead the chain just read with {@link OsCalls#getPortChain}, null if not at hand
+     * @return completed with the chain as updated, once the flow classifiers are on it
+     */
+    public CompletableFuture<PortChain> addFlowClassifiers(OsCalls osCalls, String portChainId, PortChain lastRead,
+            Collection<String> flowClassifierIds) {
+        return submit(osCalls, portChainId, lastRead, batch -> flowClassifierIds.forEach(batch::add));
+    }
+
+    /**
+     * @param lastRead the chain just read with {@link OsCalls#getPortChain}, null if not at hand
+     * @return completed with the chain as updated, once the flow classifiers are off it
+     */
+    public CompletableFuture<PortChain> removeFlowClassifiers(OsCalls osCalls, String portChainId, PortChain lastRead,
+            Collection<String> flowClassifierIds) {
+        return submit(osCalls, portChainId, lastRead, batch -> flowClassifierIds.forEach(batch::remove));
+    }
+
+    /**
+     * @param lastRead the chain just read with {@link OsCalls#getPortChain}, null if not at hand
+     * @return completed with the chain as updated, once the flow classifiers are on or off it
+     */
+    public CompletableFuture<PortChain> updateFlowClassifiers(OsCalls osCalls, String portChainId, PortChain lastRead,
+            Collection<String> addedIds, Collection<String> removedIds) {
+        return submit(osCalls, portChainId, lastRead, batch -> {
+            removedIds.forEach(batch::remove);
+            addedIds.forEach(batch::add);
+        });
+    }
+
+    private CompletableFuture<PortChain> submit(OsCalls osCalls, String portChainId, PortChain lastRead,
+            Consumer<Batch> change) {
+        for (;;) {
+            ChainQueue queue = this.queues.computeIfAbsent(portChainId, k -> new ChainQueue());
+
+            Batch batch;
+            boolean writeNow = false;
+            boolean schedule = false;
+            synchronized (queue) {
+                // Dropped once idle, the next submitter creating another one
+                if (queue.dropped) {
+                    continue;
+                }
+
+                if (queue.pending == null) {
+                    queue.pending = new Batch(osCalls);
+                    if (!queue.writing) {
+                        writeNow = this.windowMillis <= 0;
+                        schedule = !writeNow;
+                    }
+                }
+
+                batch = queue.pending;
+                change.accept(batch);
+                batch.operations.add(OperationContext.current());
+                if (batch.lastRead == null) {
+                    batch.lastRead = lastRead;
+                }
+
+                if (writeNow) {
+                    queue.pending = null;
+                    queue.writing = true;
+                    queue.current = batch;
+                }
+            }
+
+            if (writeNow) {
+                write(portChainId, queue, batch);
+            } else if (schedule) {
+                this.scheduler.schedule(() -> endWindow(portChainId, queue), this.windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return batch.written;
+        }
+    }
+
+    /**
+     * Hands the pending changes over to the executor, the scheduler being shared with the other projects.
+     */
+    private void endWindow(String portChainId, ChainQueue queue) {
+        try {
+            this.executor.execute(() -> writePending(portChainId, queue));
+        } catch (RejectedExecutionException e) {
+            Batch batch;
+            synchronized (queue) {
+                if (queue.writing || queue.pending == null) {
+                    return;
+                }
+                batch = queue.pending;
+                queue.pending = null;
+                drop(portChainId, queue);
+            }
+            LOG.error("Failed to schedule the update of the Flow Classifiers of Port Chain {}", portChainId, e);
+            batch.written.completeExceptionally(e);
+        }
+    }
+
+    private void writePending(String portChainId, ChainQueue queue) {
+        Batch batch;
+        synchronized (queue) {
+            // An update in progress picks the pending changes up when it is done
+            if (queue.writing || queue.pending == null) {
+                return;
+            }
+            batch = queue.pending;
+            queue.pending = null;
+            queue.writing = true;
+            queue.current = batch;
+        }
+        write(portChainId, queue, batch);
+    }
+
+    private void write(String portChainId, ChainQueue queue, Batch batch) {
+        while (batch != null) {
+            PortChain portChain = writeBatch(portChainId, newer(batch.lastRead, queue.lastWritten), batch);
+
+            synchronized (queue) {
+                queue.lastWritten = portChain;
+                batch = queue.pending;
+                queue.pending = null;
+                queue.writing = batch != null;
+                queue.current = batch;
+                if (batch == null) {
+                    drop(portChainId, queue);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called holding the lock of the queue, once nothing is pending or being written.
+     */
+    private void drop(String portChainId, ChainQueue queue) {
+        queue.dropped = true;
+        this.queues.remove(portChainId, queue);
+    }
+
+    private PortChain writeBatch(String portChainId, PortChain lastRead, Batch batch) {
+        if (batch.isEmpty()) {
+            batch.written.complete(lastRead);
+            return lastRead;
+        }
+
+        try {
+            // The update is charged to every operation with changes in the batch
+            OperationContext operations = OperationContext.of(batch.operations);
+            PortChain portChain = OperationContext.call(operations, batch.osCalls.withSession(
+                    () -> batch.osCalls.updatePortChainFlowClassifiers(portChainId, lastRead, batch::applyTo)));
+            batch.written.complete(portChain);
+            return portChain;
+        } catch (Exception e) {
+            LOG.error("Failed to update the Flow Classifiers of Port Chain {}", portChainId, e);
+            batch.written.completeExceptionally(e);
+            return null;
+        }
+    }
+
+    /**
+     * A chain read before the previous update of the queue would undo it if neutron does not check revisions,
+     * so without revisions the chain that update returned is preferred. Only updates written back to back are
+     * related that way, the queue being dropped in between otherwise.
+     */
+    private static boolean adds(Batch batch, String flowClassifierId) {
+        return batch != null && batch.added.contains(flowClassifierId);
+    }
+
+    private static PortChain newer(PortChain lastRead, PortChain lastWritten) {
+        if (lastRead == null || lastWritten == null) {
+            return lastRead != null ? lastRead : lastWritten;
+        }
+
+        Long readRevision = RevisionedPortChain.revisionOf(lastRead);
+        Long writtenRevision = RevisionedPortChain.revisionOf(lastWritten);
+        if (readRevision != null && writtenRevision != null && readRevision > writtenRevision) {
+            return lastRead;
+        }
+        return lastWritten;
+    }
+
+    private static class ChainQueue {
+        /**
+         * Changes not yet being written, guarded by the queue.
+         */
+        Batch pending;
+
+        /**
+         * Whether an update of the chain is in progress, guarded by the queue.
+         */
+        boolean writing;
+
+        /**
+         * The changes being written, guarded by the queue.
+         */
+        Batch current;
+
+        /**
+         * The chain as returned by the last successful update, null after a failed one.
+         */
+        PortChain lastWritten;
+
+        /**
+         * Whether the queue was removed from the map, once idle, guarded by the queue.
+         */
+        boolean dropped;
+    }
+
+    private static class Batch {
+        final OsCalls osCalls;
+        final Set<String> added = new LinkedHashSet<>();
+        final Set<String> removed = new LinkedHashSet<>();
+        final CompletableFuture<PortChain> written = new CompletableFuture<>();
+        final List<OperationContext> operations = new ArrayList<>();
+        PortChain lastRead;
+
+        Batch(OsCalls osCalls) {
+            this.osCalls = osCalls;
+        }
+
+        // The last change of a classifier wins, whether the chain had it or not
+        void add(String flowClassifierId) {
+            this.removed.remove(flowClassifierId);
+            this.added.add(flowClassifierId);
+        }
+
+        void remove(String flowClassifierId) {
+            this.added.remove(flowClassifierId);
+            this.removed.add(flowClassifierId);
+        }
+
+        boolean isEmpty() {
+            return this.added.isEmpty() && this.removed.isEmpty();
+        }
+
+        boolean applyTo(List<String> flowClassifierIds) {
+            boolean changed = flowClassifierIds.removeAll(this.removed);
+            for (String flowClassifierId : this.added) {
+                if (!flowClassifierIds.contains(flowClassifierId)) {
+                    changed |= flowClassifierIds.add(flowClassifierId);
+                }
+            }
+            return changed;
+        }
+    }
+}
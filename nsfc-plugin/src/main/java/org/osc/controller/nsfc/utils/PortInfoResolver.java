@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.openstack4j.model.network.IP;
+import org.openstack4j.model.network.Port;
+import org.osc.sdk.controller.FlowInfo;
+import org.osc.sdk.controller.FlowPortInfo;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Resolves the source and destination ports of a batch of flows.
+ * <p>
+ * The addresses of all the flows are looked up together rather than flow by flow: first the MAC addresses,
+ * then the ip addresses of the endpoints whose MAC address found no port. Each lookup is a neutron port list
+ * filtered on up to {@link #MAX_ADDRESSES_PER_QUERY} addresses, the lists of a lookup running in parallel on the
+ * project executor, so that a batch costs two round trips whatever its size.
+ * <p>
+ * An address shared by several ports, an ip address reused on another network for instance, resolves to the
+ * first port listed.
+ */
+public class PortInfoResolver {
+
+    /**
+     * Number of addresses filtered on by a single port list, bounding the length of its url.
+     */
+    public static final int MAX_ADDRESSES_PER_QUERY = 50;
+
+    private final OsCalls osCalls;
+    private final OsCallsAsync osCallsAsync;
+
+    private final Map<String, String> portIdsByMac = new HashMap<>();
+    private final Map<String, String> portIdsByIp = new HashMap<>();
+
+    public PortInfoResolver(OsCalls osCalls, OsCallsAsync osCallsAsync) {
+        this.osCalls = osCalls;
+        this.osCallsAsync = osCallsAsync;
+    }
+
+    /**
+     * @return the ports of each flow by the key of the flow in the query, a port found for neither the MAC
+     *         address nor the ip address of an endpoint being null
+     */
+    public HashMap<String, FlowPortInfo> resolve(Map<String, FlowInfo> flows) throws Exception {
+        Set<String> macAddresses = new LinkedHashSet<>();
+        for (FlowInfo flow : flows.values()) {
+            addIfPresent(macAddresses, normalizeMac(flow.getSourceMacAddress()));
+            addIfPresent(macAddresses, normalizeMac(flow.getDestinationMacAddress()));
+        }
+        for (Port port : list(macAddresses, this.osCalls::listPortsByMacAddress)) {
+            this.portIdsByMac.putIfAbsent(normalizeMac(port.getMacAddress()), port.getId());
+        }
+
+        Set<String> ipAddresses = new LinkedHashSet<>();
+        for (FlowInfo flow : flows.values()) {
+            if (!this.portIdsByMac.containsKey(normalizeMac(flow.getSourceMacAddress()))) {
+                addIfPresent(ipAddresses, flow.getSourceIpAddress());
+            }
+            if (!this.portIdsByMac.containsKey(normalizeMac(flow.getDestinationMacAddress()))) {
+                addIfPresent(ipAddresses, flow.getDestinationIpAddress());
+            }
+        }
+        for (Port port : list(ipAddresses, this.osCalls::listPortsByIpAddress)) {
+            if (port.getFixedIps() != null) {
+                for (IP ip : port.getFixedIps()) {
+                    this.portIdsByIp.putIfAbsent(ip.getIpAddress(), port.getId());
+                }
+            }
+        }
+
+        HashMap<String, FlowPortInfo> portInfos = new HashMap<>();
+        flows.forEach((key, flow) -> portInfos.put(key, new FlowPortInfo(flow, flow.getRequestId(),
+                portIdOf(flow.getSourceMacAddress(), flow.getSourceIpAddress()),
+                portIdOf(flow.getDestinationMacAddress(), flow.getDestinationIpAddress()))));
+        return portInfos;
+    }
+
+    private List<Port> list(Set<String> addresses, Function<List<String>, List<? extends Port>> listCall)
+            throws Exception {
+        List<CompletableFuture<List<? extends Port>>> futures = Lists
+                .partition(new ArrayList<>(addresses), MAX_ADDRESSES_PER_QUERY).stream()
+                .map(chunk -> this.osCallsAsync.<List<? extends Port>>supplyAsync(() -> listCall.apply(chunk)))
+                .collect(toList());
+
+        List<Port> ports = new ArrayList<>();
+        for (CompletableFuture<List<? extends Port>> future : futures) {
+            ports.addAll(OsCallsAsync.await(future));
+        }
+        return ports;
+    }
+
+    private String portIdOf(String macAddress, String ipAddress) {
+        String portId = macAddress == null ? null : this.portIdsByMac.get(normalizeMac(macAddress));
+        if (portId == null && ipAddress != null) {
+            portId = this.portIdsByIp.get(ipAddress);
+        }
+        return portId;
+    }
+
+    private static void addIfPresent(Set<String> addresses, String address) {
+        if (address != null && !address.isEmpty()) {
+            addresses.add(address);
+        }
+    }
+
+    /**
+     * Neutron stores MAC addresses in lower case, OSC may report them in either.
+     */
+    private static String normalizeMac(String macAddress) {
+        return macAddress == null ? null : macAddress.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.ExecutorService;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * State shared by all the redirection apis working on the same openstack project.
+ * <p>
+ * OSC creates a redirection api for practically every operation, so anything worth keeping
+ * between operations lives here and is handed over by the controller api.
+ */
+public class ProjectContext {
+
+    private final TopologyCache topologyCache;
+    private final GatewayPortResolver gatewayPortResolver;
+    private final ExecutorService executor;
+    private final FilteredQueryService filteredQueryService;
+    private final OsCallMetrics metrics;
+    private final RevisionedPortChainService revisionedPortChainService;
+    private final PortChainWriteQueue portChainWriteQueue;
+    private final LookupBatcher lookupBatcher;
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final InspectionHookIndex inspectionHookIndex = new InspectionHookIndex();
+    private final DevicePortCache devicePortCache;
+
+    private ProjectContext(Builder builder) {
+        this.topologyCache = builder.topologyCache;
+        this.gatewayPortResolver = builder.gatewayPortResolver;
+        this.executor = builder.executor;
+        this.filteredQueryService = builder.filteredQueryService;
+        this.metrics = builder.metrics;
+        this.revisionedPortChainService = builder.revisionedPortChainService;
+        this.portChainWriteQueue = builder.portChainWriteQueue;
+        this.lookupBatcher = builder.lookupBatcher;
+        this.devicePortCache = builder.devicePortCache;
+    }
+
+    /**
+     * Fresh caches and metrics, with parallel work running on the calling thread, unless set otherwise.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public TopologyCache getTopologyCache() {
+        return this.topologyCache;
+    }
+
+    public GatewayPortResolver getGatewayPortResolver() {
+        return this.gatewayPortResolver;
+    }
+
+    /**
+     * Bounded executor for openstack calls issued in parallel. Tasks must be wrapped with
+     * {@link OsCalls#withSession} since openstack4j binds the session to the calling thread.
+     */
+    public ExecutorService getExecutor() {
+        return this.executor;
+    }
+
+    public FilteredQueryService getFilteredQueryService() {
+        return this.filteredQueryService;
+    }
+
+    /**
+     * Statistics of the openstack calls, usually shared with the other projects of the controller api.
+     */
+    public OsCallMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    public RevisionedPortChainService getRevisionedPortChainService() {
+        return this.revisionedPortChainService;
+    }
+
+    /**
+     * Serializes and merges the flow classifier updates of each port chain of the project.
+     */
+    public PortChainWriteQueue getPortChainWriteQueue() {
+        return this.portChainWriteQueue;
+    }
+
+    /**
+     * Merges the port and port pair lookups by id of the project into filtered list requests.
+     */
+    public LookupBatcher getLookupBatcher() {
+        return this.lookupBatcher;
+    }
+
+    /**
+     * Shares the reads in flight between the redirection apis of the project, never with other projects.
+     */
+    public SingleFlight getSingleFlight() {
+        return this.singleFlight;
+    }
+
+    /**
+     * Flow classifiers of the inspection hooks installed or found in the project.
+     */
+    public InspectionHookIndex getInspectionHookIndex() {
+        return this.inspectionHookIndex;
+    }
+
+    /**
+     * Ports of the devices looked up in the project.
+     */
+    public DevicePortCache getDevicePortCache() {
+        return this.devicePortCache;
+    }
+
+    public static class Builder {
+        private TopologyCache topologyCache = new TopologyCache();
+        private GatewayPortResolver gatewayPortResolver = new GatewayPortResolver();
+        private ExecutorService executor = MoreExecutors.newDirectExecutorService();
+        private FilteredQueryService filteredQueryService = new FilteredQueryServiceImpl();
+        private OsCallMetrics metrics = new OsCallMetrics();
+        private RevisionedPortChainService revisionedPortChainService = new RevisionedPortChainServiceImpl();
+        private PortChainWriteQueue portChainWriteQueue = new PortChainWriteQueue();
+        private LookupBatcher lookupBatcher = new LookupBatcher();
+        private DevicePortCache devicePortCache = new DevicePortCache();
+
+        private Builder() {
+        }
+
+        public Builder topologyCache(TopologyCache topologyCache) {
+            this.topologyCache = topologyCache;
+            return this;
+        }
+
+        public Builder gatewayPortResolver(GatewayPortResolver gatewayPortResolver) {
+            this.gatewayPortResolver = gatewayPortResolver;
+            return this;
+        }
+
+        public Builder executor(ExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Builder filteredQueryService(FilteredQueryService filteredQueryService) {
+            this.filteredQueryService = filteredQueryService;
+            return this;
+        }
+
+        public Builder metrics(OsCallMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Builder revisionedPortChainService(RevisionedPortChainService revisionedPortChainService) {
+            this.revisionedPortChainService = revisionedPortChainService;
+            return this;
+        }
+
+        public Builder portChainWriteQueue(PortChainWriteQueue portChainWriteQueue) {
+            this.portChainWriteQueue = portChainWriteQueue;
+            return this;
+        }
+
+        public Builder lookupBatcher(LookupBatcher lookupBatcher) {
+            this.lookupBatcher = lookupBatcher;
+            return this;
+        }
+
+        public Builder devicePortCache(DevicePortCache devicePortCache) {
+            this.devicePortCache = devicePortCache;
+            return this;
+        }
+
+        public ProjectContext build() {
+            return new ProjectContext(this);
+        }
+    }
+}
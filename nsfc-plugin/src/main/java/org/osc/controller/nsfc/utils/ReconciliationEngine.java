@@ -0,0 +1,700 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.osc.controller.nsfc.entities.ReconciliationReport.ActionType.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.FLOW_CLASSIFIER;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.PORT_CHAIN;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.PORT_PAIR;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.PORT_PAIR_GROUP;
+import static org.osc.controller.nsfc.utils.SfcSnapshot.isOwned;
+import static org.osc.controller.nsfc.utils.SfcSnapshot.toException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.osc.controller.nsfc.entities.FlowClassifierElement;
+import org.osc.controller.nsfc.entities.PortPairElement;
+import org.osc.controller.nsfc.entities.PortPairGroupElement;
+import org.osc.controller.nsfc.entities.ReconciliationReport;
+import org.osc.controller.nsfc.entities.ReconciliationReport.Action;
+import org.osc.controller.nsfc.entities.ReconciliationReport.ActionType;
+import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings neutron in line with the complete set of port pairs, port pair groups, port chains and flow
+ * classifiers OSC expects, in one pass.
+ * <p>
+ * Neutron is listed once per resource type and the differences are computed in memory. The creates, updates
+ * and deletes are then applied in stages, in the order neutron requires: nothing is deleted while still in
+ * use and nothing is added to a group or chain while still a member of another one. The calls of a stage
+ * run in parallel on the project executor.
+ * <p>
+ * The desired state is the element graph of the redirection api:
+ * <ul>
+ * <li>port pairs are identified by their ingress and egress ports,</li>
+ * <li>port pair groups and port chains by their id, those without one being created,</li>
+ * <li>inspection hooks by their id or else their inspected port.</li>
+ * </ul>
+ * A port pair group listed without any port pair stands for the existing group as it is. The ids of the
+ * objects found or created are set on the elements.
+ * <p>
+ * Only the objects OSC created, recognized by their name, are ever deleted. One engine serves one
+ * reconciliation.
+ * <p>
+ * The flow classifiers of a port chain are only ever added or removed through the {@link PortChainWriteQueue},
+ * like those of the inspection hooks, so that a hook installed or removed during the reconciliation is kept.
+ */
+public class ReconciliationEngine {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReconciliationEngine.class);
+
+    static final String PORT_PAIR_PREFIX = "OSCPortPair-";
+    static final String PORT_PAIR_GROUP_PREFIX = "OSCPortPairGroup-";
+    static final String PORT_CHAIN_PREFIX = "OSCPortChain-";
+    static final String FLOW_CLASSIFIER_PREFIX = "OSCFlowClassifier-";
+
+    private final OsCalls osCalls;
+    private final OsCallsAsync osCallsAsync;
+    private final RedirectionApiUtils utils;
+    private final PortChainWriteQueue portChainWriteQueue;
+    private final ReconciliationReport report = new ReconciliationReport();
+
+    // Neutron as listed
+    private final Map<String, PortPair> portPairs = new HashMap<>();
+    private final Map<String, PortPair> portPairsByPorts = new HashMap<>();
+    private final Map<String, PortPairGroup> portPairGroups = new HashMap<>();
+    private final Map<String, PortChain> portChains = new HashMap<>();
+    private final Map<String, FlowClassifier> flowClassifiers = new HashMap<>();
+
+    // Members of the groups and chains as changed so far
+    private final Map<String, List<String>> groupPairs = new HashMap<>();
+    private final Map<String, List<String>> chainGroups = new HashMap<>();
+    private final Map<String, List<String>> chainFlowClassifiers = new HashMap<>();
+    private final Set<String> deleteAttempted = new HashSet<>();
+
+    // Desired state
+    private final List<ServiceFunctionChainElement> desiredChains = new ArrayList<>();
+    private final List<PortPairGroupElement> desiredGroups = new ArrayList<>();
+    private final Map<String, PortPairElement> desiredPairs = new LinkedHashMap<>();
+    private final Map<FlowClassifierElement, String> hookFlowClassifiers = new IdentityHashMap<>();
+
+    public ReconciliationEngine(OsCalls osCalls, OsCallsAsync osCallsAsync, RedirectionApiUtils utils,
+            PortChainWriteQueue portChainWriteQueue) {
+        this.osCalls = osCalls;
+        this.osCallsAsync = osCallsAsync;
+        this.utils = utils;
+        this.portChainWriteQueue = portChainWriteQueue;
+    }
+
+    /**
+     * @param chains every port chain OSC expects, with their port pair groups and inspection hooks
+     * @param portPairGroups every port pair group OSC expects, whether in a chain or not yet
+     * @return the actions taken
+     * @throws TimeoutException if the calls of a stage are not done in time, the stage failing as a whole
+     */
+    public ReconciliationReport reconcile(List<ServiceFunctionChainElement> chains,
+            List<PortPairGroupElement> portPairGroups) throws Exception {
+        checkArgument(chains != null, "null passed for %s !", "Service Function Chain list");
+        checkArgument(portPairGroups != null, "null passed for %s !", "Port Pair Group list");
+
+        snapshot();
+        collectDesiredState(chains, portPairGroups);
+
+        deleteUndesiredPortChains();
+        createPortPairs();
+        claimFlowClassifiers();
+        shrinkPortChains();
+        deleteUndesiredPortPairGroups();
+        shrinkPortPairGroups();
+        createAndGrowPortPairGroups();
+        createFlowClassifiers();
+        createAndUpdatePortChains();
+        // Groups only left by the chain updates
+        deleteUndesiredPortPairGroups();
+        deleteUndesiredPortPairsAndFlowClassifiers();
+
+        LOG.info("Reconciliation applied {} actions, {} failed", this.report.getActions().size(),
+                this.report.getFailures().size());
+        return this.report;
+    }
+
+    private void snapshot() throws Exception {
+        SfcSnapshot snapshot = SfcSnapshot.list(this.osCalls, this.osCallsAsync);
+
+        for (PortPair portPair : snapshot.getPortPairs().values()) {
+            this.portPairs.put(portPair.getId(), portPair);
+            this.portPairsByPorts.put(ports(portPair.getIngressId(), portPair.getEgressId()), portPair);
+        }
+
+        for (PortPairGroup portPairGroup : snapshot.getPortPairGroups().values()) {
+            this.portPairGroups.put(portPairGroup.getId(), portPairGroup);
+            this.groupPairs.put(portPairGroup.getId(), copyOf(portPairGroup.getPortPairs()));
+        }
+
+        for (PortChain portChain : snapshot.getPortChains().values()) {
+            this.portChains.put(portChain.getId(), portChain);
+            this.chainGroups.put(portChain.getId(), copyOf(portChain.getPortPairGroups()));
+            this.chainFlowClassifiers.put(portChain.getId(), copyOf(portChain.getFlowClassifiers()));
+        }
+
+        this.flowClassifiers.putAll(snapshot.getFlowClassifiers());
+    }
+
+    private void collectDesiredState(List<ServiceFunctionChainElement> chains,
+            List<PortPairGroupElement> portPairGroups) {
+        Map<String, PortPairGroupElement> groupsById = new HashMap<>();
+        Set<PortPairGroupElement> groupsSeen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        List<PortPairGroupElement> candidates = new ArrayList<>(portPairGroups);
+        for (ServiceFunctionChainElement chain : chains) {
+            if (chain == null) {
+                continue;
+            }
+            if (chain.getElementId() != null && !this.portChains.containsKey(chain.getElementId())) {
+                chain.setElementId(null);
+            }
+            this.desiredChains.add(chain);
+            candidates.addAll(chain.getPortPairGroups());
+        }
+
+        for (PortPairGroupElement group : candidates) {
+            if (group == null || !groupsSeen.add(group)) {
+                continue;
+            }
+            if (group.getElementId() != null && !this.portPairGroups.containsKey(group.getElementId())) {
+                group.setElementId(null);
+            }
+
+            PortPairGroupElement sameGroup = group.getElementId() != null ? groupsById.get(group.getElementId()) : null;
+            if (sameGroup == null) {
+                this.desiredGroups.add(group);
+            } else if (sameGroup.getPortPairs().isEmpty() && !group.getPortPairs().isEmpty()) {
+                // The element listing the port pairs wins over mere references to the group
+                this.desiredGroups.set(this.desiredGroups.indexOf(sameGroup), group);
+            } else {
+                continue;
+            }
+            if (group.getElementId() != null) {
+                groupsById.put(group.getElementId(), group);
+            }
+        }
+
+        for (PortPairGroupElement group : this.desiredGroups) {
+            for (PortPairElement portPair : group.getPortPairs()) {
+                if (portPair.getIngressPort() == null || portPair.getIngressPort().getElementId() == null
+                        || portPair.getEgressPort() == null || portPair.getEgressPort().getElementId() == null) {
+                    fail(CREATE, PORT_PAIR, portPair.getElementId(), "null passed for Ingress or Egress Port !");
+                    continue;
+                }
+                this.desiredPairs.putIfAbsent(
+                        ports(portPair.getIngressPort().getElementId(), portPair.getEgressPort().getElementId()), portPair);
+            }
+        }
+    }
+
+    private void deleteUndesiredPortChains() throws Exception {
+        Set<String> desiredIds = this.desiredChains.stream().map(ServiceFunctionChainElement::getElementId)
+                .filter(Objects::nonNull).collect(toSet());
+
+        List<CompletableFuture<String>> stage = new ArrayList<>();
+        for (PortChain portChain : this.portChains.values()) {
+            String id = portChain.getId();
+            if (!desiredIds.contains(id) && isOwned(portChain.getName(), PORT_CHAIN_PREFIX)) {
+                stage.add(apply(DELETE, PORT_CHAIN, id, () -> {
+                    this.osCalls.deletePortChain(id);
+                    return id;
+                }));
+            }
+        }
+
+        for (String id : succeeded(stage)) {
+            this.chainGroups.remove(id);
+            this.chainFlowClassifiers.remove(id);
+        }
+    }
+
+    private void createPortPairs() throws Exception {
+        Map<PortPairElement, CompletableFuture<String>> stage = new IdentityHashMap<>();
+        for (Map.Entry<String, PortPairElement> entry : this.desiredPairs.entrySet()) {
+            PortPairElement element = entry.getValue();
+            PortPair existing = this.portPairsByPorts.get(entry.getKey());
+            if (existing != null) {
+                element.setElementId(existing.getId());
+                continue;
+            }
+
+            PortPair portPair = Builders.portPair()
+                    .ingressId(element.getIngressPort().getElementId())
+                    .egressId(element.getEgressPort().getElementId())
+                    .name(name(PORT_PAIR_PREFIX))
+                    .description("Port Pair created by OSC")
+                    .build();
+            stage.put(element, apply(CREATE, PORT_PAIR, null, () -> this.osCalls.createPortPair(portPair).getId()));
+        }
+
+        awaitAll(stage.values());
+        stage.forEach((element, future) -> element.setElementId(future.join()));
+    }
+
+    /**
+     * Assigns an existing flow classifier to every hook it can serve, preferring the ones already in the
+     * right chain, then the ones OSC created and left elsewhere.
+     */
+    private void claimFlowClassifiers() {
+        Set<String> claimed = new HashSet<>();
+
+        for (ServiceFunctionChainElement chain : this.desiredChains) {
+            if (chain.getElementId() == null) {
+                continue;
+            }
+            for (FlowClassifierElement hook : chain.getInspectionHooks()) {
+                this.chainFlowClassifiers.get(chain.getElementId()).stream()
+                        .filter(id -> !claimed.contains(id) && serves(this.flowClassifiers.get(id), hook))
+                        .findFirst()
+                        .ifPresent(id -> claim(hook, id, claimed));
+            }
+        }
+
+        Set<String> desiredChainIds = this.desiredChains.stream().map(ServiceFunctionChainElement::getElementId)
+                .filter(Objects::nonNull).collect(toSet());
+        Map<String, String> chainByFlowClassifier = new HashMap<>();
+        this.chainFlowClassifiers.forEach((chainId, ids) -> ids.forEach(id -> chainByFlowClassifier.put(id, chainId)));
+
+        for (ServiceFunctionChainElement chain : this.desiredChains) {
+            for (FlowClassifierElement hook : chain.getInspectionHooks()) {
+                if (this.hookFlowClassifiers.containsKey(hook)) {
+                    continue;
+                }
+                this.flowClassifiers.values().stream()
+                        .filter(fc -> !claimed.contains(fc.getId()) && isOwned(fc.getName(), FLOW_CLASSIFIER_PREFIX))
+                        .filter(fc -> {
+                            String chainId = chainByFlowClassifier.get(fc.getId());
+                            return chainId == null || desiredChainIds.contains(chainId);
+                        })
+                        .filter(fc -> serves(fc, hook))
+                        .findFirst()
+                        .ifPresent(fc -> claim(hook, fc.getId(), claimed));
+            }
+        }
+    }
+
+    /**
+     * Drops from the existing chains the groups and classifiers they must no longer hold, so that those can
+     * be deleted or moved. Neutron does not accept a chain without groups, such chains are left to
+     * {@link #createAndUpdatePortChains}.
+     */
+    private void shrinkPortChains() throws Exception {
+        Map<String, CompletableFuture<String>> stage = new HashMap<>();
+        Map<String, List<String>> keptGroups = new HashMap<>();
+        Map<String, List<String>> keptFlowClassifiers = new HashMap<>();
+
+        for (ServiceFunctionChainElement chain : this.desiredChains) {
+            String id = chain.getElementId();
+            if (id == null) {
+                continue;
+            }
+
+            Set<String> wantedGroups = new HashSet<>(groupIds(chain));
+            Set<String> wantedFlowClassifiers = new HashSet<>(flowClassifierIds(chain));
+            List<String> currentGroups = this.chainGroups.get(id);
+            List<String> currentFlowClassifiers = this.chainFlowClassifiers.get(id);
+
+            List<String> groups = currentGroups.stream().filter(wantedGroups::contains).collect(toList());
+            List<String> flowClassifiers = currentFlowClassifiers.stream().filter(wantedFlowClassifiers::contains)
+                    .collect(toList());
+
+            if (groups.isEmpty()
+                    || (groups.size() == currentGroups.size() && flowClassifiers.size() == currentFlowClassifiers.size())) {
+                continue;
+            }
+
+            keptGroups.put(id, groups);
+            keptFlowClassifiers.put(id, flowClassifiers);
+            stage.put(id, updatePortChain(id, currentGroups, groups, currentFlowClassifiers, flowClassifiers));
+        }
+
+        awaitAll(stage.values());
+        stage.forEach((id, future) -> {
+            if (future.join() != null) {
+                this.chainGroups.put(id, keptGroups.get(id));
+                this.chainFlowClassifiers.put(id, keptFlowClassifiers.get(id));
+            }
+        });
+    }
+
+    private void deleteUndesiredPortPairGroups() throws Exception {
+        Set<String> desiredIds = this.desiredGroups.stream().map(PortPairGroupElement::getElementId)
+                .filter(Objects::nonNull).collect(toSet());
+        Set<String> inChains = this.chainGroups.values().stream().flatMap(List::stream).collect(toSet());
+
+        List<CompletableFuture<String>> stage = new ArrayList<>();
+        for (PortPairGroup portPairGroup : this.portPairGroups.values()) {
+            String id = portPairGroup.getId();
+            if (!desiredIds.contains(id) && !inChains.contains(id)
+                    && isOwned(portPairGroup.getName(), PORT_PAIR_GROUP_PREFIX) && this.deleteAttempted.add(id)) {
+                stage.add(apply(DELETE, PORT_PAIR_GROUP, id, () -> {
+                    this.osCalls.deletePortPairGroup(id);
+                    return id;
+                }));
+            }
+        }
+
+        succeeded(stage).forEach(this.groupPairs::remove);
+    }
+
+    private void shrinkPortPairGroups() throws Exception {
+        Map<String, CompletableFuture<String>> stage = new HashMap<>();
+        Map<String, List<String>> keptPairs = new HashMap<>();
+
+        for (PortPairGroupElement group : this.desiredGroups) {
+            String id = group.getElementId();
+            if (id == null || group.getPortPairs().isEmpty()) {
+                continue;
+            }
+
+            Set<String> wanted = new HashSet<>(portPairIds(group));
+            List<String> current = this.groupPairs.get(id);
+            List<String> pairs = current.stream().filter(wanted::contains).collect(toList());
+            if (pairs.isEmpty() || pairs.size() == current.size()) {
+                continue;
+            }
+
+            PortPairGroup update = Builders.portPairGroup().portPairs(pairs).build();
+            keptPairs.put(id, pairs);
+            stage.put(id, apply(UPDATE, PORT_PAIR_GROUP, id, () -> this.osCalls.updatePortPairGroup(id, update).getId()));
+        }
+
+        awaitAll(stage.values());
+        stage.forEach((id, future) -> {
+            if (future.join() != null) {
+                this.groupPairs.put(id, keptPairs.get(id));
+            }
+        });
+    }
+
+    private void createAndGrowPortPairGroups() throws Exception {
+        Map<PortPairGroupElement, CompletableFuture<String>> stage = new IdentityHashMap<>();
+
+        for (PortPairGroupElement group : this.desiredGroups) {
+            String id = group.getElementId();
+            List<String> pairs = portPairIds(group);
+
+            if (id == null) {
+                if (pairs.isEmpty()) {
+                    fail(CREATE, PORT_PAIR_GROUP, null, "Cannot create a Port Pair Group without Port Pairs");
+                    continue;
+                }
+
+                PortPairGroup portPairGroup = Builders.portPairGroup()
+                        .name(name(PORT_PAIR_GROUP_PREFIX))
+                        .description("Port Pair Group created by OSC")
+                        .portPairs(pairs)
+                        .build();
+                stage.put(group, apply(CREATE, PORT_PAIR_GROUP, null,
+                        () -> this.osCalls.createPortPairGroup(portPairGroup).getId()));
+            } else if (!group.getPortPairs().isEmpty()
+                    && !new HashSet<>(pairs).equals(new HashSet<>(this.groupPairs.get(id)))) {
+                PortPairGroup update = Builders.portPairGroup().portPairs(pairs).build();
+                stage.put(group, apply(UPDATE, PORT_PAIR_GROUP, id,
+                        () -> this.osCalls.updatePortPairGroup(id, update).getId()));
+            }
+        }
+
+        awaitAll(stage.values());
+        stage.forEach((group, future) -> {
+            String id = future.join();
+            if (group.getElementId() == null) {
+                group.setElementId(id);
+            }
+            if (id != null) {
+                this.groupPairs.put(id, portPairIds(group));
+            }
+        });
+    }
+
+    private void createFlowClassifiers() throws Exception {
+        Map<FlowClassifierElement, CompletableFuture<String>> stage = new IdentityHashMap<>();
+
+        for (ServiceFunctionChainElement chain : this.desiredChains) {
+            for (FlowClassifierElement hook : chain.getInspectionHooks()) {
+                String claimedId = this.hookFlowClassifiers.get(hook);
+                if (claimedId != null) {
+                    hook.setHookId(claimedId);
+                    continue;
+                }
+
+                if (hook.getInspectedPort() == null || hook.getInspectedPort().getElementId() == null) {
+                    fail(CREATE, FLOW_CLASSIFIER, hook.getHookId(), "null passed for Inspected Port !");
+                    continue;
+                }
+
+                String inspectedPortId = hook.getInspectedPort().getElementId();
+                stage.put(hook, apply(CREATE, FLOW_CLASSIFIER, null,
+                        () -> this.utils.createFlowClassifier(inspectedPortId).getId()));
+            }
+        }
+
+        awaitAll(stage.values());
+        stage.forEach((hook, future) -> {
+            String id = future.join();
+            hook.setHookId(id);
+            if (id != null) {
+                this.hookFlowClassifiers.put(hook, id);
+            }
+        });
+    }
+
+    private void createAndUpdatePortChains() throws Exception {
+        Map<ServiceFunctionChainElement, CompletableFuture<String>> stage = new IdentityHashMap<>();
+
+        for (ServiceFunctionChainElement chain : this.desiredChains) {
+            String id = chain.getElementId();
+            List<String> groups = groupIds(chain);
+            List<String> flowClassifiers = flowClassifierIds(chain);
+
+            if (id != null && groups.equals(this.chainGroups.get(id))
+                    && new HashSet<>(flowClassifiers).equals(new HashSet<>(this.chainFlowClassifiers.get(id)))) {
+                continue;
+            }
+
+            if (groups.isEmpty()) {
+                fail(id == null ? CREATE : UPDATE, PORT_CHAIN, id, "A Port Chain needs at least one Port Pair Group");
+                continue;
+            }
+
+            if (id == null) {
+                PortChain portChain = Builders.portChain()
+                        .description("Port Chain object created by OSC")
+                        .name(name(PORT_CHAIN_PREFIX))
+                        .chainParameters(emptyMap())
+                        .flowClassifiers(flowClassifiers)
+                        .portPairGroups(groups)
+                        .build();
+                stage.put(chain, apply(CREATE, PORT_CHAIN, null, () -> this.osCalls.createPortChain(portChain).getId()));
+            } else {
+                stage.put(chain, updatePortChain(id, this.chainGroups.get(id), groups,
+                        this.chainFlowClassifiers.get(id), flowClassifiers));
+            }
+        }
+
+        awaitAll(stage.values());
+        stage.forEach((chain, future) -> {
+            String id = future.join();
+            if (chain.getElementId() == null) {
+                chain.setElementId(id);
+            }
+            if (id != null) {
+                this.chainGroups.put(id, groupIds(chain));
+                this.chainFlowClassifiers.put(id, flowClassifierIds(chain));
+            }
+        });
+    }
+
+    private void deleteUndesiredPortPairsAndFlowClassifiers() throws Exception {
+        Set<String> desiredPairIds = this.desiredPairs.values().stream().map(PortPairElement::getElementId)
+                .filter(Objects::nonNull).collect(toSet());
+        Set<String> inGroups = this.groupPairs.values().stream().flatMap(List::stream).collect(toSet());
+        Set<String> claimed = new HashSet<>(this.hookFlowClassifiers.values());
+        Set<String> inChains = this.chainFlowClassifiers.values().stream().flatMap(List::stream).collect(toSet());
+
+        List<CompletableFuture<String>> stage = new ArrayList<>();
+        for (PortPair portPair : this.portPairs.values()) {
+            String id = portPair.getId();
+            if (!desiredPairIds.contains(id) && !inGroups.contains(id) && isOwned(portPair.getName(), PORT_PAIR_PREFIX)) {
+                stage.add(apply(DELETE, PORT_PAIR, id, () -> {
+                    this.osCalls.deletePortPair(id);
+                    return id;
+                }));
+            }
+        }
+
+        List<String> unused = this.flowClassifiers.values().stream()
+                .filter(fc -> !claimed.contains(fc.getId()) && !inChains.contains(fc.getId()))
+                .filter(fc -> isOwned(fc.getName(), FLOW_CLASSIFIER_PREFIX))
+                .map(FlowClassifier::getId)
+                .collect(toList());
+        for (String id : notAddedSinceSnapshot(unused)) {
+            stage.add(apply(DELETE, FLOW_CLASSIFIER, id, () -> {
+                this.osCalls.deleteFlowClassifier(id);
+                return id;
+            }));
+        }
+
+        awaitAll(stage);
+    }
+
+    /**
+     * Leaves out the flow classifiers an inspection hook installed since the snapshot is adding to a chain,
+     * whether its update is still queued or already written. The queue is checked first, an update leaving
+     * it being on its chain by the time the chains are read again.
+     *
+     * @return the flow classifiers no chain is about to hold
+     */
+    private List<String> notAddedSinceSnapshot(List<String> flowClassifierIds) {
+        List<String> unused = flowClassifierIds.stream().filter(id -> !this.portChainWriteQueue.isAdding(id))
+                .collect(toList());
+        if (unused.isEmpty()) {
+            return unused;
+        }
+
+        Set<String> inChains;
+        try {
+            inChains = this.osCalls.streamPortChains(TopologyCache.PORT_CHAIN_FIELDS)
+                    .flatMap(portChain -> copyOf(portChain.getFlowClassifiers()).stream())
+                    .collect(toSet());
+        } catch (RuntimeException e) {
+            LOG.warn("Reconciliation keeps {} unused flow classifiers, the port chains could not be read again",
+                    unused.size(), e);
+            return new ArrayList<>();
+        }
+        return unused.stream().filter(id -> !inChains.contains(id)).collect(toList());
+    }
+
+    /**
+     * Sends the port pair groups of the chain as an update of the snapshot, and queues the flow classifiers
+     * added or removed since the snapshot along with those of the inspection hooks.
+     */
+    private CompletableFuture<String> updatePortChain(String id, List<String> currentGroups, List<String> groups,
+            List<String> currentFlowClassifiers, List<String> flowClassifiers) {
+        List<String> added = flowClassifiers.stream().filter(f -> !currentFlowClassifiers.contains(f))
+                .collect(toList());
+        List<String> removed = currentFlowClassifiers.stream().filter(f -> !flowClassifiers.contains(f))
+                .collect(toList());
+
+        return record(UPDATE, PORT_CHAIN, id, this.osCallsAsync.supplyAsync(() -> {
+            if (!groups.equals(currentGroups)) {
+                this.osCalls.updatePortChain(id, Builders.portChain().id(id).portPairGroups(currentGroups).build(),
+                        Builders.portChain().portPairGroups(groups).build());
+            }
+            if (added.isEmpty() && removed.isEmpty()) {
+                return CompletableFuture.completedFuture(id);
+            }
+            // Not awaited here, a delayed update needing the executor this runs on
+            return this.portChainWriteQueue.updateFlowClassifiers(this.osCalls, id, null, added, removed)
+                    .thenApply(portChain -> id);
+        }).thenCompose(update -> update));
+    }
+
+    /**
+     * Runs the call on the project executor and records it in the report.
+     *
+     * @return a future of the id of the object, or of null if the call failed. It never completes exceptionally.
+     */
+    private CompletableFuture<String> apply(ActionType type, String resource, String id, Supplier<String> call) {
+        return record(type, resource, id, this.osCallsAsync.supplyAsync(call));
+    }
+
+    private CompletableFuture<String> record(ActionType type, String resource, String id,
+            CompletableFuture<String> call) {
+        return call.handle((resultId, t) -> {
+            Exception error = t == null ? null : toException(t);
+            String actionId = resultId != null ? resultId : id;
+            this.report.add(new Action(type, resource, actionId, error));
+
+            if (error != null) {
+                LOG.warn("Reconciliation failed to {} {} {}", type, resource, id, error);
+                return null;
+            }
+            return actionId;
+        });
+    }
+
+    private void fail(ActionType type, String resource, String id, String message) {
+        this.report.add(new Action(type, resource, id, new IllegalArgumentException(message)));
+    }
+
+    private void claim(FlowClassifierElement hook, String flowClassifierId, Set<String> claimed) {
+        claimed.add(flowClassifierId);
+        this.hookFlowClassifiers.put(hook, flowClassifierId);
+    }
+
+    private List<String> portPairIds(PortPairGroupElement group) {
+        return group.getPortPairs().stream().map(PortPairElement::getElementId)
+                .filter(Objects::nonNull).distinct().collect(toList());
+    }
+
+    private List<String> groupIds(ServiceFunctionChainElement chain) {
+        return chain.getPortPairGroups().stream().filter(Objects::nonNull).map(PortPairGroupElement::getElementId)
+                .filter(Objects::nonNull).distinct().collect(toList());
+    }
+
+    private List<String> flowClassifierIds(ServiceFunctionChainElement chain) {
+        return chain.getInspectionHooks().stream().map(this.hookFlowClassifiers::get)
+                .filter(Objects::nonNull).distinct().collect(toList());
+    }
+
+    private static boolean serves(FlowClassifier flowClassifier, FlowClassifierElement hook) {
+        if (flowClassifier == null) {
+            return false;
+        }
+        if (flowClassifier.getId().equals(hook.getHookId())) {
+            return true;
+        }
+        return hook.getInspectedPort() != null
+                && Objects.equals(hook.getInspectedPort().getElementId(), flowClassifier.getLogicalDestinationPort());
+    }
+
+    private List<String> succeeded(List<CompletableFuture<String>> stage) throws Exception {
+        awaitAll(stage);
+        return stage.stream().map(CompletableFuture::join).filter(Objects::nonNull).collect(toList());
+    }
+
+    /**
+     * Waits for the calls of a stage, at most as long as a queued port chain update may take.
+     */
+    private void awaitAll(Collection<CompletableFuture<String>> stage) throws Exception {
+        SfcSnapshot.awaitAll(stage, this.portChainWriteQueue.getWindowMillis() + PortChainWriteQueue.DEFAULT_TIMEOUT_MS,
+                "reconciliation calls");
+    }
+
+    private static String name(String prefix) {
+        return prefix + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static String ports(String ingressId, String egressId) {
+        return ingressId + "/" + egressId;
+    }
+
+    private static List<String> copyOf(List<String> ids) {
+        return ids == null ? new ArrayList<>() : new ArrayList<>(ids);
+    }
+}
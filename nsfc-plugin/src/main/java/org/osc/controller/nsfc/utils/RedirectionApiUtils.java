@@ -16,15 +16,10 @@
  *******************************************************************************/
 package org.osc.controller.nsfc.utils;
 
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.openstack4j.api.Builders;
 import org.openstack4j.model.network.Port;
-import org.openstack4j.model.network.IP;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPair;
@@ -45,11 +40,11 @@ public class RedirectionApiUtils {
     }
 
     public Port fetchProtectedPort(FlowClassifier flowClassifier) {
-        return this.osCalls.getPort(flowClassifier.getLogicalDestinationPort());
+        return this.osCalls.getPortAddresses(flowClassifier.getLogicalDestinationPort());
     }
 
     /**
-     * Expensive call: Searches through the list port pairs from openstack.
+     * Looks the port pair up in the topology cache by its ingress and egress ports.
      * @param ingress
      * @param egress
      *
@@ -59,13 +54,7 @@ public class RedirectionApiUtils {
         String ingressId = ingress != null ? ingress.getElementId() : null;
         String egressId = egress != null ? egress.getElementId() : null;
 
-        List<? extends PortPair> portPairs = this.osCalls.listPortPairs();
-
-        return portPairs.stream()
-                        .filter(pp -> Objects.equals(ingressId, pp.getIngressId())
-                                            && Objects.equals(egressId, pp.getEgressId()))
-                        .findFirst()
-                        .orElse(null);
+        return this.osCalls.findPortPair(ingressId, egressId);
     }
 
     public PortPair fetchPortPairForInspectionPort(InspectionPortElement inspectionPort) {
@@ -89,28 +78,15 @@ public class RedirectionApiUtils {
     }
 
     public PortPairGroup fetchContainingPortPairGroup(String portPairId) {
-        List<? extends PortPairGroup> portPairGroups = this.osCalls.listPortPairGroups();
-        Optional<? extends PortPairGroup> ppgOpt = portPairGroups.stream()
-                                        .filter(ppg -> ppg.getPortPairs().contains(portPairId))
-                                        .findFirst();
-        return ppgOpt.orElse(null);
+        return this.osCalls.findContainingPortPairGroup(portPairId);
     }
 
     public PortChain fetchContainingPortChain(String portPairGroupId) {
-        List<? extends PortChain> portChains = this.osCalls.listPortChains();
-        Optional<? extends PortChain> pcOpt = portChains.stream()
-                                        .filter(pc -> pc.getPortPairGroups().contains(portPairGroupId))
-                                        .findFirst();
-        return pcOpt.orElse(null);
+        return this.osCalls.findContainingPortChain(portPairGroupId);
     }
 
     public PortChain fetchContainingPortChainForFC(String flowClassifierId) {
-        List<? extends PortChain> portChains = this.osCalls.listPortChains();
-        Optional<? extends PortChain> pcOpt = portChains.stream()
-                                        .filter(pc -> pc.getFlowClassifiers() != null
-                                                          && pc.getFlowClassifiers().contains(flowClassifierId))
-                                        .findFirst();
-        return pcOpt.orElse(null);
+        return this.osCalls.findContainingPortChainForFC(flowClassifierId);
     }
 
     public FlowClassifier buildFlowClassifier(String inspectedPortId, String defaultGatewayInterfacePortId) {
@@ -126,20 +102,63 @@ public class RedirectionApiUtils {
     }
     
     public Port fetchDefaultGatewayPort(String inspectedPortId) {
-    	Port inspectedPort = this.osCalls.getPort(inspectedPortId);
-    	List<? extends IP> fixedIPs = inspectedPort.getFixedIps().stream().collect(Collectors.toList());
-    	String subnetId = fixedIPs.get(0).getSubnetId();
-    	List<? extends Port> routerInterfacePorts = this.osCalls.listPorts().stream()
-    			                                        .filter(p -> p.getDeviceOwner().equals("network:router_interface"))
-    			                                        .collect(Collectors.toList());
-
-    	List<? extends Port> defalutGatewayPortList = routerInterfacePorts.stream()
-    			                      .filter(p -> p.getFixedIps().stream().collect(Collectors.toList()).get(0).getSubnetId().equals(subnetId))
-    			                      .collect(Collectors.toList());
-    	
-    	if (defalutGatewayPortList.size() != 1) {
-    		throw new IllegalStateException();
-    	}
-    	return defalutGatewayPortList.get(0);
+        Port inspectedPort = this.osCalls.getPortAddresses(inspectedPortId);
+        if (inspectedPort == null) {
+            throw new IllegalStateException(String.format("Cannot find fixed ip of inspected port %s", inspectedPortId));
+        }
+        return fetchDefaultGatewayPort(inspectedPort);
+    }
+
+    /**
+     * Same as {@link #fetchDefaultGatewayPort(String)} for an inspected port already retrieved by the caller.
+     */
+    public Port fetchDefaultGatewayPort(Port inspectedPort) {
+        String subnetId = subnetOf(inspectedPort);
+        Port defaultGatewayPort = this.osCalls.getDefaultGatewayPort(subnetId);
+
+        if (defaultGatewayPort == null) {
+            throw new IllegalStateException(String.format("Cannot find router interface port on subnet %s", subnetId));
+        }
+        return defaultGatewayPort;
+    }
+
+    /**
+     * Creates the flow classifier from the default gateway of the inspected port to it. If neutron refuses it,
+     * the router interface cached for the subnet may have been removed or replaced, so the subnet is queried
+     * again by the next classifier on it.
+     */
+    public FlowClassifier createFlowClassifier(String inspectedPortId) {
+        Port inspectedPort = this.osCalls.getPortAddresses(inspectedPortId);
+        if (inspectedPort == null) {
+            throw new IllegalStateException(
+                    String.format("Cannot find fixed ip of inspected port %s", inspectedPortId));
+        }
+        return createFlowClassifier(inspectedPortId, inspectedPort);
+    }
+
+    /**
+     * Same as {@link #createFlowClassifier(String)} for an inspected port already retrieved by the caller.
+     */
+    public FlowClassifier createFlowClassifier(String inspectedPortId, Port inspectedPort) {
+        String subnetId = subnetOf(inspectedPort);
+        Port defaultGatewayPort = fetchDefaultGatewayPort(inspectedPort);
+        FlowClassifier flowClassifier = buildFlowClassifier(inspectedPortId, defaultGatewayPort.getId());
+
+        try {
+            return this.osCalls.createFlowClassifier(flowClassifier);
+        } catch (RuntimeException e) {
+            LOG.warn("Flow Classifier from router interface {} refused, subnet {} will be queried again",
+                    defaultGatewayPort.getId(), subnetId);
+            this.osCalls.invalidateDefaultGatewayPort(subnetId);
+            throw e;
+        }
+    }
+
+    private static String subnetOf(Port inspectedPort) {
+        if (inspectedPort.getFixedIps() == null || inspectedPort.getFixedIps().isEmpty()) {
+            throw new IllegalStateException(
+                    String.format("Cannot find fixed ip of inspected port %s", inspectedPort.getId()));
+        }
+        return inspectedPort.getFixedIps().iterator().next().getSubnetId();
     }
 }
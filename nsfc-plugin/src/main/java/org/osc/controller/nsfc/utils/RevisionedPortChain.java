@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.openstack.networking.domain.ext.NeutronPortChain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRootName;
+
+/**
+ * Port chain as returned by neutron, along with the revision number the openstack4j model leaves out.
+ */
+@JsonRootName("port_chain")
+public class RevisionedPortChain extends NeutronPortChain {
+
+    private static final long serialVersionUID = 1L;
+
+    @JsonProperty("revision_number")
+    private Long revisionNumber;
+
+    /**
+     * @return the revision of the chain, null if neutron does not report revisions
+     */
+    public Long getRevisionNumber() {
+        return this.revisionNumber;
+    }
+
+    /**
+     * @return the revision of a chain read through the {@link RevisionedPortChainService}, null for any other
+     */
+    public static Long revisionOf(PortChain portChain) {
+        return portChain instanceof RevisionedPortChain ? ((RevisionedPortChain) portChain).getRevisionNumber() : null;
+    }
+}
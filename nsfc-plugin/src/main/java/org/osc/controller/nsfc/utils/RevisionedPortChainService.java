@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import org.openstack4j.model.network.ext.PortChain;
+
+/**
+ * Port chain reads and conditional updates on the neutron {@code revision_number}, which the openstack4j
+ * port chain service neither reports nor sends.
+ */
+public interface RevisionedPortChainService {
+
+    /**
+     * @return the port chain, a {@link RevisionedPortChain} when neutron reports revisions, null if not found
+     */
+    PortChain get(String portChainId);
+
+    /**
+     * Updates the attributes set on the port chain. With a revision number the update only applies to that
+     * revision of the chain, otherwise neutron fails it with a 412 {@link org.openstack4j.api.exceptions.ResponseException}.
+     *
+     * @param revisionNumber the revision the update was made from, null for an unconditional update
+     */
+    PortChain update(String portChainId, PortChain portChain, Long revisionNumber);
+}
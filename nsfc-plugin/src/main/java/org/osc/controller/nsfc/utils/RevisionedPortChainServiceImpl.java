@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.openstack.networking.internal.BaseNetworkingServices;
+
+/**
+ * Issues the calls through the openstack4j session bound to the calling thread, like the openstack4j services do.
+ */
+public class RevisionedPortChainServiceImpl extends BaseNetworkingServices implements RevisionedPortChainService {
+
+    @Override
+    public PortChain get(String portChainId) {
+        return get(RevisionedPortChain.class, uri("/sfc/port_chains/%s", portChainId)).execute();
+    }
+
+    @Override
+    public PortChain update(String portChainId, PortChain portChain, Long revisionNumber) {
+        Invocation<RevisionedPortChain> invocation = put(RevisionedPortChain.class,
+                uri("/sfc/port_chains/%s", portChainId)).entity(portChain);
+        if (revisionNumber != null) {
+            invocation = invocation.header("If-Match", "revision_number=" + revisionNumber);
+        }
+        return invocation.execute();
+    }
+}
@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.core.transport.Config;
+import org.openstack4j.model.identity.v3.Token;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Keystone v3 tokens kept per session key (endpoint, domain, project and user), so that redirection apis
+ * do not authenticate on every call.
+ * <p>
+ * A token is reused until it gets within the refresh margin of its expiry, or until the password of the key changes.
+ * Only a digest of the password is kept. Callers needing a new token for the same key and password at the same
+ * time wait for a single authentication, without holding up the callers of other keys.
+ */
+public class SessionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SessionCache.class);
+
+    public static final long DEFAULT_REFRESH_MARGIN_MS = 300000;
+
+    private final long refreshMarginMillis;
+
+    private final Config config;
+
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final SingleFlight authentications = new SingleFlight();
+
+    public SessionCache() {
+        this(DEFAULT_REFRESH_MARGIN_MS);
+    }
+
+    public SessionCache(long refreshMarginMillis) {
+        this(refreshMarginMillis, null);
+    }
+
+    /**
+     * @param refreshMarginMillis how long before its expiry a token is replaced
+     * @param config the http config of the clients of reused tokens, the openstack4j default when null
+     */
+    public SessionCache(long refreshMarginMillis, Config config) {
+        this.refreshMarginMillis = refreshMarginMillis;
+        this.config = config;
+    }
+
+    /**
+     * @param sessionKey identifies the endpoint, domain, project and user of the session
+     * @param password used to detect a credential change for the same key
+     * @param authenticator issues a new token when none can be reused
+     * @return a client bound to the current thread
+     */
+    public OSClientV3 getClient(String sessionKey, String password, Supplier<OSClientV3> authenticator) {
+        String passwordFingerprint = fingerprint(password);
+        Session session = this.sessions.computeIfAbsent(sessionKey, k -> new Session());
+
+        Token token = session.reusableToken(passwordFingerprint);
+        if (token == null) {
+            try {
+                token = this.authentications.execute(sessionKey + " " + passwordFingerprint,
+                        () -> session.authenticate(sessionKey, passwordFingerprint, authenticator),
+                        () -> LOG.debug("Waiting for the authentication of session {} in progress", sessionKey));
+            } catch (RuntimeException e) {
+                // Do not keep a session for credentials keystone refuses
+                this.sessions.remove(sessionKey, session);
+                throw e;
+            }
+        }
+
+        return SharedOsClient.clientFromToken(token, this.config);
+    }
+
+    public void invalidate(String sessionKey) {
+        this.sessions.remove(sessionKey);
+    }
+
+    public void clear() {
+        this.sessions.clear();
+    }
+
+    private boolean isReusable(Token token) {
+        return token.getExpires() == null
+                || token.getExpires().getTime() - System.currentTimeMillis() > this.refreshMarginMillis;
+    }
+
+    private static String fingerprint(String password) {
+        return Hashing.sha256().hashString(password != null ? password : "", StandardCharsets.UTF_8).toString();
+    }
+
+    private class Session {
+
+        private Token token;
+        private String passwordFingerprint;
+
+        synchronized Token reusableToken(String passwordFingerprint) {
+            if (this.token != null && passwordFingerprint.equals(this.passwordFingerprint) && isReusable(this.token)) {
+                return this.token;
+            }
+            return null;
+        }
+
+        Token authenticate(String sessionKey, String passwordFingerprint, Supplier<OSClientV3> authenticator) {
+            synchronized (this) {
+                // Another authentication may have completed since the caller looked
+                Token reusable = reusableToken(passwordFingerprint);
+                if (reusable != null) {
+                    return reusable;
+                }
+
+                if (this.token == null) {
+                    LOG.debug("Authenticating new session {}", sessionKey);
+                } else if (!passwordFingerprint.equals(this.passwordFingerprint)) {
+                    LOG.info("Credentials of session {} changed. Authenticating again", sessionKey);
+                } else {
+                    LOG.debug("Token of session {} expires at {}. Authenticating again", sessionKey,
+                              this.token.getExpires());
+                }
+            }
+
+            // Keystone is called without the lock, so that callers with a reusable token are not held up
+            Token authenticated = authenticator.get().getToken();
+            synchronized (this) {
+                this.token = authenticated;
+                this.passwordFingerprint = passwordFingerprint;
+            }
+            return authenticated;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import org.openstack4j.model.network.ext.FlowClassifier;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+
+/**
+ * The port pairs, port pair groups, port chains and flow classifiers of the project, each listed once and all
+ * in parallel, along with what the passes applying changes from such a listing share: waiting for the calls of
+ * a stage and telling the objects OSC created.
+ */
+public class SfcSnapshot {
+
+    /**
+     * How long the calls of a stage are waited for, enough for calls retried at the default read timeout.
+     */
+    public static final long DEFAULT_TIMEOUT_MS = 300000;
+
+    private final Map<String, PortPair> portPairs = new HashMap<>();
+    private final Map<String, PortPairGroup> portPairGroups = new HashMap<>();
+    private final Map<String, PortChain> portChains = new HashMap<>();
+    private final Map<String, FlowClassifier> flowClassifiers = new HashMap<>();
+
+    private SfcSnapshot() {
+    }
+
+    /**
+     * Lists the four resource types on the project executor. The listings being as fresh as it gets, the
+     * topology cache is loaded from them for the lookups of the next operations.
+     */
+    public static SfcSnapshot list(OsCalls osCalls, OsCallsAsync osCallsAsync) throws Exception {
+        CompletableFuture<List<? extends PortPair>> portPairsFuture = osCallsAsync.listPortPairs();
+        CompletableFuture<List<? extends PortPairGroup>> portPairGroupsFuture = osCallsAsync.listPortPairGroups();
+        CompletableFuture<List<? extends PortChain>> portChainsFuture = osCallsAsync.listPortChains();
+        CompletableFuture<List<? extends FlowClassifier>> flowClassifiersFuture = osCallsAsync.listFlowClassifiers();
+
+        List<? extends PortPair> portPairList = OsCallsAsync.await(portPairsFuture);
+        List<? extends PortPairGroup> portPairGroupList = OsCallsAsync.await(portPairGroupsFuture);
+        List<? extends PortChain> portChainList = OsCallsAsync.await(portChainsFuture);
+        List<? extends FlowClassifier> flowClassifierList = OsCallsAsync.await(flowClassifiersFuture);
+
+        osCalls.loadTopology(portPairList, portPairGroupList, portChainList);
+
+        SfcSnapshot snapshot = new SfcSnapshot();
+        portPairList.forEach(p -> snapshot.portPairs.put(p.getId(), p));
+        portPairGroupList.forEach(g -> snapshot.portPairGroups.put(g.getId(), g));
+        portChainList.forEach(c -> snapshot.portChains.put(c.getId(), c));
+        flowClassifierList.forEach(f -> snapshot.flowClassifiers.put(f.getId(), f));
+        return snapshot;
+    }
+
+    public Map<String, PortPair> getPortPairs() {
+        return this.portPairs;
+    }
+
+    public Map<String, PortPairGroup> getPortPairGroups() {
+        return this.portPairGroups;
+    }
+
+    public Map<String, PortChain> getPortChains() {
+        return this.portChains;
+    }
+
+    public Map<String, FlowClassifier> getFlowClassifiers() {
+        return this.flowClassifiers;
+    }
+
+    /**
+     * Waits for the calls of a stage, which are expected to never complete exceptionally.
+     *
+     * @param what the calls, for the message of the timeout
+     * @throws TimeoutException if the stage is not done in time, its calls possibly going on
+     */
+    public static void awaitAll(Collection<? extends CompletableFuture<?>> stage, long timeoutMillis, String what)
+            throws Exception {
+        try {
+            OsCallsAsync.await(CompletableFuture.allOf(stage.toArray(new CompletableFuture<?>[0])), timeoutMillis);
+        } catch (TimeoutException e) {
+            long pending = stage.stream().filter(future -> !future.isDone()).count();
+            throw new TimeoutException(String.format("%d of %d %s not done after %d ms", pending, stage.size(), what,
+                    timeoutMillis));
+        }
+    }
+
+    /**
+     * @return whether OSC created the object, named with the given prefix
+     */
+    public static boolean isOwned(String name, String prefix) {
+        return name != null && name.startsWith(prefix);
+    }
+
+    /**
+     * @return the failure of an asynchronous call, without the completion exception wrapping it
+     */
+    public static Exception toException(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+    }
+}
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.core.transport.Config;
+import org.openstack4j.model.identity.v3.Token;
+import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
+
+/**
+ * Authenticated openstack client usable from any thread.
+ * <p>
+ * openstack4j keeps the session in a thread local, which the services returned by the client read when
+ * they call openstack. {@link #bind()} gives the calling thread a session with the token and the http
+ * config of this client, unless it already has one with that token.
+ */
+public class SharedOsClient {
+
+    private final OSClientV3 osClient;
+    private final Token token;
+    private final Config config;
+
+    public SharedOsClient(OSClientV3 osClient) {
+        this(osClient, null);
+    }
+
+    /**
+     * @param config the http config of the sessions bound to other threads, the openstack4j default when null
+     */
+    public SharedOsClient(OSClientV3 osClient, Config config) {
+        this.osClient = osClient;
+        this.token = osClient.getToken();
+        this.config = config;
+    }
+
+    /**
+     * @return the client, whose services call openstack with the session of the calling thread
+     */
+    public OSClientV3 getClient() {
+        return this.osClient;
+    }
+
+    public Token getToken() {
+        return this.token;
+    }
+
+    /**
+     * Binds the session of this client to the calling thread. A client without token, such as a mocked
+     * one, is left as is.
+     */
+    public void bind() {
+        if (this.token == null) {
+            return;
+        }
+
+        Object current = OSClientSession.getCurrent();
+        if (current instanceof OSClientV3 && ((OSClientV3) current).getToken() == this.token) {
+            return;
+        }
+        clientFromToken(this.token, this.config);
+    }
+
+    /**
+     * @return a client bound to the calling thread, with the given http config if any
+     */
+    static OSClientV3 clientFromToken(Token token, Config config) {
+        return config != null ? OSFactory.clientFromToken(token, config) : OSFactory.clientFromToken(token);
+    }
+}
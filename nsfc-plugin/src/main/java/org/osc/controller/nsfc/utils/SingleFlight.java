@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical reads: a read asked for while the same one is in flight waits for it and gets
+ * its result, or its exception, instead of calling openstack again.
+ * <p>
+ * Nothing is kept once a read completes, a later identical read calls openstack again. The result is shared by
+ * all the callers of the read, which must not modify it.
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key identifies the read, callers with the same key get the same result
+     * @param read run by the first caller only
+     * @param onCollapsed run by every other caller before it waits for the read in flight
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> read, Runnable onCollapsed) {
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> existing = this.inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            onCollapsed.run();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            T result = read.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * @return the number of distinct reads in flight
+     */
+    public int getInFlight() {
+        return this.inFlight.size();
+    }
+}
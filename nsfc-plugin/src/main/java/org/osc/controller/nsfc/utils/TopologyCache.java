@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory view of the port pairs, port pair groups and port chains of one openstack project,
+ * indexed by the attributes the redirection api searches on.
+ * <p>
+ * The cache is filled with one listing per resource type, of the attributes it keeps, and kept current
+ * by {@link OsCalls} on every create, update and delete it performs. A full reload happens once the snapshot is
+ * older than the configured time to live, or on every lookup miss if refresh on miss is enabled.
+ * <p>
+ * Cached objects are copies carrying the attributes the plugin reads or updates. Callers
+ * are free to modify returned objects.
+ */
+public class TopologyCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TopologyCache.class);
+
+    public static final long DEFAULT_TTL_MS = 30000;
+
+    /**
+     * Attributes the cache keeps, and so the only ones a reload needs to ask neutron for.
+     */
+    public static final List<String> PORT_PAIR_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("id", "name", "description", "ingress", "egress"));
+    public static final List<String> PORT_PAIR_GROUP_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("id", "name", "description", "port_pairs"));
+    public static final List<String> PORT_CHAIN_FIELDS = Collections.unmodifiableList(
+            Arrays.asList("id", "name", "description", "port_pair_groups", "flow_classifiers"));
+
+    private final long ttlMillis;
+    private final boolean refreshOnMiss;
+
+    private final Map<String, PortPair> portPairs = new ConcurrentHashMap<>();
+    private final Map<String, PortPairGroup> portPairGroups = new ConcurrentHashMap<>();
+    private final Map<String, PortChain> portChains = new ConcurrentHashMap<>();
+
+    private final Map<List<String>, String> portPairIdByIngressEgress = new ConcurrentHashMap<>();
+    private final Map<String, String> portPairGroupIdByPortPair = new ConcurrentHashMap<>();
+    private final Map<String, String> portChainIdByPortPairGroup = new ConcurrentHashMap<>();
+    private final Map<String, String> portChainIdByFlowClassifier = new ConcurrentHashMap<>();
+
+    private volatile long loadedAt;
+    private volatile boolean loaded;
+
+    public TopologyCache() {
+        this(DEFAULT_TTL_MS, false);
+    }
+
+    /**
+     * @param ttlMillis age after which the next lookup reloads the whole snapshot. Zero or less reloads on every lookup.
+     * @param refreshOnMiss whether a lookup that finds nothing should reload the snapshot and try again
+     */
+    public TopologyCache(long ttlMillis, boolean refreshOnMiss) {
+        this.ttlMillis = ttlMillis;
+        this.refreshOnMiss = refreshOnMiss;
+    }
+
+    public long getTtlMillis() {
+        return this.ttlMillis;
+    }
+
+    public boolean isRefreshOnMiss() {
+        return this.refreshOnMiss;
+    }
+
+    public boolean isStale() {
+        return !this.loaded || System.currentTimeMillis() - this.loadedAt >= this.ttlMillis;
+    }
+
+    /**
+     * Drops the snapshot. The next lookup reloads everything from openstack.
+     */
+    public void invalidate() {
+        this.loaded = false;
+    }
+
+    /**
+     * Replaces the content of the cache with the given openstack listings.
+     */
+    public synchronized void load(List<? extends PortPair> portPairList, List<? extends PortPairGroup> portPairGroupList,
+            List<? extends PortChain> portChainList) {
+        long start = System.currentTimeMillis();
+
+        this.portPairs.clear();
+        this.portPairGroups.clear();
+        this.portChains.clear();
+        this.portPairIdByIngressEgress.clear();
+        this.portPairGroupIdByPortPair.clear();
+        this.portChainIdByPortPairGroup.clear();
+        this.portChainIdByFlowClassifier.clear();
+
+        portPairList.forEach(this::put);
+        portPairGroupList.forEach(this::put);
+        portChainList.forEach(this::put);
+
+        this.loadedAt = start;
+        this.loaded = true;
+
+        LOG.debug("Topology cache loaded with {} port pairs, {} port pair groups and {} port chains",
+                this.portPairs.size(), this.portPairGroups.size(), this.portChains.size());
+    }
+
+    public PortPair getPortPair(String ingressId, String egressId) {
+        String portPairId = this.portPairIdByIngressEgress.get(ingressEgressKey(ingressId, egressId));
+        return portPairId != null ? copyOf(this.portPairs.get(portPairId)) : null;
+    }
+
+    public PortPairGroup getContainingPortPairGroup(String portPairId) {
+        String portPairGroupId = portPairId != null ? this.portPairGroupIdByPortPair.get(portPairId) : null;
+        return portPairGroupId != null ? copyOf(this.portPairGroups.get(portPairGroupId)) : null;
+    }
+
+    public PortChain getContainingPortChain(String portPairGroupId) {
+        String portChainId = portPairGroupId != null ? this.portChainIdByPortPairGroup.get(portPairGroupId) : null;
+        return portChainId != null ? copyOf(this.portChains.get(portChainId)) : null;
+    }
+
+    public PortChain getContainingPortChainForFC(String flowClassifierId) {
+        String portChainId = flowClassifierId != null ? this.portChainIdByFlowClassifier.get(flowClassifierId) : null;
+        return portChainId != null ? copyOf(this.portChains.get(portChainId)) : null;
+    }
+
+    public synchronized void put(PortPair portPair) {
+        if (portPair == null || portPair.getId() == null) {
+            return;
+        }
+
+        removePortPair(portPair.getId());
+        PortPair copy = copyOf(portPair);
+        this.portPairs.put(copy.getId(), copy);
+        this.portPairIdByIngressEgress.put(ingressEgressKey(copy.getIngressId(), copy.getEgressId()), copy.getId());
+    }
+
+    public synchronized void put(PortPairGroup portPairGroup) {
+        if (portPairGroup == null || portPairGroup.getId() == null) {
+            return;
+        }
+
+        removePortPairGroup(portPairGroup.getId());
+        PortPairGroup copy = copyOf(portPairGroup);
+        this.portPairGroups.put(copy.getId(), copy);
+        copy.getPortPairs().forEach(ppId -> this.portPairGroupIdByPortPair.put(ppId, copy.getId()));
+    }
+
+    public synchronized void put(PortChain portChain) {
+        if (portChain == null || portChain.getId() == null) {
+            return;
+        }
+
+        removePortChain(portChain.getId());
+        PortChain copy = copyOf(portChain);
+        this.portChains.put(copy.getId(), copy);
+        copy.getPortPairGroups().forEach(ppgId -> this.portChainIdByPortPairGroup.put(ppgId, copy.getId()));
+        copy.getFlowClassifiers().forEach(fcId -> this.portChainIdByFlowClassifier.put(fcId, copy.getId()));
+    }
+
+    public synchronized void removePortPair(String portPairId) {
+        PortPair old = portPairId != null ? this.portPairs.remove(portPairId) : null;
+        if (old != null) {
+            this.portPairIdByIngressEgress.remove(ingressEgressKey(old.getIngressId(), old.getEgressId()), portPairId);
+        }
+    }
+
+    public synchronized void removePortPairGroup(String portPairGroupId) {
+        PortPairGroup old = portPairGroupId != null ? this.portPairGroups.remove(portPairGroupId) : null;
+        if (old != null) {
+            old.getPortPairs().forEach(ppId -> this.portPairGroupIdByPortPair.remove(ppId, portPairGroupId));
+        }
+    }
+
+    public synchronized void removePortChain(String portChainId) {
+        PortChain old = portChainId != null ? this.portChains.remove(portChainId) : null;
+        if (old != null) {
+            old.getPortPairGroups().forEach(ppgId -> this.portChainIdByPortPairGroup.remove(ppgId, portChainId));
+            old.getFlowClassifiers().forEach(fcId -> this.portChainIdByFlowClassifier.remove(fcId, portChainId));
+        }
+    }
+
+    private static List<String> ingressEgressKey(String ingressId, String egressId) {
+        return Arrays.asList(ingressId, egressId);
+    }
+
+    private static List<String> copyOf(List<String> ids) {
+        return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+    }
+
+    private static PortPair copyOf(PortPair portPair) {
+        if (portPair == null) {
+            return null;
+        }
+
+        return Builders.portPair()
+                .id(portPair.getId())
+                .name(portPair.getName())
+                .description(portPair.getDescription())
+                .ingressId(portPair.getIngressId())
+                .egressId(portPair.getEgressId())
+                .build();
+    }
+
+    private static PortPairGroup copyOf(PortPairGroup portPairGroup) {
+        if (portPairGroup == null) {
+            return null;
+        }
+
+        return Builders.portPairGroup()
+                .id(portPairGroup.getId())
+                .name(portPairGroup.getName())
+                .description(portPairGroup.getDescription())
+                .portPairs(copyOf(portPairGroup.getPortPairs()))
+                .build();
+    }
+
+    private static PortChain copyOf(PortChain portChain) {
+        if (portChain == null) {
+            return null;
+        }
+
+        return Builders.portChain()
+                .id(portChain.getId())
+                .name(portChain.getName())
+                .description(portChain.getDescription())
+                .portPairGroups(copyOf(portChain.getPortPairGroups()))
+                .flowClassifiers(copyOf(portChain.getFlowClassifiers()))
+                .build();
+    }
+}
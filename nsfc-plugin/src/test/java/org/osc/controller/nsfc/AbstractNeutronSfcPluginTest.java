@@ -109,6 +109,12 @@ public abstract class AbstractNeutronSfcPluginTest {
                 .fixedIp(inspectedPortElement.getPortIPs().get(0), "mySubnet").build());
 
         inspectedPortElement = constructNetworkElementElement(inspectedPort, null);
+        persistRouterInterface("mySubnet");
+    }
+
+    protected void persistRouterInterface(String subnetId) {
+        routerInterfacePort = portService.create(Builders.port().deviceOwner("network:router_interface")
+                .fixedIp(ROUTER_INTERFACE_ADDR_STR, subnetId).build());
     }
 
     protected ServiceFunctionChainElement persistPortChainAndSfcElement() {
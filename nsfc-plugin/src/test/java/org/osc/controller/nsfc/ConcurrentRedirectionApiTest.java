@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.sdk.controller.FailurePolicyType.NA;
+import static org.osc.sdk.controller.TagEncapsulationType.VLAN;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.model.identity.v3.Token;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
+import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.openstack.OSFactory;
+import org.openstack4j.openstack.internal.OSClientSession;
+import org.osc.controller.nsfc.api.NeutronSfcSdnRedirectionApi;
+import org.osc.controller.nsfc.entities.NetworkElementImpl;
+import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.SharedOsClient;
+
+/**
+ * One redirection api driven by many threads at once, as OSC does when it syncs several
+ * security groups of a project in parallel.
+ */
+public class ConcurrentRedirectionApiTest extends AbstractNeutronSfcPluginTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 25;
+
+    private Token token;
+    private final AtomicInteger unboundCalls = new AtomicInteger();
+
+    private ExecutorService workers;
+    private ExecutorService callers;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+
+        this.token = mock(Token.class);
+        when(this.osClient.getToken()).thenReturn(this.token);
+        // Every openstack call must find the session of the client on its thread
+        when(this.osClient.sfc()).thenAnswer(i -> {
+            checkSession();
+            return this.sfcService;
+        });
+        when(this.osClient.networking()).thenAnswer(i -> {
+            checkSession();
+            return this.networkingService;
+        });
+
+        this.workers = Executors.newFixedThreadPool(4);
+        this.callers = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        this.callers.shutdownNow();
+        this.workers.shutdownNow();
+    }
+
+    @Test
+    public void testApi_ManyThreads_InstallAndRemoveInspectionHooks_AllSucceed() throws Exception {
+        // Arrange.
+        persistRouterInterface("mySubnet");
+        List<NetworkElementImpl> inspectedPorts = new ArrayList<>();
+        List<ServiceFunctionChainElement> sfcs = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            inspectedPorts.add(persistInspectedPort(i));
+            sfcs.add(persistPortChain(i));
+        }
+
+        NeutronSfcSdnRedirectionApi redirApi = new NeutronSfcSdnRedirectionApi(new SharedOsClient(this.osClient),
+                projectContext(b -> b.executor(this.workers)));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            NetworkElementImpl inspectedPort = inspectedPorts.get(i);
+            ServiceFunctionChainElement sfc = sfcs.get(i);
+            results.add(this.callers.submit(() -> {
+                // The thread last served another project
+                Token otherToken = mock(Token.class);
+                OSFactory.clientFromToken(otherToken);
+                start.await();
+
+                int installed = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    String hookId = redirApi.installInspectionHook(inspectedPort, sfc, 0L, VLAN, 0L, NA);
+                    assertNotNull(redirApi.getInspectionHook(hookId));
+                    redirApi.removeInspectionHook(hookId);
+                    installed++;
+                }
+                return installed;
+            }));
+        }
+
+        // Act.
+        start.countDown();
+
+        // Assert.
+        for (Future<Integer> result : results) {
+            assertEquals(ROUNDS, result.get(60, TimeUnit.SECONDS).intValue());
+        }
+        assertEquals(0, this.unboundCalls.get());
+        assertTrue(flowClassifierService.list().isEmpty());
+        for (ServiceFunctionChainElement sfc : sfcs) {
+            assertTrue(portChainService.get(sfc.getElementId()).getFlowClassifiers().isEmpty());
+        }
+    }
+
+    @Test
+    public void testSharedOsClient_Bind_OnOtherThreads_BindsTokenOfClient() throws Exception {
+        // Arrange.
+        SharedOsClient sharedClient = new SharedOsClient(this.osClient);
+        Callable<Token> boundToken = () -> {
+            sharedClient.bind();
+            return ((OSClientV3) OSClientSession.getCurrent()).getToken();
+        };
+
+        // Act.
+        List<Future<Token>> tokens = this.callers.invokeAll(Collections.nCopies(THREADS, boundToken));
+
+        // Assert.
+        for (Future<Token> token : tokens) {
+            assertSame(this.token, token.get());
+        }
+    }
+
+    private void checkSession() {
+        Object current = OSClientSession.getCurrent();
+        if (!(current instanceof OSClientV3) || ((OSClientV3) current).getToken() != this.token) {
+            this.unboundCalls.incrementAndGet();
+        }
+    }
+
+    private NetworkElementImpl persistInspectedPort(int index) {
+        String macAddress = String.format("aa:aa:aa:bb:cc:%02x", index);
+        String ipAddress = "10.4.5." + (10 + index);
+        Port port = portService.create(Builders.port().macAddress(macAddress).fixedIp(ipAddress, "mySubnet").build());
+        return new NetworkElementImpl(port.getId(), singletonList(macAddress), singletonList(ipAddress), null);
+    }
+
+    private ServiceFunctionChainElement persistPortChain(int index) {
+        Port ingress = portService.create(Builders.port().fixedIp("10.4.6." + (10 + index), "mySubnet").build());
+        Port egress = portService.create(Builders.port().fixedIp("10.4.7." + (10 + index), "mySubnet").build());
+        PortPair portPair = portPairService.create(Builders.portPair().ingressId(ingress.getId())
+                .egressId(egress.getId()).build());
+        PortPairGroup portPairGroup = portPairGroupService.create(Builders.portPairGroup()
+                .portPairs(new ArrayList<>(singletonList(portPair.getId()))).build());
+        PortChain portChain = portChainService.create(Builders.portChain()
+                .portPairGroups(singletonList(portPairGroup.getId()))
+                .flowClassifiers(new ArrayList<>())
+                .build());
+        return new ServiceFunctionChainElement(portChain.getId());
+    }
+}
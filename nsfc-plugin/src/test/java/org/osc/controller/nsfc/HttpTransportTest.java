@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstack4j.core.transport.Config;
+import org.osc.controller.nsfc.utils.HttpTransport;
+import org.osc.controller.nsfc.utils.PooledHttpClientInterceptor;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpTransportTest {
+
+    private static final String BODY = "{\"ports\": []}";
+
+    private HttpServer server;
+    private final AtomicInteger gzipResponses = new AtomicInteger();
+    private HttpTransport transport;
+    private CloseableHttpClient client;
+
+    @Before
+    public void setup() throws Exception {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            boolean gzip = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+            byte[] body = gzip ? gzip(BODY) : BODY.getBytes(StandardCharsets.UTF_8);
+            if (gzip) {
+                this.gzipResponses.incrementAndGet();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.server.start();
+
+        this.transport = new HttpTransport();
+        HttpClientBuilder builder = HttpClientBuilder.create();
+        RequestConfig.Builder requestConfig = RequestConfig.custom();
+        new PooledHttpClientInterceptor(this.transport).onClientCreate(builder, requestConfig, Config.newConfig());
+        this.client = builder.setDefaultRequestConfig(requestConfig.build()).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.client.close();
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testTransport_SequentialRequests_ReuseOneConnection() throws Exception {
+        // Act.
+        for (int i = 0; i < 5; i++) {
+            get();
+        }
+
+        // Assert.
+        assertEquals(5, this.transport.getRequests());
+        assertEquals(1, this.transport.getConnectionsOpened());
+        assertEquals(0.8, this.transport.getConnectionReuseRate(), 0.001);
+        assertEquals(1, this.transport.getIdleConnections());
+        assertEquals(0, this.transport.getLeasedConnections());
+    }
+
+    @Test
+    public void testTransport_GzipResponse_Decoded() throws Exception {
+        // Act.
+        String body = get();
+
+        // Assert.
+        assertEquals(BODY, body);
+        assertEquals(1, this.gzipResponses.get());
+    }
+
+    @Test
+    public void testTransport_OneOfTwoUninstalled_OtherKeepsInterceptor() throws Exception {
+        // Arrange.
+        HttpTransport first = new HttpTransport();
+        HttpTransport second = new HttpTransport();
+        first.install();
+        second.install();
+
+        try {
+            // Act.
+            second.uninstall();
+
+            // Assert.
+            assertSame(first, PooledHttpClientInterceptor.getRegisteredTransport());
+            first.uninstall();
+            assertNull(PooledHttpClientInterceptor.getRegisteredTransport());
+        } finally {
+            first.uninstall();
+            second.uninstall();
+        }
+    }
+
+    private String get() throws Exception {
+        HttpGet request = new HttpGet("http://127.0.0.1:" + this.server.getAddress().getPort() + "/v2.0/ports");
+        try (CloseableHttpResponse response = this.client.execute(request)) {
+            return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+import org.osc.controller.nsfc.utils.InspectionHookIndex;
+
+public class InspectionHookIndexTest {
+
+    @Test
+    public void testIndex_MoreEntriesThanMax_LeastRecentlyUsedDropped() throws Exception {
+        // Arrange.
+        InspectionHookIndex index = new InspectionHookIndex(2);
+        index.put("port1", "chain", "fc1");
+        index.put("port2", "chain", "fc2");
+        index.get("port1", "chain");
+
+        // Act.
+        index.put("port3", "chain", "fc3");
+
+        // Assert.
+        assertEquals(2, index.size());
+        assertEquals("fc1", index.get("port1", "chain"));
+        assertNull(index.get("port2", "chain"));
+        assertEquals("fc3", index.get("port3", "chain"));
+    }
+
+    @Test
+    public void testIndex_RemoveOfReplacedEntry_Kept() throws Exception {
+        // Arrange.
+        InspectionHookIndex index = new InspectionHookIndex();
+        index.put("port", "chain", "fc1");
+        index.put("port", "chain", "fc2");
+
+        // Act.
+        index.remove("port", "chain", "fc1");
+
+        // Assert.
+        assertEquals("fc2", index.get("port", "chain"));
+    }
+}
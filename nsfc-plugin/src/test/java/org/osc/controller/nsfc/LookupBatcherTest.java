@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.Port;
+import org.openstack4j.model.network.ext.PortPair;
+import org.osc.controller.nsfc.utils.LookupBatcher;
+import org.osc.controller.nsfc.utils.OperationContext;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.OsCallsAsync;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class LookupBatcherTest extends AbstractNeutronSfcPluginTest {
+
+    private static final long WINDOW_MS = 200;
+
+    // Windows end when the test runs the task scheduled for them
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    private OsCallMetrics metrics;
+    private List<List<String>> requestedIds;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.metrics = new OsCallMetrics();
+        this.requestedIds = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    public void testBatcher_LookupsWithinWindow_MergedIntoOneListCall() throws Exception {
+        // Arrange.
+        LookupBatcher batcher = batcher(WINDOW_MS, LookupBatcher.DEFAULT_MAX_BATCH_SIZE);
+        OsCalls osCalls = osCalls(batcher);
+        Port first = portService.create(Builders.port().build());
+        Port second = portService.create(Builders.port().build());
+
+        // Act.
+        CompletableFuture<Port> firstLookup = batcher.load(osCalls, PORT, first.getId(), this::listPorts);
+        CompletableFuture<Port> secondLookup = batcher.load(osCalls, PORT, second.getId(), this::listPorts);
+        CompletableFuture<Port> againLookup = batcher.load(osCalls, PORT, first.getId(), this::listPorts);
+        endWindow();
+
+        // Assert.
+        assertEquals(first.getId(), OsCallsAsync.await(firstLookup).getId());
+        assertEquals(second.getId(), OsCallsAsync.await(secondLookup).getId());
+        assertSame(firstLookup, againLookup);
+        assertEquals(1, this.requestedIds.size());
+        assertEquals(2, this.requestedIds.get(0).size());
+    }
+
+    @Test
+    public void testBatcher_LookupsOfTwoOperations_RequestChargedToBoth() throws Exception {
+        // Arrange.
+        LookupBatcher batcher = batcher(WINDOW_MS, LookupBatcher.DEFAULT_MAX_BATCH_SIZE);
+        OsCalls osCalls = osCalls(batcher);
+        Port first = portService.create(Builders.port().build());
+        Port second = portService.create(Builders.port().build());
+        OperationContext firstOperation = new OperationContext();
+        OperationContext secondOperation = new OperationContext();
+
+        // Act.
+        OperationContext.call(firstOperation, () -> batcher.load(osCalls, PORT, first.getId(), this::listPorts));
+        OperationContext.call(secondOperation, () -> batcher.load(osCalls, PORT, second.getId(), this::listPorts));
+        endWindow();
+
+        // Assert.
+        assertEquals(1, this.requestedIds.size());
+        assertEquals(1, firstOperation.getRoundTrips());
+        assertEquals(1, secondOperation.getRoundTrips());
+    }
+
+    @Test
+    public void testBatcher_FullBatch_RequestedWithoutWaitingForWindow() throws Exception {
+        // Arrange.
+        LookupBatcher batcher = batcher(WINDOW_MS, 2);
+        OsCalls osCalls = osCalls(batcher);
+        Port first = portService.create(Builders.port().build());
+        Port second = portService.create(Builders.port().build());
+
+        // Act.
+        CompletableFuture<Port> firstLookup = batcher.load(osCalls, PORT, first.getId(), this::listPorts);
+        CompletableFuture<Port> secondLookup = batcher.load(osCalls, PORT, second.getId(), this::listPorts);
+
+        // Assert.
+        assertTrue(firstLookup.isDone());
+        assertTrue(secondLookup.isDone());
+        assertEquals(first.getId(), firstLookup.get().getId());
+        assertEquals(1, this.requestedIds.size());
+    }
+
+    @Test
+    public void testOsCalls_GetPortPairAndMissingPort_ResolvedThroughBatchedListCalls() throws Exception {
+        // Arrange.
+        // Windows end at once, the lookups of OsCalls waiting for them on the calling thread
+        when(this.scheduler.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(i -> {
+            ((Runnable) i.getArguments()[0]).run();
+            return null;
+        });
+        LookupBatcher batcher = batcher(WINDOW_MS, LookupBatcher.DEFAULT_MAX_BATCH_SIZE);
+        OsCalls osCalls = osCalls(batcher);
+        PortPair portPair = portPairService.create(Builders.portPair().build());
+
+        // Act.
+        PortPair found = osCalls.getPortPair(portPair.getId());
+        Port missing = osCalls.getPortAddresses("missing-port");
+
+        // Assert.
+        assertEquals(portPair.getId(), found.getId());
+        assertNull(missing);
+        assertEquals(1, calls(PORT_PAIR, LIST));
+        assertEquals(1, calls(PORT, LIST));
+        assertEquals(0, calls(PORT_PAIR, GET) + calls(PORT, GET));
+    }
+
+    @Test
+    public void testOsCalls_LookupsFromEveryWorker_RequestedOnLookupExecutor() throws Exception {
+        // Arrange.
+        int workers = 4;
+        ExecutorService workerPool = Executors.newFixedThreadPool(workers);
+        ExecutorService lookupExecutor = Executors.newCachedThreadPool();
+        ScheduledExecutorService realScheduler = Executors.newSingleThreadScheduledExecutor();
+        LookupBatcher batcher = new LookupBatcher(WINDOW_MS, LookupBatcher.DEFAULT_MAX_BATCH_SIZE, realScheduler,
+                lookupExecutor);
+        OsCalls osCalls = osCalls(batcher);
+        List<Port> ports = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            ports.add(portService.create(Builders.port().build()));
+        }
+
+        try {
+            // Act.
+            // Every worker waits for its lookup, leaving none of them to send the request
+            List<CompletableFuture<Port>> lookups = new ArrayList<>();
+            for (Port port : ports) {
+                lookups.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return osCalls.getPortAddresses(port.getId());
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, workerPool));
+            }
+
+            // Assert.
+            for (int i = 0; i < workers; i++) {
+                assertEquals(ports.get(i).getId(), OsCallsAsync.await(lookups.get(i), 10000).getId());
+            }
+            assertEquals(0, calls(PORT, GET));
+        } finally {
+            workerPool.shutdownNow();
+            lookupExecutor.shutdownNow();
+            realScheduler.shutdownNow();
+        }
+    }
+
+    private List<? extends Port> listPorts(OsCalls osCalls, List<String> ids) {
+        this.requestedIds.add(ids);
+        return osCalls.listPortAddressesById(ids);
+    }
+
+    private LookupBatcher batcher(long windowMillis, int maxBatchSize) {
+        return new LookupBatcher(windowMillis, maxBatchSize, this.scheduler, MoreExecutors.directExecutor());
+    }
+
+    private void endWindow() {
+        ArgumentCaptor<Runnable> endOfWindow = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.scheduler).schedule(endOfWindow.capture(), eq(WINDOW_MS), eq(TimeUnit.MILLISECONDS));
+        endOfWindow.getValue().run();
+    }
+
+    private OsCalls osCalls(LookupBatcher batcher) {
+        return new OsCalls(this.osClient, projectContext(b -> b.metrics(this.metrics).lookupBatcher(batcher)));
+    }
+
+    private long calls(String resource, String verb) {
+        return this.metrics.getCalls().stream()
+                .filter(c -> c.getResource().equals(resource) && c.getVerb().equals(verb))
+                .mapToLong(c -> c.getCount())
+                .sum();
+    }
+}
@@ -26,6 +26,9 @@ import static org.osc.sdk.controller.TagEncapsulationType.VLAN;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
@@ -33,23 +36,40 @@ import org.hamcrest.core.StringStartsWith;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.openstack4j.api.Builders;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.api.networking.ext.FlowClassifierService;
+import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
+import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
 import org.osc.controller.nsfc.api.NeutronSfcSdnRedirectionApi;
 import org.osc.controller.nsfc.entities.FlowClassifierElement;
+import org.osc.controller.nsfc.entities.InspectionHookInstallResult;
 import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.PortPairElement;
 import org.osc.controller.nsfc.entities.PortPairGroupElement;
+import org.osc.controller.nsfc.entities.ReconciliationReport;
+import org.osc.controller.nsfc.entities.ReconciliationReport.ActionType;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.PortChainWriteQueue;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.controller.nsfc.utils.RevisionedPortChainService;
+import org.osc.controller.nsfc.utils.SharedOsClient;
 import org.osc.sdk.controller.DefaultNetworkPort;
 import org.osc.sdk.controller.element.Element;
 import org.osc.sdk.controller.element.InspectionHookElement;
 import org.osc.sdk.controller.element.InspectionPortElement;
 import org.osc.sdk.controller.element.NetworkElement;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
 public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTest {
 
     private NeutronSfcSdnRedirectionApi redirApi;
@@ -59,7 +79,7 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
     public void setup() throws Exception {
         MockitoAnnotations.initMocks(this);
         super.setup();
-        this.redirApi = new NeutronSfcSdnRedirectionApi(this.osClient);
+        this.redirApi = new NeutronSfcSdnRedirectionApi(this.osClient, projectContext());
     }
 
     // Inspection port tests
@@ -106,6 +126,31 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertNotNull(foundInspPortElement);
     }
 
+    @Test
+    public void testApi_RegisterInspectionPort_AlreadyInPortPairGroup_VerifyNoUpdate() throws Exception {
+        // Arrange.
+        persistIngress();
+        persistEgress();
+
+        OsCallMetrics metrics = new OsCallMetrics();
+        NeutronSfcSdnRedirectionApi meteredRedirApi = new NeutronSfcSdnRedirectionApi(this.osClient,
+                projectContext(b -> b.metrics(metrics)));
+
+        Element registered = meteredRedirApi.registerInspectionPort(
+                new PortPairElement(null, null, ingressPortElement, egressPortElement));
+        ppgElement = new PortPairGroupElement(registered.getParentId());
+
+        // Act.
+        Element result = meteredRedirApi.registerInspectionPort(
+                new PortPairElement(null, ppgElement, ingressPortElement, egressPortElement));
+
+        // Assert.
+        assertEquals(registered.getElementId(), result.getElementId());
+        assertEquals(registered.getParentId(), result.getParentId());
+        assertTrue(metrics.getCalls().stream()
+                .noneMatch(c -> c.getResource().equals(OsCallMetrics.PORT_PAIR_GROUP) && c.getVerb().equals(OsCallMetrics.PUT)));
+    }
+
     @Test
     public void testApi_RegisterInspectionPortWithParentId_Succeeds() throws Exception {
         // Arrange.
@@ -247,6 +292,36 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertTrue(portPairGroup.getPortPairs().contains(inspectionPortElement2.getElementId()));
     }
 
+    @Test
+    public void testApi_RemoveInspectionPort_StaleTopologyCache_OtherPortPairsKept() throws Exception {
+        // Arrange.
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+
+        ProjectContext projectContext = projectContext();
+        NeutronSfcSdnRedirectionApi redirApi = new NeutronSfcSdnRedirectionApi(this.osClient, projectContext);
+        PortPairElement inspectionPortElement = (PortPairElement) redirApi.registerInspectionPort(
+                new PortPairElement(null, null, ingressPortElement, egressPortElement));
+        ppgElement = new PortPairGroupElement(inspectionPortElement.getParentId());
+        PortPairElement otherInspectionPortElement = (PortPairElement) redirApi.registerInspectionPort(
+                new PortPairElement(null, ppgElement,
+                        new NetworkElementImpl("IngressFoo", asList("IngressMac"), asList("IngressIP"), null),
+                        new NetworkElementImpl("EgressFoo", asList("EgressMac"), asList("EgressIP"), null)));
+
+        // The cache missed the other port pair, as if added through another redirection api
+        projectContext.getTopologyCache().put(Builders.portPairGroup().id(ppgElement.getElementId())
+                .portPairs(asList(inspectionPortElement.getElementId())).build());
+
+        // Act.
+        redirApi.removeInspectionPort(inspectionPortElement);
+
+        // Assert.
+        portPairGroup = this.osClient.sfc().portpairgroups().get(ppgElement.getElementId());
+        assertNotNull(portPairGroup);
+        assertEquals(asList(otherInspectionPortElement.getElementId()), portPairGroup.getPortPairs());
+    }
+
     // Inspection hooks tests
     @Test
     public void testApi_InstallInspectionHook_VerifySucceeds() throws Exception {
@@ -276,6 +351,81 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertEquals(sfc.getElementId(), inspectionHook.getServiceFunctionChain().getElementId());
     }
 
+    @Test
+    public void testApi_InstallInspectionHook_OnWorkerThreads_VerifySucceeds() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        NeutronSfcSdnRedirectionApi parallelRedirApi = new NeutronSfcSdnRedirectionApi(this.osClient,
+                projectContext(b -> b.executor(executor)));
+
+        try {
+            // Act.
+            String hookId = parallelRedirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+            // Assert.
+            assertNotNull(hookId);
+            FlowClassifier flowClassifier = this.osClient.sfc().flowclassifiers().get(hookId);
+            assertNotNull(flowClassifier);
+            assertEquals(routerInterfacePort.getId(), flowClassifier.getLogicalSourcePort());
+            assertTrue(this.osClient.sfc().portchains().get(sfc.getElementId()).getFlowClassifiers().contains(hookId));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testApi_InstallInspectionHook_ConcurrentPortChainUpdate_VerifyRetriedOnLatestRevision() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        String concurrentHookId = "concurrent-flow-classifier";
+        RevisionedPortChainService conflictingService = new RevisionedPortChainService() {
+            private boolean conflicted;
+
+            @Override
+            public PortChain get(String portChainId) {
+                return revisionedPortChainService.get(portChainId);
+            }
+
+            @Override
+            public PortChain update(String portChainId, PortChain portChain, Long revisionNumber) {
+                if (!this.conflicted) {
+                    // Another writer adds its flow classifier between our read and our update
+                    this.conflicted = true;
+                    List<String> flowClassifiers = new ArrayList<>(get(portChainId).getFlowClassifiers());
+                    flowClassifiers.add(concurrentHookId);
+                    revisionedPortChainService.update(portChainId,
+                            Builders.portChain().flowClassifiers(flowClassifiers).build(), null);
+                    throw new ResponseException("Precondition Failed", 412);
+                }
+                return revisionedPortChainService.update(portChainId, portChain, revisionNumber);
+            }
+        };
+
+        NeutronSfcSdnRedirectionApi conflictingRedirApi = new NeutronSfcSdnRedirectionApi(this.osClient,
+                projectContext(b -> b.revisionedPortChainService(conflictingService)));
+
+        // Act.
+        String hookId = conflictingRedirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        // Assert.
+        List<String> flowClassifiers = portChainService.get(sfc.getElementId()).getFlowClassifiers();
+        assertTrue(flowClassifiers.contains(hookId));
+        assertTrue(flowClassifiers.contains(concurrentHookId));
+    }
+
     @Test
     public void testApi_InstallInspectionHook_WithNoInspectedPort_VerifyFails() throws Exception {
 
@@ -293,6 +443,40 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         this.redirApi.installInspectionHook(inspectedPortElement, new ServiceFunctionChainElement("foo"), 0L, VLAN, 0L, NA);
     }
 
+    @Test
+    public void testApi_InstallInspectionHooks_SameChain_SingleChainUpdateWithAllHooks() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        NetworkElementImpl inspectedPortElement1 = inspectedPortElement;
+        persistInspectedPort();
+        NetworkElementImpl inspectedPortElement2 = inspectedPortElement;
+
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        List<FlowClassifierElement> hooks = asList(new FlowClassifierElement(null, inspectedPortElement1, sfc),
+                new FlowClassifierElement(null, inspectedPortElement2, sfc),
+                new FlowClassifierElement(null, inspectedPortElement1, new ServiceFunctionChainElement("foo")));
+
+        // Act.
+        List<InspectionHookInstallResult> results = this.redirApi.installInspectionHooks(hooks);
+
+        // Assert.
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(2).getError() instanceof IllegalArgumentException);
+        assertNull(results.get(2).getHookId());
+
+        PortChain updatedChain = this.osClient.sfc().portchains().get(sfc.getElementId());
+        assertEquals(asList(results.get(0).getHookId(), results.get(1).getHookId()), updatedChain.getFlowClassifiers());
+        assertEquals(2, this.osClient.sfc().flowclassifiers().list().size());
+    }
+
     @Test
     public void testApi_UpdateInspectionHook_WithExistingHook_VerifySucceeds() throws Exception {
         // Arrange.
@@ -359,6 +543,73 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertNull(this.redirApi.getInspectionHook(hookId));
     }
 
+    @Test
+    public void testApi_GetInspectionHookByPortAndChain_FoundThroughIndexThenAfterIndexLoss() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        // Act.
+        InspectionHookElement indexed = this.redirApi.getInspectionHook(inspectedPortElement, sfc);
+        InspectionHookElement listed = new NeutronSfcSdnRedirectionApi(this.osClient, projectContext())
+                .getInspectionHook(inspectedPortElement, sfc);
+
+        // Assert.
+        assertEquals(hookId, indexed.getHookId());
+        assertEquals(sfc.getElementId(), indexed.getInspectionPort().getElementId());
+        assertEquals(hookId, listed.getHookId());
+    }
+
+    @Test
+    public void testApi_RemoveInspectionHookByPortAndChain_InspectionHookDisappears() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+
+        // Act.
+        this.redirApi.removeInspectionHook(inspectedPortElement, sfc);
+
+        // Assert.
+        assertNull(flowClassifierService.get(hookId));
+        assertTrue(portChainService.get(portChain.getId()).getFlowClassifiers().isEmpty());
+        assertNull(this.redirApi.getInspectionHook(inspectedPortElement, sfc));
+    }
+
+    @Test
+    public void testApi_RemoveAllInspectionHooks_HooksOfPortDisappearAndOthersRemain() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        String hookId = this.redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+        FlowClassifier otherHook = flowClassifierService.create(Builders.flowClassifier()
+                .name("OSCFlowClassifier-other").logicalDestinationPort("otherPort").build());
+
+        // Act.
+        this.redirApi.removeAllInspectionHooks(inspectedPortElement);
+
+        // Assert.
+        assertNull(flowClassifierService.get(hookId));
+        assertTrue(portChainService.get(portChain.getId()).getFlowClassifiers().isEmpty());
+        assertNotNull(flowClassifierService.get(otherHook.getId()));
+    }
+
     @Test
     public void testApi_RegisterNetworkElementWithNullPPGList_ThrowsIllegalArgumentException() throws Exception {
         // Arrange
@@ -598,6 +849,130 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         assertNull(portChainService.get(localSfcId));
     }
 
+    @Test
+    public void testApi_DeleteNetworkElementWithCascade_DeletesOwnedTreeAndKeepsSharedGroup() throws Exception {
+        // Arrange
+        PortPair ownedPair = portPairService.create(Builders.portPair().name("OSCPortPair-1").build());
+        PortPairGroup ownedGroup = portPairGroupService.create(Builders.portPairGroup().name("OSCPortPairGroup-1")
+                .portPairs(new ArrayList<>(asList(ownedPair.getId()))).build());
+        PortPair sharedPair = portPairService.create(Builders.portPair().name("OSCPortPair-2").build());
+        PortPairGroup sharedGroup = portPairGroupService.create(Builders.portPairGroup().name("OSCPortPairGroup-2")
+                .portPairs(new ArrayList<>(asList(sharedPair.getId()))).build());
+        FlowClassifier ownedFlowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name("OSCFlowClassifier-1").build());
+        FlowClassifier foreignFlowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name("admin-classifier").build());
+
+        PortChain chain = portChainService.create(Builders.portChain()
+                .portPairGroups(new ArrayList<>(asList(ownedGroup.getId(), sharedGroup.getId())))
+                .flowClassifiers(new ArrayList<>(asList(ownedFlowClassifier.getId(), foreignFlowClassifier.getId())))
+                .build());
+        portChainService.create(Builders.portChain()
+                .portPairGroups(new ArrayList<>(asList(sharedGroup.getId())))
+                .flowClassifiers(new ArrayList<>())
+                .build());
+
+        NeutronSfcSdnRedirectionApi cascadeApi = new NeutronSfcSdnRedirectionApi(new SharedOsClient(this.osClient),
+                projectContext(), true);
+        DefaultNetworkPort ne = new DefaultNetworkPort();
+        ne.setElementId(chain.getId());
+
+        // Act
+        cascadeApi.deleteNetworkElement(ne);
+
+        // Assert
+        assertNull(portChainService.get(chain.getId()));
+        assertNull(portPairGroupService.get(ownedGroup.getId()));
+        assertNull(portPairService.get(ownedPair.getId()));
+        assertNull(flowClassifierService.get(ownedFlowClassifier.getId()));
+        assertNotNull(portPairGroupService.get(sharedGroup.getId()));
+        assertNotNull(portPairService.get(sharedPair.getId()));
+        assertNotNull(flowClassifierService.get(foreignFlowClassifier.getId()));
+    }
+
+    @Test
+    public void testApi_DeleteNetworkElementWithCascade_TwoDeletesFail_ThrowsFirstWithSecondSuppressed()
+            throws Exception {
+        // Arrange
+        PortPair ownedPair = portPairService.create(Builders.portPair().name("OSCPortPair-1").build());
+        PortPairGroup ownedGroup = portPairGroupService.create(Builders.portPairGroup().name("OSCPortPairGroup-1")
+                .portPairs(new ArrayList<>(asList(ownedPair.getId()))).build());
+        FlowClassifier firstFlowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name("OSCFlowClassifier-1").build());
+        FlowClassifier secondFlowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name("OSCFlowClassifier-2").build());
+        PortChain chain = portChainService.create(Builders.portChain()
+                .portPairGroups(new ArrayList<>(asList(ownedGroup.getId())))
+                .flowClassifiers(new ArrayList<>(asList(firstFlowClassifier.getId(), secondFlowClassifier.getId())))
+                .build());
+
+        FlowClassifierService failingService = Mockito.mock(FlowClassifierService.class);
+        Mockito.when(failingService.list()).thenAnswer(i -> flowClassifierService.list());
+        Mockito.when(failingService.delete(Mockito.anyString()))
+                .thenReturn(ActionResponse.actionFailed("Conflict", 409));
+        Mockito.when(this.sfcService.flowclassifiers()).thenReturn(failingService);
+
+        NeutronSfcSdnRedirectionApi cascadeApi = new NeutronSfcSdnRedirectionApi(new SharedOsClient(this.osClient),
+                projectContext(), true);
+        DefaultNetworkPort ne = new DefaultNetworkPort();
+        ne.setElementId(chain.getId());
+
+        // Act
+        Exception failure = null;
+        try {
+            cascadeApi.deleteNetworkElement(ne);
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        // Assert
+        assertNotNull(failure);
+        assertEquals(1, failure.getSuppressed().length);
+        assertNull(portChainService.get(chain.getId()));
+        assertNull(portPairService.get(ownedPair.getId()));
+    }
+
+    @Test
+    public void testApi_GetNetworkElementByDeviceOwnerId_DeviceWithSeveralPorts_ThrowsIllegalStateException()
+            throws Exception {
+        // Arrange
+        portService.create(Builders.port().deviceId("mySva").macAddress("fa:16:3e:00:00:01")
+                .fixedIp("10.0.0.5", "mySubnet").build());
+        portService.create(Builders.port().deviceId("mySva").macAddress("fa:16:3e:00:00:02")
+                .fixedIp("10.0.1.5", "otherSubnet").build());
+
+        this.exception.expect(IllegalStateException.class);
+        this.exception.expectMessage("Found 2 ports on device mySva");
+
+        // Act
+        this.redirApi.getNetworkElementByDeviceOwnerId("mySva");
+    }
+
+    @Test
+    public void testApi_GetNetworkElementByDeviceOwnerId_PortsOfDeviceListedOnce() throws Exception {
+        // Arrange
+        Port port = portService.create(Builders.port().deviceId("myVm").macAddress("fa:16:3e:00:00:01")
+                .fixedIp("10.0.0.5", "mySubnet").build());
+        portService.create(Builders.port().deviceId("otherVm").macAddress("fa:16:3e:00:00:02").build());
+
+        ProjectContext projectContext = projectContext();
+        NeutronSfcSdnRedirectionApi redirApi = new NeutronSfcSdnRedirectionApi(this.osClient, projectContext);
+
+        // Act
+        NetworkElement element = redirApi.getNetworkElementByDeviceOwnerId("myVm");
+        NetworkElement again = redirApi.getNetworkElementByDeviceOwnerId("myVm");
+
+        // Assert
+        assertEquals(port.getId(), element.getElementId());
+        assertEquals(asList("fa:16:3e:00:00:01"), element.getMacAddresses());
+        assertEquals(asList("10.0.0.5"), element.getPortIPs());
+        assertEquals(element.getElementId(), again.getElementId());
+        assertEquals(1, projectContext.getMetrics().getCalls().stream()
+                .filter(c -> c.getResource().equals(OsCallMetrics.PORT) && c.getVerb().equals(OsCallMetrics.LIST))
+                .mapToLong(c -> c.getCount()).sum());
+        assertNull(redirApi.getNetworkElementByDeviceOwnerId("unknownVm"));
+    }
+
     @Test
     public void testApi_GetNetworkElementWhenSfcElementIsNull_ThrowsIllegalArgumentException() throws Exception {
         // Arrange
@@ -653,4 +1028,159 @@ public class NeutronSfcSdnRedirectionApiTest extends AbstractNeutronSfcPluginTes
         // Assert.
         assertNotNull("SFC chain List is Empty", neResponseList);
     }
+
+    // Reconciliation tests
+    @Test
+    public void testApi_Reconcile_NothingInNeutron_CreatesEverything() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+
+        PortPairGroupElement desiredPpg = new PortPairGroupElement();
+        ServiceFunctionChainElement desiredSfc = desiredState(desiredPpg);
+
+        // Act.
+        ReconciliationReport report = this.redirApi.reconcile(asList(desiredSfc), asList(desiredPpg));
+
+        // Assert.
+        assertTrue(report.getFailures().toString(), report.isSuccess());
+        assertEquals(4, report.getActions().size());
+        assertTrue(report.getActions().stream().allMatch(a -> a.getType() == ActionType.CREATE));
+
+        PortChain createdChain = portChainService.get(desiredSfc.getElementId());
+        assertNotNull(createdChain);
+        assertEquals(asList(desiredPpg.getElementId()), createdChain.getPortPairGroups());
+
+        FlowClassifierElement hook = desiredSfc.getInspectionHooks().iterator().next();
+        assertEquals(asList(hook.getHookId()), createdChain.getFlowClassifiers());
+        assertEquals(inspectedPortElement.getElementId(),
+                flowClassifierService.get(hook.getHookId()).getLogicalDestinationPort());
+    }
+
+    @Test
+    public void testApi_Reconcile_NeutronAlreadyInSync_NoAction() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+
+        PortPairGroupElement desiredPpg = new PortPairGroupElement();
+        ServiceFunctionChainElement desiredSfc = desiredState(desiredPpg);
+        this.redirApi.reconcile(asList(desiredSfc), asList(desiredPpg));
+
+        // Act.
+        ReconciliationReport report = this.redirApi.reconcile(asList(desiredSfc), asList(desiredPpg));
+
+        // Assert.
+        assertTrue(report.getActions().toString(), report.getActions().isEmpty());
+    }
+
+    @Test
+    public void testApi_Reconcile_NothingDesired_DeletesOscObjectsOnly() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+
+        PortPairGroupElement desiredPpg = new PortPairGroupElement();
+        this.redirApi.reconcile(asList(desiredState(desiredPpg)), asList(desiredPpg));
+
+        PortChain foreignChain = portChainService.create(Builders.portChain().name("not-osc")
+                .portPairGroups(new ArrayList<>()).flowClassifiers(new ArrayList<>()).build());
+
+        // Act.
+        ReconciliationReport report = this.redirApi.reconcile(Collections.emptyList(), Collections.emptyList());
+
+        // Assert.
+        assertTrue(report.getFailures().toString(), report.isSuccess());
+        assertEquals(4, report.getActions().size());
+        assertTrue(report.getActions().stream().allMatch(a -> a.getType() == ActionType.DELETE));
+
+        assertEquals(asList(foreignChain), portChainService.list());
+        assertTrue(portPairGroupService.list().isEmpty());
+        assertTrue(portPairService.list().isEmpty());
+        assertTrue(flowClassifierService.list().isEmpty());
+    }
+
+    @Test
+    public void testApi_Reconcile_HookInstalledMeanwhile_KeptOnChain() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+
+        PortPairGroupElement desiredPpg = new PortPairGroupElement();
+        ServiceFunctionChainElement desiredSfc = desiredState(desiredPpg);
+        this.redirApi.reconcile(asList(desiredSfc), asList(desiredPpg));
+        desiredSfc.getInspectionHooks().clear();
+
+        String concurrentHookId = "concurrent-hook";
+        RevisionedPortChainService racingService = new RevisionedPortChainService() {
+            @Override
+            public PortChain get(String portChainId) {
+                // Another writer adds its flow classifier after the reconciliation listed the chains
+                List<String> flowClassifiers = new ArrayList<>(revisionedPortChainService.get(portChainId)
+                        .getFlowClassifiers());
+                if (!flowClassifiers.contains(concurrentHookId)) {
+                    flowClassifiers.add(concurrentHookId);
+                    revisionedPortChainService.update(portChainId,
+                            Builders.portChain().flowClassifiers(flowClassifiers).build(), null);
+                }
+                return revisionedPortChainService.get(portChainId);
+            }
+
+            @Override
+            public PortChain update(String portChainId, PortChain portChain, Long revisionNumber) {
+                return revisionedPortChainService.update(portChainId, portChain, revisionNumber);
+            }
+        };
+        NeutronSfcSdnRedirectionApi racingRedirApi = new NeutronSfcSdnRedirectionApi(this.osClient,
+                projectContext(b -> b.revisionedPortChainService(racingService)));
+
+        // Act.
+        ReconciliationReport report = racingRedirApi.reconcile(asList(desiredSfc), asList(desiredPpg));
+
+        // Assert.
+        assertTrue(report.getFailures().toString(), report.isSuccess());
+        assertEquals(asList(concurrentHookId), portChainService.get(desiredSfc.getElementId()).getFlowClassifiers());
+    }
+
+    @Test
+    public void testApi_Reconcile_FlowClassifierQueuedMeanwhile_NotDeleted() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+
+        PortPairGroupElement desiredPpg = new PortPairGroupElement();
+        ServiceFunctionChainElement desiredSfc = desiredState(desiredPpg);
+        this.redirApi.reconcile(asList(desiredSfc), asList(desiredPpg));
+
+        // The window of the queue never ends, the addition of the concurrent hook staying queued
+        PortChainWriteQueue writeQueue = new PortChainWriteQueue(200, Mockito.mock(ScheduledExecutorService.class),
+                MoreExecutors.directExecutor());
+        ProjectContext context = projectContext(b -> b.portChainWriteQueue(writeQueue));
+        FlowClassifier queuedFlowClassifier = flowClassifierService.create(Builders.flowClassifier()
+                .name("OSCFlowClassifier-queued").build());
+        writeQueue.addFlowClassifiers(new OsCalls(this.osClient, context), desiredSfc.getElementId(), null,
+                asList(queuedFlowClassifier.getId()));
+
+        // Act.
+        ReconciliationReport report = new NeutronSfcSdnRedirectionApi(this.osClient, context)
+                .reconcile(asList(desiredSfc), asList(desiredPpg));
+
+        // Assert.
+        assertTrue(report.getFailures().toString(), report.isSuccess());
+        assertNotNull(flowClassifierService.get(queuedFlowClassifier.getId()));
+    }
+
+    private static ServiceFunctionChainElement desiredState(PortPairGroupElement desiredPpg) {
+        desiredPpg.getPortPairs().add(new PortPairElement(null, desiredPpg, ingressPortElement, egressPortElement));
+
+        ServiceFunctionChainElement desiredSfc = new ServiceFunctionChainElement();
+        desiredSfc.getPortPairGroups().add(desiredPpg);
+        desiredSfc.getInspectionHooks().add(new FlowClassifierElement(null, inspectedPortElement, desiredSfc));
+        return desiredSfc;
+    }
 }
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.*;
+import static org.osc.sdk.controller.FailurePolicyType.NA;
+import static org.osc.sdk.controller.TagEncapsulationType.VLAN;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.osc.controller.nsfc.api.MeasuredSdnRedirectionApi;
+import org.osc.controller.nsfc.api.NeutronSfcSdnRedirectionApi;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.controller.nsfc.utils.OsCallMetrics.CallStatistics;
+import org.osc.controller.nsfc.utils.OsCallMetrics.OperationStatistics;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.sdk.controller.api.SdnRedirectionApi;
+
+public class OsCallMetricsTest extends AbstractNeutronSfcPluginTest {
+
+    private OsCallMetrics metrics;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.metrics = new OsCallMetrics();
+    }
+
+    @Test
+    public void testMetrics_InstallInspectionHook_RecordsCallsAndRoundTrips() throws Exception {
+        // Arrange.
+        persistInspectedPort();
+        persistIngress();
+        persistEgress();
+        persistInspectionPort(true, true);
+        persistPortPairGroup();
+        persistPortChainAndSfcElement();
+
+        // The calls of the operation run on the workers
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        SdnRedirectionApi redirApi = new MeasuredSdnRedirectionApi(new NeutronSfcSdnRedirectionApi(this.osClient,
+                projectContext(b -> b.metrics(this.metrics).executor(executor))), this.metrics);
+
+        // Act.
+        try {
+            redirApi.installInspectionHook(inspectedPortElement, sfc, 0L, VLAN, 0L, NA);
+        } finally {
+            executor.shutdown();
+        }
+
+        // Assert.
+        assertEquals(1, calls(FLOW_CLASSIFIER, POST).getCount());
+        assertEquals(1, calls(PORT_CHAIN, GET).getCount());
+        assertEquals(1, calls(PORT_CHAIN, PUT).getCount());
+        assertTrue(calls(PORT, LIST).getPayloadItems() > 0);
+
+        long totalCalls = this.metrics.getCalls().stream().mapToLong(CallStatistics::getCount).sum();
+        OperationStatistics operation = this.metrics.getOperations().get(0);
+        assertEquals("installInspectionHook", operation.getOperation());
+        assertEquals(1, operation.getCount());
+        assertEquals(totalCalls, operation.getRoundTrips());
+    }
+
+    @Test
+    public void testMetrics_OperationsAtTheSameTime_EachChargedItsOwnCalls() throws Exception {
+        // Arrange.
+        OsCalls osCalls = new OsCalls(this.osClient, projectContext(b -> b.metrics(this.metrics)));
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+
+        // Act.
+        try {
+            this.metrics.measure("first", () -> {
+                osCalls.getPortChain("chain");
+                // Runs to completion while the first operation is in progress
+                return otherThread.submit(() -> this.metrics.measure("second", () -> {
+                    osCalls.getPortPairGroup("group1");
+                    return osCalls.getPortPairGroup("group2");
+                })).get();
+            });
+        } finally {
+            otherThread.shutdown();
+        }
+
+        // Assert.
+        assertEquals(1, operation("first").getRoundTrips());
+        assertEquals(2, operation("second").getRoundTrips());
+    }
+
+    @Test
+    public void testMetrics_FailedCalls_RecordedByHttpStatus() throws Exception {
+        // Arrange.
+        this.metrics.record(PORT_PAIR, GET, () -> null);
+
+        // Act.
+        try {
+            this.metrics.record(PORT_CHAIN, PUT, () -> {
+                throw new ResponseException("Conflict", 409);
+            });
+            fail("The exception of the call must be propagated");
+        } catch (ResponseException e) {
+            // expected
+        }
+
+        // Assert.
+        assertEquals(Long.valueOf(1), calls(PORT_PAIR, GET).getErrors().get("404"));
+        assertEquals(Long.valueOf(1), calls(PORT_CHAIN, PUT).getErrors().get("409"));
+        assertEquals(1, calls(PORT_CHAIN, PUT).getCount());
+    }
+
+    @Test
+    public void testMetrics_Calls_CountedInLatencyHistogram() throws Exception {
+        // Arrange.
+        this.metrics.record(PORT, LIST, () -> asList("port1", "port2"));
+
+        // Act.
+        this.metrics.record(PORT, LIST, () -> asList("port3"));
+
+        // Assert.
+        CallStatistics statistics = calls(PORT, LIST);
+        assertEquals(2, statistics.getCount());
+        assertEquals(3, statistics.getPayloadItems());
+        assertEquals(2, Arrays.stream(statistics.getLatencyCounts()).sum());
+        assertEquals(statistics.getLatencyBucketsMillis().length + 1, statistics.getLatencyCounts().length);
+        assertTrue(statistics.getErrors().isEmpty());
+    }
+
+    private OperationStatistics operation(String operation) {
+        return this.metrics.getOperations().stream()
+                .filter(o -> o.getOperation().equals(operation))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + operation + " recorded"));
+    }
+
+    private CallStatistics calls(String resource, String verb) {
+        return this.metrics.getCalls().stream()
+                .filter(c -> c.getResource().equals(resource) && c.getVerb().equals(verb))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + verb + " " + resource + " recorded"));
+    }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.TestData.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.PortPair;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.PagedIterator;
+
+public class PagedIteratorTest extends AbstractNeutronSfcPluginTest {
+
+    private static final int PORT_PAIR_COUNT = 2 * OsCalls.PAGE_SIZE + 50;
+
+    private OsCalls osCalls;
+    private List<String> portPairIds;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.osCalls = new OsCalls(this.osClient, projectContext());
+
+        for (int i = 0; i < PORT_PAIR_COUNT; i++) {
+            portPairService.create(Builders.portPair().ingressId("ingress" + i).egressId("egress" + i).build());
+        }
+        this.portPairIds = portPairService.list().stream().map(PortPair::getId).sorted().collect(toList());
+    }
+
+    @Test
+    public void testStream_CollectionOverSeveralPages_AllResourcesListedOnce() throws Exception {
+        // Act.
+        List<String> listed = this.osCalls.streamPortPairs(null, null, null).map(PortPair::getId).collect(toList());
+
+        // Assert.
+        assertEquals(this.portPairIds, listed);
+        assertEquals(3, this.osCalls.getRoundTrips());
+    }
+
+    @Test
+    public void testStream_MatchOnFirstPage_RemainingPagesNotRequested() throws Exception {
+        // Arrange.
+        String wanted = this.portPairIds.get(OsCalls.PAGE_SIZE / 2);
+
+        // Act.
+        boolean found = this.osCalls.streamPortPairs(null, null, null).anyMatch(pp -> wanted.equals(pp.getId()));
+
+        // Assert.
+        assertTrue(found);
+        assertEquals(1, this.osCalls.getRoundTrips());
+    }
+
+    @Test
+    public void testStream_LoaderHonouringMarker_AllResourcesListedOnce() throws Exception {
+        // Arrange.
+        AtomicInteger loads = new AtomicInteger();
+        List<PortPair> all = new ArrayList<>(portPairService.list());
+        all.sort((a, b) -> a.getId().compareTo(b.getId()));
+
+        // Act.
+        List<String> listed = PagedIterator.<PortPair>stream(OsCalls.PAGE_SIZE, (limit, marker) -> {
+            loads.incrementAndGet();
+            return page(all, limit, marker);
+        }).map(PortPair::getId).collect(toList());
+
+        // Assert.
+        assertEquals(this.portPairIds, listed);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testStream_ServerIgnoringPagination_StopsAfterRepeatedPage() throws Exception {
+        // Arrange.
+        AtomicInteger loads = new AtomicInteger();
+        List<PortPair> firstTwo = new ArrayList<PortPair>(portPairService.list()).subList(0, 2);
+
+        // Act.
+        List<PortPair> listed = PagedIterator.<PortPair>stream(2, (limit, marker) -> {
+            loads.incrementAndGet();
+            return firstTwo;
+        }).collect(toList());
+
+        // Assert.
+        assertEquals(firstTwo, listed);
+        assertEquals(2, loads.get());
+    }
+
+    private static List<PortPair> page(List<PortPair> all, int limit, String marker) {
+        return all.stream()
+                .filter(pp -> marker == null || pp.getId().compareTo(marker) > 0)
+                .limit(limit)
+                .collect(toList());
+    }
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.PortChain;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.OsCallsAsync;
+import org.osc.controller.nsfc.utils.PortChainWriteQueue;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class PortChainWriteQueueTest extends AbstractNeutronSfcPluginTest {
+
+    private static final long WINDOW_MS = 200;
+
+    // Windows end when the test runs the task scheduled for them
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    private PortChainWriteQueue queue;
+    private OsCalls osCalls;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.queue = new PortChainWriteQueue(WINDOW_MS, this.scheduler, MoreExecutors.directExecutor());
+        this.osCalls = new OsCalls(this.osClient, projectContext());
+    }
+
+    @Test
+    public void testQueue_ChangesWithinWindow_MergedIntoOneUpdate() throws Exception {
+        // Arrange.
+        PortChain chain = portChainService.create(Builders.portChain().flowClassifiers(new ArrayList<>(asList("fc0"))).build());
+
+        // Act.
+        CompletableFuture<PortChain> added = this.queue.addFlowClassifiers(this.osCalls, chain.getId(), null,
+                asList("fc1", "fc2"));
+        CompletableFuture<PortChain> removed = this.queue.removeFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc0"));
+        endWindow();
+
+        // Assert.
+        List<String> flowClassifiers = OsCallsAsync.await(added).getFlowClassifiers();
+        assertEquals(asList("fc1", "fc2"), flowClassifiers);
+        assertSame(OsCallsAsync.await(added), OsCallsAsync.await(removed));
+        assertEquals(asList("fc1", "fc2"), portChainService.get(chain.getId()).getFlowClassifiers());
+        assertEquals(1, portChainUpdates());
+    }
+
+    @Test
+    public void testQueue_AddAndRemoveOfSameClassifier_CancelOut() throws Exception {
+        // Arrange.
+        PortChain chain = portChainService.create(Builders.portChain().flowClassifiers(new ArrayList<>(asList("fc0"))).build());
+
+        // Act.
+        CompletableFuture<PortChain> added = this.queue.addFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        CompletableFuture<PortChain> removed = this.queue.removeFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        endWindow();
+
+        // Assert.
+        OsCallsAsync.await(added);
+        OsCallsAsync.await(removed);
+        assertEquals(asList("fc0"), portChainService.get(chain.getId()).getFlowClassifiers());
+        assertEquals(0, portChainUpdates());
+    }
+
+    @Test
+    public void testQueue_RemoveThenAddOfMissingClassifier_Added() throws Exception {
+        // Arrange.
+        PortChain chain = portChainService.create(Builders.portChain()
+                .flowClassifiers(new ArrayList<>(asList("fc0"))).build());
+
+        // Act.
+        CompletableFuture<PortChain> removed = this.queue.removeFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        CompletableFuture<PortChain> added = this.queue.addFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        endWindow();
+
+        // Assert.
+        OsCallsAsync.await(removed);
+        OsCallsAsync.await(added);
+        assertEquals(asList("fc0", "fc1"), portChainService.get(chain.getId()).getFlowClassifiers());
+        assertEquals(1, portChainUpdates());
+    }
+
+    @Test
+    public void testQueue_AddThenRemoveOfPresentClassifier_Removed() throws Exception {
+        // Arrange.
+        PortChain chain = portChainService.create(Builders.portChain()
+                .flowClassifiers(new ArrayList<>(asList("fc0", "fc1"))).build());
+
+        // Act.
+        CompletableFuture<PortChain> added = this.queue.addFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        CompletableFuture<PortChain> removed = this.queue.removeFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        endWindow();
+
+        // Assert.
+        OsCallsAsync.await(added);
+        OsCallsAsync.await(removed);
+        assertEquals(asList("fc0"), portChainService.get(chain.getId()).getFlowClassifiers());
+        assertEquals(1, portChainUpdates());
+    }
+
+    @Test
+    public void testQueue_ChainWritten_QueueDropped() throws Exception {
+        // Arrange.
+        PortChain chain = portChainService.create(Builders.portChain().flowClassifiers(new ArrayList<>()).build());
+        CompletableFuture<PortChain> added = this.queue.addFlowClassifiers(this.osCalls, chain.getId(), null,
+                singletonList("fc1"));
+        assertEquals(1, this.queue.size());
+
+        // Act.
+        endWindow();
+
+        // Assert.
+        assertEquals(asList("fc1"), this.queue.await(added).getFlowClassifiers());
+        assertEquals(0, this.queue.size());
+    }
+
+    private void endWindow() {
+        ArgumentCaptor<Runnable> endOfWindow = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.scheduler).schedule(endOfWindow.capture(), eq(WINDOW_MS), eq(TimeUnit.MILLISECONDS));
+        endOfWindow.getValue().run();
+    }
+
+    private long portChainUpdates() {
+        return this.osCalls.getMetrics().getCalls().stream()
+                .filter(c -> c.getResource().equals(PORT_CHAIN) && c.getVerb().equals(PUT))
+                .mapToLong(c -> c.getCount())
+                .sum();
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.*;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.OsCallsAsync;
+import org.osc.controller.nsfc.utils.PortInfoResolver;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.sdk.controller.FlowInfo;
+import org.osc.sdk.controller.FlowPortInfo;
+
+public class PortInfoResolverTest extends AbstractNeutronSfcPluginTest {
+
+    private OsCallMetrics metrics;
+    private PortInfoResolver resolver;
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.metrics = new OsCallMetrics();
+
+        ProjectContext projectContext = projectContext(b -> b.metrics(this.metrics));
+        OsCalls osCalls = new OsCalls(this.osClient, projectContext);
+        this.resolver = new PortInfoResolver(osCalls, new OsCallsAsync(osCalls, projectContext.getExecutor()));
+    }
+
+    @Test
+    public void testResolve_FlowsWithKnownMacAddresses_ResolvedWithOneListCall() throws Exception {
+        // Arrange.
+        portService.create(Builders.port().macAddress("aa:00:00:00:00:01").build());
+        portService.create(Builders.port().macAddress("aa:00:00:00:00:02").build());
+
+        HashMap<String, FlowInfo> flows = new HashMap<>();
+        for (int i = 0; i < PortInfoResolver.MAX_ADDRESSES_PER_QUERY; i++) {
+            flows.put("flow" + i, flow("flow" + i, "AA:00:00:00:00:01", null, "aa:00:00:00:00:02", null));
+        }
+
+        // Act.
+        HashMap<String, FlowPortInfo> portInfos = this.resolver.resolve(flows);
+
+        // Assert.
+        assertEquals(flows.keySet(), portInfos.keySet());
+        assertEquals(1, calls(PORT, LIST));
+    }
+
+    @Test
+    public void testResolve_UnknownMacAddress_FallsBackToIpAddressInOneMoreListCall() throws Exception {
+        // Arrange.
+        portService.create(Builders.port().macAddress("aa:00:00:00:00:03")
+                .fixedIp("10.0.0.3", "subnet").build());
+
+        HashMap<String, FlowInfo> flows = new HashMap<>();
+        flows.put("flow1", flow("flow1", "aa:00:00:00:00:99", "10.0.0.3", null, "10.0.0.4"));
+        flows.put("flow2", flow("flow2", null, "10.0.0.3", null, null));
+
+        // Act.
+        HashMap<String, FlowPortInfo> portInfos = this.resolver.resolve(flows);
+
+        // Assert.
+        assertEquals(flows.keySet(), portInfos.keySet());
+        assertEquals(2, calls(PORT, LIST));
+    }
+
+    private static FlowInfo flow(String requestId, String sourceMac, String sourceIp, String destinationMac,
+            String destinationIp) {
+        FlowInfo flow = mock(FlowInfo.class);
+        when(flow.getRequestId()).thenReturn(requestId);
+        when(flow.getSourceMacAddress()).thenReturn(sourceMac);
+        when(flow.getSourceIpAddress()).thenReturn(sourceIp);
+        when(flow.getDestinationMacAddress()).thenReturn(destinationMac);
+        when(flow.getDestinationIpAddress()).thenReturn(destinationIp);
+        return flow;
+    }
+
+    private long calls(String resource, String verb) {
+        return this.metrics.getCalls().stream()
+                .filter(c -> c.getResource().equals(resource) && c.getVerb().equals(verb))
+                .mapToLong(c -> c.getCount())
+                .sum();
+    }
+}
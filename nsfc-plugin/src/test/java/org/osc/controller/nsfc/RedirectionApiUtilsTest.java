@@ -18,6 +18,7 @@ package org.osc.controller.nsfc;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
 import static org.osc.controller.nsfc.TestData.*;
 
 import java.util.ArrayList;
@@ -27,6 +28,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.openstack4j.api.Builders;
+import org.openstack4j.api.exceptions.ResponseException;
+import org.openstack4j.api.networking.ext.FlowClassifierService;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
@@ -48,7 +51,7 @@ public class RedirectionApiUtilsTest extends AbstractNeutronSfcPluginTest {
     public void setup() throws Exception {
         super.setup();
 
-        this.osCalls = new OsCalls(this.osClient);
+        this.osCalls = new OsCalls(this.osClient, projectContext());
         this.utils = new RedirectionApiUtils(this.osCalls);
     }
 
@@ -207,19 +210,173 @@ public class RedirectionApiUtilsTest extends AbstractNeutronSfcPluginTest {
         assertNull(foundPortChain);
     }
 
+    @Test
+    public void testUtils_FetchPortPairByNetworkElements_CreatedOutsideOsCallsAfterLoad_FoundByFilteredQuery() throws Exception {
+
+        // Arrange.
+        persistIngress();
+        persistEgress();
+
+        // Load the topology before the port pair exists
+        assertNull(this.utils.fetchPortPairByNetworkElements(ingressPortElement, egressPortElement));
+
+        boolean withIngress = true;
+        boolean withEgress = true;
+        persistInspectionPort(withIngress, withEgress);
+
+        // Act
+        PortPair foundPortPair = this.utils.fetchPortPairByNetworkElements(ingressPortElement, egressPortElement);
+
+        // Assert.
+        assertNotNull(foundPortPair);
+        assertEquals(portPair.getId(), foundPortPair.getId());
+
+        // The pair found by the query is now cached
+        portPairService.delete(portPair.getId());
+        assertNotNull(this.utils.fetchPortPairByNetworkElements(ingressPortElement, egressPortElement));
+    }
+
+    @Test
+    public void testUtils_FetchContainingPortPairGroup_UpdatedThroughOsCalls_CacheFollows() throws Exception {
+
+        // Arrange.
+        persistIngress();
+        persistEgress();
+
+        boolean withIngress = true;
+        boolean withEgress = true;
+        persistInspectionPort(withIngress, withEgress);
+        persistPortPairGroup();
+
+        assertNotNull(this.utils.fetchContainingPortPairGroup(portPair.getId()));
+
+        // Act
+        this.osCalls.updatePortPairGroup(portPairGroup.getId(), Builders.portPairGroup().portPairs(new ArrayList<>()).build());
+
+        // Assert.
+        assertNull(this.utils.fetchContainingPortPairGroup(portPair.getId()));
+
+        // Act
+        PortPairGroup created = this.osCalls.createPortPairGroup(Builders.portPairGroup()
+                .portPairs(new ArrayList<>(singletonList(portPair.getId()))).build());
+
+        // Assert.
+        PortPairGroup foundPortPairGroup = this.utils.fetchContainingPortPairGroup(portPair.getId());
+        assertNotNull(foundPortPairGroup);
+        assertEquals(created.getId(), foundPortPairGroup.getId());
+    }
+
     @Test
     public void testUtils_BuildFlowClassifier_NonNullInspectedPortId_Success() throws Exception {
 
         // Arrange.
         String inspectedPortId = "somethingorother";
 
+        String defaultGatewayPortId = "routerinterface";
+
         // Act
-        FlowClassifier flowClassifier = this.utils.buildFlowClassifier(inspectedPortId);
+        FlowClassifier flowClassifier = this.utils.buildFlowClassifier(inspectedPortId, defaultGatewayPortId);
 
         // Assert.
         assertNotNull(flowClassifier);
         assertEquals(inspectedPortId, flowClassifier.getLogicalDestinationPort());
+        assertEquals(defaultGatewayPortId, flowClassifier.getLogicalSourcePort());
         assertNotNull(flowClassifier.getName());
         assertTrue(flowClassifier.getName().startsWith("OSCFlowClassifier-"));
     }
+
+    @Test
+    public void testUtils_FetchDefaultGatewayPort_RouterInterfaceOnSubnet_Success() throws Exception {
+
+        // Arrange.
+        persistInspectedPort();
+        persistRouterInterface("otherSubnet");
+        Port otherRouterInterface = routerInterfacePort;
+
+        // Act
+        Port foundPort = this.utils.fetchDefaultGatewayPort(inspectedPort.getId());
+
+        // Assert.
+        assertNotNull(foundPort);
+        assertNotEquals(otherRouterInterface.getId(), foundPort.getId());
+        assertEquals("network:router_interface", foundPort.getDeviceOwner());
+    }
+
+    @Test
+    public void testUtils_FetchDefaultGatewayPort_AfterWarmUp_ServedFromCache() throws Exception {
+
+        // Arrange.
+        persistInspectedPort();
+        Port gatewayPort = this.utils.fetchDefaultGatewayPort(inspectedPort.getId());
+
+        // A second router interface on the subnet is only seen once the cache is invalidated
+        persistRouterInterface("mySubnet");
+
+        // Act
+        Port foundPort = this.utils.fetchDefaultGatewayPort(inspectedPort.getId());
+
+        // Assert.
+        assertEquals(gatewayPort.getId(), foundPort.getId());
+    }
+
+    @Test
+    public void testUtils_FetchDefaultGatewayPort_SubnetAddedAfterWarmUp_FoundByFilteredQuery() throws Exception {
+
+        // Arrange.
+        persistInspectedPort();
+        this.utils.fetchDefaultGatewayPort(inspectedPort.getId());
+
+        Port otherInspectedPort = portService.create(Builders.port().fixedIp("10.5.0.6", "otherSubnet").build());
+        persistRouterInterface("otherSubnet");
+
+        // Act
+        Port foundPort = this.utils.fetchDefaultGatewayPort(otherInspectedPort.getId());
+
+        // Assert.
+        assertEquals(routerInterfacePort.getId(), foundPort.getId());
+    }
+
+    @Test
+    public void testUtils_FetchDefaultGatewayPort_NoRouterInterface_ThrowsIllegalStateException() throws Exception {
+
+        // Arrange.
+        persistInspectedPort();
+        portService.delete(routerInterfacePort.getId());
+
+        this.exception.expect(IllegalStateException.class);
+        this.exception.expectMessage("Cannot find router interface port on subnet mySubnet");
+
+        // Act
+        this.utils.fetchDefaultGatewayPort(inspectedPort.getId());
+    }
+
+    @Test
+    public void testUtils_CreateFlowClassifier_RouterInterfaceReplaced_SubnetQueriedAgain() throws Exception {
+
+        // Arrange.
+        persistInspectedPort();
+        this.utils.fetchDefaultGatewayPort(inspectedPort.getId());
+
+        portService.delete(routerInterfacePort.getId());
+        persistRouterInterface("mySubnet");
+
+        FlowClassifierService refusingService = mock(FlowClassifierService.class);
+        when(refusingService.create(any(FlowClassifier.class)))
+                .thenThrow(new ResponseException("Logical source port not found", 404));
+        when(this.sfcService.flowclassifiers()).thenReturn(refusingService);
+        try {
+            this.utils.createFlowClassifier(inspectedPort.getId());
+            fail("The refused Flow Classifier must fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        when(this.sfcService.flowclassifiers()).thenReturn(flowClassifierService);
+
+        // Act
+        FlowClassifier flowClassifier = this.utils.createFlowClassifier(inspectedPort.getId());
+
+        // Assert.
+        assertEquals(routerInterfacePort.getId(), flowClassifier.getLogicalSourcePort());
+        assertEquals(inspectedPort.getId(), flowClassifier.getLogicalDestinationPort());
+    }
 }
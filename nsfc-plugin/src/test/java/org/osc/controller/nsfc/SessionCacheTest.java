@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+import org.openstack4j.api.OSClient.OSClientV3;
+import org.openstack4j.model.identity.v3.Token;
+import org.osc.controller.nsfc.utils.SessionCache;
+
+public class SessionCacheTest {
+
+    private static final String SESSION_KEY = "http://1.1.1.1:5000/v3/default/admin/admin";
+
+    private final AtomicInteger authentications = new AtomicInteger();
+
+    @Test
+    public void testSessionCache_ValidToken_AuthenticatesOnce() throws Exception {
+        // Arrange.
+        SessionCache sessionCache = new SessionCache(1000);
+        Supplier<OSClientV3> authenticator = authenticator(new Date(System.currentTimeMillis() + 3600000));
+
+        // Act.
+        OSClientV3 first = sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+
+        // Assert.
+        assertNotNull(first);
+        assertEquals(1, this.authentications.get());
+    }
+
+    @Test
+    public void testSessionCache_TokenWithinRefreshMargin_AuthenticatesAgain() throws Exception {
+        // Arrange.
+        SessionCache sessionCache = new SessionCache(60000);
+        Supplier<OSClientV3> authenticator = authenticator(new Date(System.currentTimeMillis() + 30000));
+
+        // Act.
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+
+        // Assert.
+        assertEquals(2, this.authentications.get());
+    }
+
+    @Test
+    public void testSessionCache_PasswordChanged_AuthenticatesAgain() throws Exception {
+        // Arrange.
+        SessionCache sessionCache = new SessionCache(1000);
+        Supplier<OSClientV3> authenticator = authenticator(new Date(System.currentTimeMillis() + 3600000));
+
+        // Act.
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+        sessionCache.getClient(SESSION_KEY, "changed", authenticator);
+
+        // Assert.
+        assertEquals(2, this.authentications.get());
+    }
+
+    @Test
+    public void testSessionCache_Cleared_AuthenticatesAgain() throws Exception {
+        // Arrange.
+        SessionCache sessionCache = new SessionCache(1000);
+        Supplier<OSClientV3> authenticator = authenticator(new Date(System.currentTimeMillis() + 3600000));
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+
+        // Act.
+        sessionCache.clear();
+        sessionCache.getClient(SESSION_KEY, "secret", authenticator);
+
+        // Assert.
+        assertEquals(2, this.authentications.get());
+    }
+
+    @Test
+    public void testSessionCache_ConcurrentCallersWithinRefreshMargin_AuthenticateOnce() throws Exception {
+        // Arrange.
+        SessionCache sessionCache = new SessionCache(60000);
+        Supplier<OSClientV3> expiring = authenticator(new Date(System.currentTimeMillis() + 30000));
+        sessionCache.getClient(SESSION_KEY, "secret", expiring);
+
+        CountDownLatch authenticating = new CountDownLatch(1);
+        CountDownLatch releaseKeystone = new CountDownLatch(1);
+        Supplier<OSClientV3> slowKeystone = () -> {
+            authenticating.countDown();
+            try {
+                releaseKeystone.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return expiring.get();
+        };
+
+        Thread first = new Thread(() -> sessionCache.getClient(SESSION_KEY, "secret", slowKeystone));
+        first.start();
+        assertTrue(authenticating.await(10, TimeUnit.SECONDS));
+
+        // Act.
+        Thread second = new Thread(() -> sessionCache.getClient(SESSION_KEY, "secret", slowKeystone));
+        second.start();
+        while (second.isAlive() && second.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        releaseKeystone.countDown();
+        first.join(10000);
+        second.join(10000);
+
+        // Assert.
+        assertEquals(2, this.authentications.get());
+    }
+
+    private Supplier<OSClientV3> authenticator(Date expires) {
+        return () -> {
+            this.authentications.incrementAndGet();
+
+            Token token = mock(Token.class);
+            when(token.getId()).thenReturn("token-" + this.authentications.get());
+            when(token.getExpires()).thenReturn(expires);
+
+            OSClientV3 osClient = mock(OSClientV3.class);
+            when(osClient.getToken()).thenReturn(token);
+            return osClient;
+        };
+    }
+}
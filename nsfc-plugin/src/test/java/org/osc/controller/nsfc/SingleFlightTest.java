@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) Intel Corporation
+ * Copyright (c) 2017
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package org.osc.controller.nsfc;
+
+import static org.junit.Assert.*;
+import static org.osc.controller.nsfc.TestData.*;
+import static org.osc.controller.nsfc.utils.OsCallMetrics.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.MockitoAnnotations;
+import org.openstack4j.api.Builders;
+import org.openstack4j.model.network.ext.PortChain;
+import org.osc.controller.nsfc.utils.OsCallMetrics;
+import org.osc.controller.nsfc.utils.OsCallMetrics.CallStatistics;
+import org.osc.controller.nsfc.utils.OsCalls;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.controller.nsfc.utils.RevisionedPortChainService;
+import org.osc.controller.nsfc.utils.SingleFlight;
+
+public class SingleFlightTest extends AbstractNeutronSfcPluginTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private static final Runnable NOTHING = () -> {
+    };
+
+    private ExecutorService callers;
+    private final AtomicInteger reads = new AtomicInteger();
+    private final CountDownLatch readStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseRead = new CountDownLatch(1);
+
+    @Before
+    @Override
+    public void setup() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        super.setup();
+        this.callers = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    @Override
+    public void tearDown() throws Exception {
+        this.callers.shutdownNow();
+    }
+
+    @Test
+    public void testSingleFlight_IdenticalReadInFlight_ResultShared() throws Exception {
+        // Arrange.
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch collapsed = new CountDownLatch(1);
+        Object result = new Object();
+
+        Future<Object> first = this.callers.submit(() -> singleFlight.execute("key", () -> blockingRead(result), NOTHING));
+        assertTrue(this.readStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // Act.
+        Future<Object> second = this.callers.submit(() -> singleFlight.execute("key", () -> blockingRead(result),
+                collapsed::countDown));
+        assertTrue(collapsed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        this.releaseRead.countDown();
+
+        // Assert.
+        assertSame(result, first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertSame(result, second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, this.reads.get());
+        assertEquals(0, singleFlight.getInFlight());
+    }
+
+    @Test
+    public void testSingleFlight_ReadFails_ExceptionSharedAndNextReadIssued() throws Exception {
+        // Arrange.
+        SingleFlight singleFlight = new SingleFlight();
+        CountDownLatch collapsed = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("Neutron unavailable");
+
+        Future<Object> first = this.callers.submit(() -> singleFlight.execute("key", () -> {
+            blockingRead(null);
+            throw failure;
+        }, NOTHING));
+        assertTrue(this.readStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        Future<Object> second = this.callers.submit(() -> singleFlight.execute("key", () -> null, collapsed::countDown));
+        assertTrue(collapsed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // Act.
+        this.releaseRead.countDown();
+
+        // Assert.
+        assertSame(failure, causeOf(first));
+        assertSame(failure, causeOf(second));
+        assertEquals("again", singleFlight.execute("key", () -> "again", () -> fail("Nothing is in flight")));
+    }
+
+    @Test
+    public void testOsCalls_ConcurrentGetPortChain_OneNeutronCallAndCollapsedCounted() throws Exception {
+        // Arrange.
+        PortChain portChain = portChainService.create(Builders.portChain()
+                .portPairGroups(new ArrayList<>()).flowClassifiers(new ArrayList<>()).build());
+        RevisionedPortChainService blockingService = new RevisionedPortChainService() {
+
+            @Override
+            public PortChain get(String portChainId) {
+                return blockingRead(portChainService.get(portChainId));
+            }
+
+            @Override
+            public PortChain update(String portChainId, PortChain portChain, Long revisionNumber) {
+                return revisionedPortChainService.update(portChainId, portChain, revisionNumber);
+            }
+        };
+        OsCallMetrics metrics = new OsCallMetrics();
+        ProjectContext projectContext =
+                projectContext(b -> b.metrics(metrics).revisionedPortChainService(blockingService));
+
+        // Two redirection apis of the same project
+        OsCalls first = new OsCalls(this.osClient, projectContext);
+        OsCalls second = new OsCalls(this.osClient, projectContext);
+
+        Future<PortChain> firstRead = this.callers.submit(() -> first.getPortChain(portChain.getId()));
+        assertTrue(this.readStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // Act.
+        Future<PortChain> secondRead = this.callers.submit(() -> second.getPortChain(portChain.getId()));
+        awaitCollapsed(metrics, PORT_CHAIN, GET);
+        this.releaseRead.countDown();
+
+        // Assert.
+        assertEquals(portChain.getId(), firstRead.get(TIMEOUT_SECONDS, TimeUnit.SECONDS).getId());
+        assertSame(firstRead.get(), secondRead.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, this.reads.get());
+        assertEquals(1, first.getRoundTrips());
+        assertEquals(0, second.getRoundTrips());
+
+        CallStatistics statistics = calls(metrics, PORT_CHAIN, GET);
+        assertEquals(1, statistics.getCount());
+        assertEquals(1, statistics.getCollapsed());
+    }
+
+    private <T> T blockingRead(T result) {
+        this.reads.incrementAndGet();
+        this.readStarted.countDown();
+        try {
+            assertTrue(this.releaseRead.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        return result;
+    }
+
+    private static Throwable causeOf(Future<?> future) throws Exception {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            throw new AssertionError("The read should have failed");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static void awaitCollapsed(OsCallMetrics metrics, String resource, String verb) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+        while (metrics.getCalls().stream()
+                .noneMatch(c -> c.getResource().equals(resource) && c.getVerb().equals(verb) && c.getCollapsed() > 0)) {
+            assertTrue("No " + verb + " " + resource + " collapsed", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static CallStatistics calls(OsCallMetrics metrics, String resource, String verb) {
+        return metrics.getCalls().stream()
+                .filter(c -> c.getResource().equals(resource) && c.getVerb().equals(verb))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No " + verb + " " + resource + " recorded"));
+    }
+}
@@ -17,13 +17,15 @@
 package org.osc.controller.nsfc;
 
 import static java.util.Arrays.asList;
+import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.openstack4j.api.Builders;
 import org.openstack4j.api.networking.PortService;
@@ -32,17 +34,23 @@ import org.openstack4j.api.networking.ext.PortChainService;
 import org.openstack4j.api.networking.ext.PortPairGroupService;
 import org.openstack4j.api.networking.ext.PortPairService;
 import org.openstack4j.model.common.ActionResponse;
+import org.openstack4j.model.common.Resource;
 import org.openstack4j.model.network.Port;
 import org.openstack4j.model.network.ext.FlowClassifier;
 import org.openstack4j.model.network.ext.PortChain;
 import org.openstack4j.model.network.ext.PortPair;
 import org.openstack4j.model.network.ext.PortPairGroup;
+import org.openstack4j.model.network.ext.builder.PortChainBuilder;
+import org.openstack4j.model.network.ext.builder.PortPairGroupBuilder;
 import org.openstack4j.model.network.options.PortListOptions;
 import org.osc.controller.nsfc.entities.FlowClassifierElement;
 import org.osc.controller.nsfc.entities.NetworkElementImpl;
 import org.osc.controller.nsfc.entities.PortPairElement;
 import org.osc.controller.nsfc.entities.PortPairGroupElement;
 import org.osc.controller.nsfc.entities.ServiceFunctionChainElement;
+import org.osc.controller.nsfc.utils.FilteredQueryService;
+import org.osc.controller.nsfc.utils.ProjectContext;
+import org.osc.controller.nsfc.utils.RevisionedPortChainService;
 
 class TestData {
 
@@ -58,6 +66,8 @@ class TestData {
 
     private static final String INSPADDR_STR = "10.4.5.6";
 
+    static final String ROUTER_INTERFACE_ADDR_STR = "10.4.5.1";
+
     private static final Random ID_GENERATOR = new Random(System.currentTimeMillis());
 
     public static FlowClassifierElement inspectionHook;
@@ -75,12 +85,15 @@ class TestData {
     public static Port ingressPort;
     public static Port egressPort;
     public static Port inspectedPort;
+    public static Port routerInterfacePort;
 
     public static PortService portService;
     public static PortChainService portChainService;
     public static PortPairService portPairService;
     public static PortPairGroupService portPairGroupService;
     public static FlowClassifierService flowClassifierService;
+    public static FilteredQueryService filteredQueryService;
+    public static RevisionedPortChainService revisionedPortChainService;
 
     public static void setupDataObjects() {
         ingressPortElement = new NetworkElementImpl();
@@ -117,10 +130,29 @@ class TestData {
         portPairService = new MockPortPairService();
         portPairGroupService = new MockPortPairGroupService();
         flowClassifierService = new MockFlowClassifierService();
+        filteredQueryService = new MockFilteredQueryService();
+        revisionedPortChainService = new MockRevisionedPortChainService();
+    }
+
+    static ProjectContext projectContext() {
+        return projectContext(builder -> {
+        });
+    }
+
+    /**
+     * @param overrides sets what the test needs on a context otherwise backed by the mock services
+     */
+    static ProjectContext projectContext(Consumer<ProjectContext.Builder> overrides) {
+        ProjectContext.Builder builder = ProjectContext.builder()
+                .filteredQueryService(filteredQueryService)
+                .revisionedPortChainService(revisionedPortChainService);
+        overrides.accept(builder);
+        return builder.build();
     }
 
-    private static class CRUDMockService<T extends org.openstack4j.model.common.Resource> {
-        Map<String, T> dataObjects = new HashMap<String, T>();
+    private static class CRUDMockService<T extends Resource> {
+        // Concurrent, for the tests driving a redirection api from several threads
+        Map<String, T> dataObjects = new ConcurrentHashMap<String, T>();
 
         public List<? extends T> list()  {
             return new ArrayList<T>(this.dataObjects.values());
@@ -137,10 +169,9 @@ class TestData {
             String id;
             do {
                 id = ID_GENERATOR.nextLong() + "";
-            } while (this.dataObjects.keySet().contains(id));
+                object.setId(id);
+            } while (this.dataObjects.putIfAbsent(id, object) != null);
 
-            object.setId(id);
-            this.dataObjects.put(id, object);
             return object;
         }
 
@@ -185,15 +216,176 @@ class TestData {
         }
 
     }
+    /**
+     * Like neutron, updates only the attributes sent.
+     */
     private static class MockPortChainService extends CRUDMockService<PortChain> implements PortChainService {
+
+        @Override
+        public PortChain update(String id, PortChain portChain) {
+            PortChain existing = get(id);
+            if (existing == null) {
+                return super.update(id, portChain);
+            }
+
+            PortChainBuilder builder = existing.toBuilder();
+            if (portChain.getName() != null) {
+                builder.name(portChain.getName());
+            }
+            if (portChain.getDescription() != null) {
+                builder.description(portChain.getDescription());
+            }
+            if (portChain.getFlowClassifiers() != null) {
+                builder.flowClassifiers(new ArrayList<>(portChain.getFlowClassifiers()));
+            }
+            if (portChain.getPortPairGroups() != null) {
+                builder.portPairGroups(new ArrayList<>(portChain.getPortPairGroups()));
+            }
+            return super.update(id, builder.build());
+        }
     }
+
+    /**
+     * Like neutron, updates only the attributes sent.
+     */
     private static class MockPortPairGroupService extends CRUDMockService<PortPairGroup> implements PortPairGroupService {
+
+        @Override
+        public PortPairGroup update(String id, PortPairGroup portPairGroup) {
+            PortPairGroup existing = get(id);
+            if (existing == null) {
+                return super.update(id, portPairGroup);
+            }
+
+            PortPairGroupBuilder builder = existing.toBuilder();
+            if (portPairGroup.getName() != null) {
+                builder.name(portPairGroup.getName());
+            }
+            if (portPairGroup.getDescription() != null) {
+                builder.description(portPairGroup.getDescription());
+            }
+            if (portPairGroup.getPortPairs() != null) {
+                builder.portPairs(new ArrayList<>(portPairGroup.getPortPairs()));
+            }
+            return super.update(id, builder.build());
+        }
     }
     private static class MockPortPairService extends CRUDMockService<PortPair> implements PortPairService {
     }
     private static class MockFlowClassifierService extends CRUDMockService<FlowClassifier> implements FlowClassifierService {
     }
 
+    /**
+     * Fields are not projected, whole resources carrying the attributes asked for.
+     */
+    private static class MockFilteredQueryService implements FilteredQueryService {
+
+        @Override
+        public List<? extends PortPair> listPortPairs(String ingressId, String egressId) {
+            return portPairService.list().stream()
+                    .filter(pp -> ingressId == null || ingressId.equals(pp.getIngressId()))
+                    .filter(pp -> egressId == null || egressId.equals(pp.getEgressId()))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPorts(String deviceOwner, String subnetId) {
+            return portService.list().stream()
+                    .filter(p -> deviceOwner == null || deviceOwner.equals(p.getDeviceOwner()))
+                    .filter(p -> subnetId == null || p.getFixedIps() != null
+                            && p.getFixedIps().stream().anyMatch(ip -> subnetId.equals(ip.getSubnetId())))
+                    .collect(toList());
+        }
+
+        @Override
+        public Port getPort(String portId, List<String> fields) {
+            return portService.get(portId);
+        }
+
+        @Override
+        public List<? extends PortPair> listPortPairs(String ingressId, String egressId, int limit, String marker,
+                List<String> fields) {
+            return page(listPortPairs(ingressId, egressId), limit, marker);
+        }
+
+        @Override
+        public List<? extends Port> listPorts(String deviceOwner, String subnetId, int limit, String marker,
+                List<String> fields) {
+            return page(listPorts(deviceOwner, subnetId), limit, marker);
+        }
+
+        @Override
+        public List<? extends PortPairGroup> listPortPairGroups(int limit, String marker, List<String> fields) {
+            return page(portPairGroupService.list(), limit, marker);
+        }
+
+        @Override
+        public List<? extends PortChain> listPortChains(int limit, String marker, List<String> fields) {
+            return page(portChainService.list(), limit, marker);
+        }
+
+        @Override
+        public List<? extends Port> listPortsById(List<String> portIds, List<String> fields) {
+            return portService.list().stream().filter(p -> portIds.contains(p.getId())).collect(toList());
+        }
+
+        @Override
+        public List<? extends PortPair> listPortPairsById(List<String> portPairIds, List<String> fields) {
+            return portPairService.list().stream().filter(pp -> portPairIds.contains(pp.getId())).collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPortsByDeviceId(String deviceId, List<String> fields) {
+            return portService.list().stream().filter(p -> deviceId.equals(p.getDeviceId())).collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPortsByMacAddress(List<String> macAddresses, List<String> fields) {
+            return portService.list().stream()
+                    .filter(p -> macAddresses.contains(p.getMacAddress()))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends Port> listPortsByIpAddress(List<String> ipAddresses, List<String> fields) {
+            return portService.list().stream()
+                    .filter(p -> p.getFixedIps() != null
+                            && p.getFixedIps().stream().anyMatch(ip -> ipAddresses.contains(ip.getIpAddress())))
+                    .collect(toList());
+        }
+
+        @Override
+        public List<? extends FlowClassifier> listFlowClassifiers(String logicalDestinationPort) {
+            return flowClassifierService.list().stream()
+                    .filter(fc -> logicalDestinationPort.equals(fc.getLogicalDestinationPort()))
+                    .collect(toList());
+        }
+
+        private <T extends Resource> List<T> page(List<? extends T> all, int limit, String marker) {
+            return all.stream()
+                    .sorted(comparing(Resource::getId))
+                    .filter(r -> marker == null || r.getId().compareTo(marker) > 0)
+                    .limit(limit > 0 ? limit : Long.MAX_VALUE)
+                    .collect(toList());
+        }
+    }
+
+    /**
+     * Revisions are not tracked, as with neutron releases that do not report them.
+     */
+    private static class MockRevisionedPortChainService implements RevisionedPortChainService {
+
+        @Override
+        public PortChain get(String portChainId) {
+            return portChainService.get(portChainId);
+        }
+
+        @Override
+        public PortChain update(String portChainId, PortChain portChain, Long revisionNumber) {
+            return portChainService.get(portChainId) != null ? portChainService.update(portChainId, portChain) : null;
+        }
+    }
+
     static PortPairService mockPortPairService() {
         return new MockPortPairService();
     }